@@ -0,0 +1,249 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.benchmark;
+
+import at.co.hohl.myresidence.storage.persistent.*;
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.EbeanServerFactory;
+import com.avaje.ebean.Transaction;
+import com.avaje.ebean.config.DataSourceConfig;
+import com.avaje.ebean.config.ServerConfig;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Creates an in-memory H2 database, filled with a nation of the size of a busy server.
+ *
+ * @author Michael Hohl
+ */
+public final class BenchmarkDatabase {
+  // Name of the world containing all residences and towns.
+  public static final String WORLD = "world";
+
+  // Number of residences along each side of the grid (results in 10,000 residences).
+  public static final int RESIDENCES_PER_SIDE = 100;
+
+  // Distance in blocks between the origins of two residences.
+  public static final int RESIDENCE_SPACING = 20;
+
+  // Length in blocks of each side of a residence.
+  public static final int RESIDENCE_SIZE = 16;
+
+  // Number of claimed chunks along each side of the map (results in 102,400 chunks).
+  public static final int CHUNKS_PER_SIDE = 320;
+
+  // Number of chunks along each side of a town (results in 100 towns).
+  public static final int TOWN_SIZE = 32;
+
+  // Number of inhabitants owning the residences.
+  public static final int INHABITANTS = 1000;
+
+  // Number of rows written per JDBC batch.
+  private static final int BATCH_SIZE = 1000;
+
+  /**
+   * Creates a new in-memory database with the schema of MyResidence.
+   *
+   * @param name the name of the database.
+   * @return the created database.
+   */
+  public static EbeanServer create(String name) {
+    DataSourceConfig dataSourceConfig = new DataSourceConfig();
+    dataSourceConfig.setDriver("org.h2.Driver");
+    dataSourceConfig.setUrl("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+    dataSourceConfig.setUsername("sa");
+    dataSourceConfig.setPassword("");
+
+    ServerConfig serverConfig = new ServerConfig();
+    serverConfig.setName(name);
+    serverConfig.setRegister(false);
+    serverConfig.setDefaultServer(false);
+    serverConfig.setDataSourceConfig(dataSourceConfig);
+    serverConfig.setDdlGenerate(true);
+    serverConfig.setDdlRun(true);
+    for (Class<?> entityClass : getDatabaseClasses()) {
+      serverConfig.addClass(entityClass);
+    }
+
+    return EbeanServerFactory.create(serverConfig);
+  }
+
+  /**
+   * Fills the passed database with inhabitants, towns, chunks and residences.
+   *
+   * @param database the database to fill.
+   */
+  public static void seed(EbeanServer database) {
+    List<Inhabitant> inhabitants = new ArrayList<Inhabitant>(INHABITANTS);
+    for (int index = 0; index < INHABITANTS; ++index) {
+      Inhabitant inhabitant = new Inhabitant();
+      inhabitant.setName("Player" + index);
+      inhabitants.add(inhabitant);
+    }
+    saveAll(database, inhabitants, false);
+
+    int townsPerSide = CHUNKS_PER_SIDE / TOWN_SIZE;
+    List<Town> towns = new ArrayList<Town>(townsPerSide * townsPerSide);
+    for (int index = 0; index < townsPerSide * townsPerSide; ++index) {
+      Town town = new Town();
+      town.setName("Town" + index);
+      town.setFoundedAt(new Date());
+      towns.add(town);
+    }
+    saveAll(database, towns, false);
+
+    List<Major> majors = new ArrayList<Major>(towns.size());
+    for (Town town : towns) {
+      Major major = new Major();
+      major.setTownId(town.getId());
+      major.setInhabitantId(inhabitants.get(town.getId() % INHABITANTS).getId());
+      majors.add(major);
+    }
+    saveAll(database, majors, true);
+
+    List<TownChunk> chunks = new ArrayList<TownChunk>(CHUNKS_PER_SIDE * CHUNKS_PER_SIDE);
+    for (int x = 0; x < CHUNKS_PER_SIDE; ++x) {
+      for (int z = 0; z < CHUNKS_PER_SIDE; ++z) {
+        TownChunk chunk = new TownChunk();
+        chunk.setTownId(getTownAt(towns, x, z).getId());
+        chunk.setWorld(WORLD);
+        chunk.setX(x);
+        chunk.setZ(z);
+        chunks.add(chunk);
+      }
+    }
+    saveAll(database, chunks, true);
+
+    List<Residence> residences = new ArrayList<Residence>(RESIDENCES_PER_SIDE * RESIDENCES_PER_SIDE);
+    for (int x = 0; x < RESIDENCES_PER_SIDE; ++x) {
+      for (int z = 0; z < RESIDENCES_PER_SIDE; ++z) {
+        Residence residence = new Residence();
+        residence.setName("Residence" + residences.size());
+        residence.setOwnerId(inhabitants.get(residences.size() % INHABITANTS).getId());
+        residence.setTownId(getTownAt(towns, (x * RESIDENCE_SPACING) >> 4, (z * RESIDENCE_SPACING) >> 4).getId());
+        residences.add(residence);
+      }
+    }
+    saveAll(database, residences, false);
+
+    List<ResidenceArea> areas = new ArrayList<ResidenceArea>(residences.size());
+    List<ResidenceFlag> flags = new ArrayList<ResidenceFlag>();
+    List<ResidenceMember> members = new ArrayList<ResidenceMember>(residences.size());
+    for (int index = 0; index < residences.size(); ++index) {
+      Residence residence = residences.get(index);
+      int lowX = (index / RESIDENCES_PER_SIDE) * RESIDENCE_SPACING;
+      int lowZ = (index % RESIDENCES_PER_SIDE) * RESIDENCE_SPACING;
+
+      ResidenceArea area = new ResidenceArea();
+      area.setResidenceId(residence.getId());
+      area.setWorld(WORLD);
+      area.setLowX(lowX);
+      area.setLowY(0);
+      area.setLowZ(lowZ);
+      area.setHighX(lowX + RESIDENCE_SIZE - 1);
+      area.setHighY(127);
+      area.setHighZ(lowZ + RESIDENCE_SIZE - 1);
+      areas.add(area);
+
+      if (index % 10 == 0) {
+        flags.add(createFlag(residence, ResidenceFlag.Type.PUBLIC));
+      } else if (index % 7 == 0) {
+        flags.add(createFlag(residence, ResidenceFlag.Type.LOCAL));
+      }
+
+      ResidenceMember member = new ResidenceMember();
+      member.setResidenceId(residence.getId());
+      member.setInhabitantId(inhabitants.get((index + 1) % INHABITANTS).getId());
+      members.add(member);
+    }
+    saveAll(database, areas, true);
+    saveAll(database, flags, true);
+    saveAll(database, members, true);
+  }
+
+  /**
+   * @return all entity classes used by MyResidence.
+   */
+  public static List<Class<?>> getDatabaseClasses() {
+    List<Class<?>> list = new ArrayList<Class<?>>();
+    list.add(Residence.class);
+    list.add(Town.class);
+    list.add(HomePoint.class);
+    list.add(Inhabitant.class);
+    list.add(Major.class);
+    list.add(ResidenceArea.class);
+    list.add(ResidenceSign.class);
+    list.add(ResidenceFlag.class);
+    list.add(ResidenceMember.class);
+    list.add(TownChunk.class);
+    list.add(TownFlag.class);
+    list.add(TownRule.class);
+    list.add(Like.class);
+    return list;
+  }
+
+  /**
+   * @param towns all towns.
+   * @param x     the x coordinate of the chunk.
+   * @param z     the z coordinate of the chunk.
+   * @return the town which owns the chunk.
+   */
+  private static Town getTownAt(List<Town> towns, int x, int z) {
+    return towns.get((x / TOWN_SIZE) * (CHUNKS_PER_SIDE / TOWN_SIZE) + (z / TOWN_SIZE));
+  }
+
+  /**
+   * @param residence the residence to flag.
+   * @param type      the type of the flag.
+   * @return the created flag.
+   */
+  private static ResidenceFlag createFlag(Residence residence, ResidenceFlag.Type type) {
+    ResidenceFlag flag = new ResidenceFlag();
+    flag.setResidenceId(residence.getId());
+    flag.setFlag(type);
+    return flag;
+  }
+
+  /**
+   * Saves the passed beans in one transaction.
+   *
+   * @param database  the database to save the beans.
+   * @param beans     the beans to save.
+   * @param batchMode true, if the generated ids of the beans are not needed afterwards.
+   */
+  private static void saveAll(EbeanServer database, List<?> beans, boolean batchMode) {
+    Transaction transaction = database.beginTransaction();
+    try {
+      transaction.setBatchMode(batchMode);
+      transaction.setBatchSize(BATCH_SIZE);
+      database.save(beans.iterator(), transaction);
+      transaction.commit();
+    } finally {
+      transaction.end();
+    }
+  }
+
+  /**
+   * Utility class.
+   */
+  private BenchmarkDatabase() {
+  }
+}
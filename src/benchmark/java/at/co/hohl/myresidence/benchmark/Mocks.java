@@ -0,0 +1,116 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates mocks of the Bukkit interfaces needed to run MyResidence outside of a server. Every method returns the
+ * answer registered for its name, or the default value of its return type.
+ *
+ * @author Michael Hohl
+ */
+public final class Mocks {
+  /**
+   * Answer which gets computed on every invocation.
+   */
+  public interface Answer {
+    /**
+     * @param args the arguments passed to the mocked method.
+     * @return the value to return.
+     */
+    Object answer(Object[] args);
+  }
+
+  /**
+   * Creates a new mock for the passed interface.
+   *
+   * @param type    the interface to mock.
+   * @param answers the values (or Answers) to return, mapped by method name.
+   * @return the created mock.
+   */
+  public static <T> T mock(final Class<T> type, final Map<String, Object> answers) {
+    Object mock = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new InvocationHandler() {
+      public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+
+        if (answers.containsKey(name)) {
+          Object answer = answers.get(name);
+          if (answer instanceof Answer) {
+            return ((Answer) answer).answer(args);
+          }
+          return answer;
+        } else if ("equals".equals(name) && args != null && args.length == 1) {
+          return proxy == args[0];
+        } else if ("hashCode".equals(name) && args == null) {
+          return System.identityHashCode(proxy);
+        } else if ("toString".equals(name) && args == null) {
+          return type.getSimpleName() + "Mock";
+        }
+
+        return defaultValue(method.getReturnType());
+      }
+    });
+
+    return type.cast(mock);
+  }
+
+  /**
+   * @return a new, empty map of answers.
+   */
+  public static Map<String, Object> answers() {
+    return new HashMap<String, Object>();
+  }
+
+  /**
+   * @param type the type to get the default value for.
+   * @return the value a field of the passed type gets initialized with.
+   */
+  private static Object defaultValue(Class<?> type) {
+    if (!type.isPrimitive() || type == void.class) {
+      return null;
+    } else if (type == boolean.class) {
+      return false;
+    } else if (type == char.class) {
+      return '\0';
+    } else if (type == byte.class) {
+      return (byte) 0;
+    } else if (type == short.class) {
+      return (short) 0;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    } else if (type == float.class) {
+      return 0f;
+    } else {
+      return 0d;
+    }
+  }
+
+  /**
+   * Utility class.
+   */
+  private Mocks() {
+  }
+}
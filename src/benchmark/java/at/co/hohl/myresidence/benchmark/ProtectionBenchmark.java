@@ -0,0 +1,168 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.benchmark;
+
+import at.co.hohl.myresidence.ChunkManager;
+import at.co.hohl.myresidence.MyResidence;
+import at.co.hohl.myresidence.PermissionsResolver;
+import at.co.hohl.myresidence.bukkit.persistent.PersistNation;
+import at.co.hohl.myresidence.storage.Configuration;
+import at.co.hohl.myresidence.storage.persistent.Residence;
+import at.co.hohl.myresidence.storage.persistent.Town;
+import com.avaje.ebean.EbeanServer;
+import com.sk89q.worldedit.Vector2D;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookups done by MyResidence on every block placed or destroyed. Run them with
+ * <code>mvn -P benchmarks verify</code>.
+ *
+ * @author Michael Hohl
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtectionBenchmark {
+  // Number of precomputed samples, must be a power of two.
+  private static final int SAMPLES = 4096;
+
+  // Blocks placed outside of the claimed area, to hit the wildness too.
+  private static final int WILDNESS_MARGIN = 256;
+
+  private EbeanServer database;
+  private PersistNation nation;
+  private PermissionsResolver permissionsResolver;
+  private ChunkManager chunkManager;
+  private World world;
+  private Player player;
+
+  // Precomputed samples, all of them describing the same positions.
+  private final Block[] blocks = new Block[SAMPLES];
+  private final Location[] locations = new Location[SAMPLES];
+  private final Vector2D[] chunks = new Vector2D[SAMPLES];
+
+  // Index of the last used sample.
+  private int index;
+
+  /**
+   * Creates the database and loads the nation.
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    database = BenchmarkDatabase.create("benchmark");
+    BenchmarkDatabase.seed(database);
+
+    Map<String, Object> worldAnswers = Mocks.answers();
+    worldAnswers.put("getName", BenchmarkDatabase.WORLD);
+    world = Mocks.mock(World.class, worldAnswers);
+
+    File configFile = File.createTempFile("myresidence", ".yml");
+    configFile.deleteOnExit();
+    final Configuration configuration = new Configuration(new org.bukkit.util.config.Configuration(configFile));
+
+    Map<String, Object> pluginAnswers = Mocks.answers();
+    pluginAnswers.put("getDatabase", database);
+    pluginAnswers.put("getConfiguration", configuration);
+    pluginAnswers.put("getDescription",
+            new PluginDescriptionFile("MyResidence", "benchmark", MyResidence.class.getName()));
+    MyResidence plugin = Mocks.mock(MyResidence.class, pluginAnswers);
+
+    Map<String, Object> playerAnswers = Mocks.answers();
+    playerAnswers.put("getName", "Player1");
+    playerAnswers.put("getWorld", world);
+    player = Mocks.mock(Player.class, playerAnswers);
+
+    nation = new PersistNation(plugin);
+    nation.load();
+    permissionsResolver = nation.getPermissionsResolver();
+    chunkManager = nation.getChunkManager();
+
+    Random random = new Random(42);
+    int bound = BenchmarkDatabase.CHUNKS_PER_SIDE * 16 + 2 * WILDNESS_MARGIN;
+    for (int sample = 0; sample < SAMPLES; ++sample) {
+      int x = random.nextInt(bound) - WILDNESS_MARGIN;
+      int z = random.nextInt(bound) - WILDNESS_MARGIN;
+
+      locations[sample] = new Location(world, x, 64, z);
+      chunks[sample] = new Vector2D(x >> 4, z >> 4);
+
+      Map<String, Object> blockAnswers = Mocks.answers();
+      blockAnswers.put("getLocation", locations[sample]);
+      blockAnswers.put("getWorld", world);
+      blockAnswers.put("getTypeId", 1);
+      blocks[sample] = Mocks.mock(Block.class, blockAnswers);
+    }
+  }
+
+  /**
+   * Writes pending changes and drops the database.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    nation.close();
+    database.createSqlUpdate("SHUTDOWN").execute();
+  }
+
+  @Benchmark
+  public boolean isAllowedToPlaceBlockAt() {
+    return permissionsResolver.isAllowedToPlaceBlockAt(player, blocks[nextSample()]);
+  }
+
+  @Benchmark
+  public boolean isAllowedToDestroyBlockAt() {
+    return permissionsResolver.isAllowedToDestroyBlockAt(player, blocks[nextSample()]);
+  }
+
+  @Benchmark
+  public Residence getResidence() {
+    return nation.getResidence(locations[nextSample()]);
+  }
+
+  @Benchmark
+  public Town getTown() {
+    return nation.getTown(locations[nextSample()]);
+  }
+
+  @Benchmark
+  public Town getChunkOwner() {
+    return chunkManager.getChunkOwner(world, chunks[nextSample()]);
+  }
+
+  /**
+   * @return the index of the next sample to use.
+   */
+  private int nextSample() {
+    index = (index + 1) & (SAMPLES - 1);
+    return index;
+  }
+}
@@ -39,6 +39,16 @@ public interface ChunkManager {
    */
   Town getChunkOwner(World world, Vector2D chunk);
 
+  /**
+   * Returns the owners of all chunks in the rectangle.
+   *
+   * @param world the world of the chunks.
+   * @param min   the chunk with the lowest coordinates.
+   * @param max   the chunk with the highest coordinates.
+   * @return the owners, indexed by [x - min.x][z - min.z], null for chunks connected to wildness.
+   */
+  Town[][] getChunkOwners(World world, Vector2D min, Vector2D max);
+
   /**
    * Adds a single chunk to the town.
    *
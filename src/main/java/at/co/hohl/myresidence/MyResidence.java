@@ -49,6 +49,14 @@ public interface MyResidence extends Plugin {
    */
   Configuration getConfiguration(World world);
 
+  /**
+   * Parses the configuration files of all loaded worlds again and replaces the configurations, which are valid. Blocks
+   * until the files are parsed, so it should not be called on the main thread.
+   *
+   * @return the number of reloaded configurations.
+   */
+  int reloadConfigurations();
+
   /**
    * @return the SessionManager used by this MyResidence implementation.
    */
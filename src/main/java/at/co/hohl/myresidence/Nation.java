@@ -19,6 +19,9 @@
 package at.co.hohl.myresidence;
 
 import at.co.hohl.myresidence.exceptions.MyResidenceException;
+import at.co.hohl.myresidence.storage.Session;
+import at.co.hohl.myresidence.storage.cache.Leaderboards;
+import at.co.hohl.myresidence.storage.cache.MajorCache;
 import at.co.hohl.myresidence.storage.persistent.*;
 import com.avaje.ebean.EbeanServer;
 import org.bukkit.Location;
@@ -138,6 +141,14 @@ public interface Nation {
    */
   void remove(Town town) throws MyResidenceException;
 
+  /**
+   * Removes a town in the background. A TownRemovedEvent is called as soon as the town is removed from the database.
+   *
+   * @param town      town to remove.
+   * @param removedBy the session which removes the town.
+   */
+  void remove(Town town, Session removedBy) throws MyResidenceException;
+
   /**
    * Removes a residence.
    *
@@ -211,6 +222,21 @@ public interface Nation {
    */
   PermissionsResolver getPermissionsResolver();
 
+  /**
+   * @return the orderings of residences and towns used for listing them.
+   */
+  Leaderboards getLeaderboards();
+
+  /**
+   * @return a number which changes whenever the area of any residence or the chunks of any town change.
+   */
+  long getMapGeneration();
+
+  /**
+   * @return the majors of all towns.
+   */
+  MajorCache getMajorCache();
+
   /**
    * Sends the passed player information about the passed object.
    *
@@ -220,11 +246,12 @@ public interface Nation {
   public void sendInformation(Player player, Object object) throws MyResidenceException;
 
   /**
-   * Search for invalid residences.
+   * Search for invalid residences. If a search is already running, the listener gets notified when it finished.
    *
    * @param invalidResidenceListener the result listener.
+   * @return true, if a new search got started.
    */
-  public void searchInvalidResidences(final InvalidResidenceListener invalidResidenceListener);
+  public boolean searchInvalidResidences(final InvalidResidenceListener invalidResidenceListener);
 
   /**
    * Saves any changes to towns or residences.
@@ -103,6 +103,17 @@ public interface ResidenceManager extends FlagManager<ResidenceFlag.Type> {
    */
   List<Inhabitant> getLikes();
 
+  /**
+   * @return the number of inhabitants who liked the residence.
+   */
+  int getLikeCount();
+
+  /**
+   * @param inhabitant the inhabitant to check.
+   * @return true, if the inhabitant liked the residence.
+   */
+  boolean hasLiked(Inhabitant inhabitant);
+
   /**
    * @param inhabitant the inhabitant to like the residence.
    */
@@ -112,4 +123,9 @@ public interface ResidenceManager extends FlagManager<ResidenceFlag.Type> {
    * @param inhabitant the inhabitant to unlike the residence.
    */
   void unlike(Inhabitant inhabitant);
+
+  /**
+   * Removes all likes of the residence.
+   */
+  void resetLikes();
 }
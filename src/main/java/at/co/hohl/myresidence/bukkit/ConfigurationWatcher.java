@@ -0,0 +1,178 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit;
+
+import at.co.hohl.myresidence.storage.Configuration;
+import org.bukkit.World;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches the configuration files of the worlds and publishes them again when they changed. Runs off the main thread,
+ * the parsed configurations replace the old ones as a whole, so readers never see a half loaded configuration. Files
+ * which are missing, empty or could not be parsed are rejected and checked again, until they got published.
+ *
+ * @author Michael Hohl
+ */
+public class ConfigurationWatcher implements Runnable {
+  /**
+   * Number of ticks between two checks of the files.
+   */
+  public static final int CHECK_INTERVAL = 100;
+
+  private final MyResidencePlugin plugin;
+
+  // Time of the last modification of the configuration files, when they got published the last time.
+  private final Map<World, Long> lastModified = new IdentityHashMap<World, Long>();
+
+  // Time of the last modification of the configuration files, when they got rejected the last time.
+  private final Map<World, Long> rejectedModified = new IdentityHashMap<World, Long>();
+
+  /**
+   * Creates a new watcher.
+   *
+   * @param plugin the plugin which holds the configurations.
+   */
+  public ConfigurationWatcher(MyResidencePlugin plugin) {
+    this.plugin = plugin;
+  }
+
+  /**
+   * Reloads the configurations, whose files changed since the last check. Called by the scheduler.
+   */
+  public void run() {
+    reload(false);
+  }
+
+  /**
+   * Reloads the configurations of all loaded worlds.
+   *
+   * @return the number of reloaded configurations.
+   */
+  public int reloadAll() {
+    return reload(true);
+  }
+
+  /**
+   * Forgets the world and drops its configuration. Holds the lock of the watcher, so a running reload can not publish
+   * the configuration of the world again.
+   *
+   * @param world the unloaded world.
+   */
+  public synchronized void forget(World world) {
+    lastModified.remove(world);
+    rejectedModified.remove(world);
+    plugin.removeConfiguration(world);
+  }
+
+  // Parses and validates the configuration files and publishes the valid ones.
+  private synchronized int reload(boolean force) {
+    int reloaded = 0;
+
+    for (World world : plugin.getConfigurations().keySet()) {
+      File file = plugin.getConfigurationFile(world);
+      long modified = file.lastModified();
+
+      Long knownModified = lastModified.get(world);
+      if (knownModified == null && !force) {
+        lastModified.put(world, modified);
+        continue;
+      }
+      if (!force && knownModified == modified) {
+        continue;
+      }
+
+      List<String> problems = new LinkedList<String>();
+      Configuration configuration = null;
+      String problem = checkFile(file);
+      if (problem != null) {
+        problems.add(problem);
+      } else {
+        configuration = new Configuration(new org.bukkit.util.config.Configuration(file));
+        problems.addAll(configuration.load());
+      }
+
+      // The file changed while it got read, so it is checked again with the next run.
+      if (file.lastModified() != modified) {
+        continue;
+      }
+
+      if (!problems.isEmpty()) {
+        Long knownRejected = rejectedModified.put(world, modified);
+        if (force || knownRejected == null || knownRejected != modified) {
+          plugin.warning("Configuration of world %s is invalid, keep the old one:", world.getName());
+          for (String message : problems) {
+            plugin.warning(" - %s", message);
+          }
+        }
+        continue;
+      }
+
+      plugin.publishConfiguration(world, configuration);
+      lastModified.put(world, modified);
+      rejectedModified.remove(world);
+      plugin.info("Reloaded configuration of world %s.", world.getName());
+      ++reloaded;
+    }
+
+    return reloaded;
+  }
+
+  // Checks if the file exists and contains a parsable YAML mapping. Returns the problem or null if the file is ok.
+  private static String checkFile(File file) {
+    if (!file.isFile()) {
+      return String.format("%s does not exist", file.getName());
+    }
+    if (file.length() == 0) {
+      return String.format("%s is empty", file.getName());
+    }
+
+    InputStream input = null;
+    try {
+      input = new FileInputStream(file);
+      Object root = new Yaml().load(input);
+      if (!(root instanceof Map)) {
+        return String.format("%s does not contain any settings", file.getName());
+      }
+    } catch (IOException e) {
+      return String.format("%s could not be read: %s", file.getName(), e.getMessage());
+    } catch (YAMLException e) {
+      return String.format("%s could not be parsed: %s", file.getName(), e.getMessage());
+    } finally {
+      if (input != null) {
+        try {
+          input.close();
+        } catch (IOException e) {
+          // Nothing to do, the file got read already.
+        }
+      }
+    }
+
+    return null;
+  }
+}
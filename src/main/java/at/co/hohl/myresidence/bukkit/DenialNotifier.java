@@ -0,0 +1,75 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit;
+
+import at.co.hohl.myresidence.translations.Translate;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerListener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Tells players that they are not allowed to do something. Sends at most one message per player and interval, so a
+ * player hammering on a protected block does not get flooded with messages.
+ *
+ * @author Michael Hohl
+ */
+public class DenialNotifier extends PlayerListener {
+  /**
+   * Minimum number of milliseconds between two denial messages to the same player.
+   */
+  public static final long MESSAGE_INTERVAL = 1000;
+
+  // Time of the last denial message, by the player who received it.
+  private final Map<Player, Long> lastMessages = new IdentityHashMap<Player, Long>();
+
+  /**
+   * Sends the translation of the message to the player, if the player did not receive a denial message recently.
+   *
+   * @param player    the player to notify.
+   * @param messageId the id of the message to send.
+   */
+  public void deny(Player player, String messageId) {
+    long now = System.currentTimeMillis();
+
+    synchronized (lastMessages) {
+      Long lastMessage = lastMessages.get(player);
+      if (lastMessage != null && now - lastMessage < MESSAGE_INTERVAL) {
+        return;
+      }
+      lastMessages.put(player, now);
+    }
+
+    player.sendMessage(Translate.getMessage(messageId).format());
+  }
+
+  /**
+   * Called when a player leaves the server.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public void onPlayerQuit(PlayerQuitEvent event) {
+    synchronized (lastMessages) {
+      lastMessages.remove(event.getPlayer());
+    }
+  }
+}
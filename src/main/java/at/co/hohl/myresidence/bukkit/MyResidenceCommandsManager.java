@@ -0,0 +1,126 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit;
+
+import at.co.hohl.myresidence.Nation;
+import at.co.hohl.myresidence.commands.AsyncSafe;
+import com.sk89q.minecraft.util.commands.CommandPermissions;
+import com.sk89q.minecraft.util.commands.CommandsManager;
+import com.sk89q.minecraft.util.commands.NestedCommand;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Manager for the commands of MyResidence.
+ *
+ * @author Michael Hohl
+ */
+public class MyResidenceCommandsManager extends CommandsManager<Player> {
+  // Nation used for checking permissions.
+  private final Nation nation;
+
+  /**
+   * Creates a new manager for the commands.
+   *
+   * @param nation the nation used for checking permissions.
+   */
+  public MyResidenceCommandsManager(Nation nation) {
+    this.nation = nation;
+  }
+
+  /**
+   * Checks if the player has the passed permission.
+   *
+   * @param player     the player to check.
+   * @param permission the permission to check.
+   * @return true, if the player has the permission.
+   */
+  @Override
+  public boolean hasPermission(Player player, String permission) {
+    // Commands running outside of the main thread use the permissions captured before.
+    PlayerOutbox outbox = PlayerOutbox.getOutbox(player);
+    if (outbox != null) {
+      return outbox.hasPermission(permission);
+    }
+
+    return nation.getPermissionsResolver().hasPermission(player, permission);
+  }
+
+  /**
+   * Checks if the command called by the passed command line is marked as AsyncSafe.
+   *
+   * @param commandLine the label and the arguments of the command.
+   * @return true, if the command is allowed to run outside of the main thread.
+   */
+  public boolean isAsyncSafe(String[] commandLine) {
+    List<Method> methods = resolve(commandLine);
+    return !methods.isEmpty() && methods.get(methods.size() - 1).isAnnotationPresent(AsyncSafe.class);
+  }
+
+  /**
+   * Returns the permissions, which are checked before the command called by the passed command line gets executed.
+   *
+   * @param commandLine the label and the arguments of the command.
+   * @return the permissions required by the command and its parent commands.
+   */
+  public Set<String> getPermissions(String[] commandLine) {
+    Set<String> permissions = new LinkedHashSet<String>();
+    for (Method method : resolve(commandLine)) {
+      CommandPermissions commandPermissions = method.getAnnotation(CommandPermissions.class);
+      if (commandPermissions != null) {
+        permissions.addAll(Arrays.asList(commandPermissions.value()));
+      }
+    }
+
+    return permissions;
+  }
+
+  // Returns the methods of the command called by the command line and of its parent commands.
+  private List<Method> resolve(String[] commandLine) {
+    List<Method> methods = new ArrayList<Method>();
+    Method method = null;
+
+    for (String argument : commandLine) {
+      Map<String, Method> subCommands = commands.get(method);
+      if (subCommands == null) {
+        break;
+      }
+
+      Method subCommand = subCommands.get(argument.toLowerCase());
+      if (subCommand == null) {
+        break;
+      }
+
+      method = subCommand;
+      methods.add(method);
+      if (!method.isAnnotationPresent(NestedCommand.class)) {
+        break;
+      }
+    }
+
+    return methods;
+  }
+}
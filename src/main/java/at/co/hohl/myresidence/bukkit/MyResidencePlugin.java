@@ -22,6 +22,8 @@ import at.co.hohl.myresidence.MyResidence;
 import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.bukkit.listener.*;
 import at.co.hohl.myresidence.bukkit.persistent.PersistNation;
+import at.co.hohl.myresidence.bukkit.persistent.SchemaMigrator;
+import at.co.hohl.myresidence.bukkit.persistent.SignRenderQueue;
 import at.co.hohl.myresidence.commands.GeneralCommands;
 import at.co.hohl.myresidence.commands.HomeCommands;
 import at.co.hohl.myresidence.commands.LikeCommands;
@@ -50,9 +52,14 @@ import org.bukkit.plugin.java.JavaPlugin;
 import javax.persistence.PersistenceException;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -64,12 +71,32 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
   /**
    * Manager for all commands bound to this plugin.
    */
-  private CommandsManager<Player> commands;
+  private MyResidenceCommandsManager commands;
 
   /**
-   * Maps loaded configuration to worlds.
+   * Number of threads running asynchronous commands.
    */
-  private Map<String, Configuration> configurationMap = new HashMap<String, Configuration>();
+  private static final int COMMAND_THREADS = 2;
+
+  /**
+   * Seconds to wait for running asynchronous commands on disable.
+   */
+  private static final int COMMAND_SHUTDOWN_TIMEOUT = 10;
+
+  /**
+   * Executes commands, which are marked as AsyncSafe.
+   */
+  private ExecutorService commandExecutor;
+
+  /**
+   * Maps loaded configuration to worlds. Never modified, but replaced as a whole when a world gets loaded.
+   */
+  private volatile Map<World, Configuration> configurationMap = Collections.emptyMap();
+
+  /**
+   * Reloads the configurations, when their files changed.
+   */
+  private final ConfigurationWatcher configurationWatcher = new ConfigurationWatcher(this);
 
   /**
    * SessionManager used by this plugin.
@@ -79,7 +106,7 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
   /**
    * Nation held by this plugin.
    */
-  private Nation nation;
+  private PersistNation nation;
 
   /**
    * Logger used by this plugin.
@@ -111,9 +138,18 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
     sessionManager = new SessionManager(nation);
 
     setupDatabase();
+    nation.load();
     setupListeners();
     setupCommands();
 
+    commandExecutor = Executors.newFixedThreadPool(COMMAND_THREADS, new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, getDescription().getName() + " Commands");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
     info("version %s enabled!", getDescription().getVersion());
   }
 
@@ -121,6 +157,21 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
    * Called on disabling this plugin.
    */
   public void onDisable() {
+    if (commandExecutor != null) {
+      commandExecutor.shutdown();
+      try {
+        if (!commandExecutor.awaitTermination(COMMAND_SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+          warning("Commands did not finish in time!");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    if (nation != null) {
+      nation.close();
+    }
+
     info("version %s disabled!", getDescription().getVersion());
   }
 
@@ -142,60 +193,16 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
     Player player = (Player) sender;
     Session session = sessionManager.get(player);
 
-    try {
-      long start = System.currentTimeMillis();
-
-      String[] commandLine = new String[args.length + 1];
-      commandLine[0] = label;
-      System.arraycopy(args, 0, commandLine, 1, args.length);
+    String[] commandLine = new String[args.length + 1];
+    commandLine[0] = label;
+    System.arraycopy(args, 0, commandLine, 1, args.length);
 
-      try {
-        commands.execute(commandLine, player, this, nation, player, session);
-      } catch (CommandPermissionsException e) {
-        player.sendMessage(ChatColor.RED + "You don't have permission to do this.");
-      } catch (MissingNestedCommandException e) {
-        player.sendMessage(ChatColor.RED + e.getUsage());
-      } catch (CommandUsageException e) {
-        player.sendMessage(ChatColor.RED + e.getMessage());
-        player.sendMessage(ChatColor.RED + e.getUsage());
-      } catch (WrappedCommandException e) {
-        throw e.getCause();
-      } catch (UnhandledCommandException e) {
-        return false;
-      } finally {
-        if (session.isDebugger()) {
-          long time = System.currentTimeMillis() - start;
-          player.sendMessage(String.format("%s%d milliseconds elapsed.", ChatColor.LIGHT_PURPLE, time));
-        }
-      }
-    } catch (NumberFormatException e) {
-      player.sendMessage(ChatColor.LIGHT_PURPLE + "Number expected; string given.");
-    } catch (NoResidenceSelectedException e) {
-      player.sendMessage(ChatColor.RED + "You have to be inside a residence or select it by clicking the sign!");
-    } catch (NoTownSelectedException e) {
-      player.sendMessage(ChatColor.RED + "You need to select a town before!");
-      player.sendMessage(ChatColor.RED + "Use /town select <name> to select a town.");
-    } catch (ResidenceSignMissingException e) {
-      player.sendMessage(ChatColor.LIGHT_PURPLE + "Residence sign is missing!");
-    } catch (NotOwnException e) {
-      player.sendMessage(ChatColor.RED + "You are not the owner!");
-    } catch (IncompleteRegionException e) {
-      player.sendMessage(ChatColor.LIGHT_PURPLE + "Make a region selection first.");
-    } catch (InsufficientArgumentsException e) {
-      player.sendMessage(ChatColor.RED + e.getMessage());
-    } catch (MyResidenceException e) {
-      player.sendMessage(ChatColor.RED + e.getMessage());
-    } catch (PersistenceException exception) {
-      player.sendMessage(ChatColor.RED + "Town or Residence is invalid. Please report this error!");
-      player.sendMessage(ChatColor.RED + exception.getClass().getName() + ": " + exception.getMessage());
-      exception.printStackTrace();
-    } catch (Throwable exception) {
-      player.sendMessage(ChatColor.RED + "Please report this error: [See console]");
-      player.sendMessage(ChatColor.RED + exception.getClass().getName() + ": " + exception.getMessage());
-      exception.printStackTrace();
+    if (commands.isAsyncSafe(commandLine)) {
+      executeAsync(commandLine, player, session);
+      return true;
     }
 
-    return true;
+    return execute(commandLine, player, session);
   }
 
   /**
@@ -203,15 +210,71 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
    * @return the main configuration for the plugin.
    */
   public Configuration getConfiguration(World world) {
-    if (configurationMap.containsKey(world.getName())) {
-      return configurationMap.get(world.getName());
-    } else {
-      org.bukkit.util.config.Configuration bukkitConfig =
-              new org.bukkit.util.config.Configuration(new File(getDataFolder(), world.getName() + ".yml"));
-      Configuration configuration = new Configuration(bukkitConfig);
-      configurationMap.put(world.getName(), configuration);
-      return configuration;
+    Configuration configuration = configurationMap.get(world);
+    if (configuration == null) {
+      configuration = loadConfiguration(world);
     }
+    return configuration;
+  }
+
+  /**
+   * @return the configurations of all worlds, which got loaded yet.
+   */
+  public Map<World, Configuration> getConfigurations() {
+    return Collections.unmodifiableMap(configurationMap);
+  }
+
+  /**
+   * @param world the world to get the configuration file for.
+   * @return the file which holds the configuration of the world.
+   */
+  public File getConfigurationFile(World world) {
+    return new File(getDataFolder(), world.getName() + ".yml");
+  }
+
+  /**
+   * Replaces the configuration of the world.
+   *
+   * @param world         the world of the configuration.
+   * @param configuration the new configuration.
+   */
+  public synchronized void publishConfiguration(World world, Configuration configuration) {
+    Map<World, Configuration> loadedConfigurations = new IdentityHashMap<World, Configuration>(configurationMap);
+    loadedConfigurations.put(world, configuration);
+    configurationMap = loadedConfigurations;
+  }
+
+  /**
+   * Removes the configuration of the world.
+   *
+   * @param world the world of the configuration.
+   */
+  public synchronized void removeConfiguration(World world) {
+    if (!configurationMap.containsKey(world)) {
+      return;
+    }
+
+    Map<World, Configuration> loadedConfigurations = new IdentityHashMap<World, Configuration>(configurationMap);
+    loadedConfigurations.remove(world);
+    configurationMap = loadedConfigurations;
+  }
+
+  /**
+   * Drops the configuration of the unloaded world, so the world is not kept in memory.
+   *
+   * @param world the unloaded world.
+   */
+  public void unloadConfiguration(World world) {
+    configurationWatcher.forget(world);
+  }
+
+  /**
+   * Parses the configuration files of all loaded worlds again and replaces the configurations, which are valid.
+   *
+   * @return the number of reloaded configurations.
+   */
+  public int reloadConfigurations() {
+    return configurationWatcher.reloadAll();
   }
 
   /**
@@ -324,22 +387,41 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
     pluginManager.registerEvent(Event.Type.PLUGIN_ENABLE, economyPluginListener, Event.Priority.Monitor, this);
     pluginManager.registerEvent(Event.Type.PLUGIN_DISABLE, economyPluginListener, Event.Priority.Monitor, this);
 
+    // Listen for joining players.
+    InhabitantJoinListener inhabitantJoinListener = new InhabitantJoinListener(nation);
+    pluginManager.registerEvent(Event.Type.PLAYER_JOIN, inhabitantJoinListener, Event.Priority.Monitor, this);
+
+    // Opens and closes the sessions of the players.
+    SessionListener sessionListener = new SessionListener(sessionManager);
+    pluginManager.registerEvent(Event.Type.PLAYER_JOIN, sessionListener, Event.Priority.Monitor, this);
+    pluginManager.registerEvent(Event.Type.PLAYER_QUIT, sessionListener, Event.Priority.Monitor, this);
+
+    // Tracks the residences and towns the players stand in.
+    MovementListener movementListener = new MovementListener(sessionManager, getEventManager());
+    pluginManager.registerEvent(Event.Type.PLAYER_MOVE, movementListener, Event.Priority.Monitor, this);
+    pluginManager.registerEvent(Event.Type.PLAYER_TELEPORT, movementListener, Event.Priority.Monitor, this);
+
     // Listen for player clicking on signs.
     SignClickListener signClickListener = new SignClickListener(this, nation);
     pluginManager.registerEvent(Event.Type.PLAYER_INTERACT, signClickListener, Event.Priority.Normal, this);
 
+    // Tells players that they are not allowed to do something.
+    DenialNotifier denialNotifier = new DenialNotifier();
+    pluginManager.registerEvent(Event.Type.PLAYER_QUIT, denialNotifier, Event.Priority.Monitor, this);
+
     // Listen for players broke signs.
-    SignBrokeListener signBrokeListener = new SignBrokeListener(this, nation);
+    SignBrokeListener signBrokeListener = new SignBrokeListener(this, nation, denialNotifier);
     pluginManager.registerEvent(Event.Type.BLOCK_BREAK, signBrokeListener, Event.Priority.Normal, this);
 
     // Listener for world protection.
-    BuildPermissionsListener buildPermissionsListener = new BuildPermissionsListener(nation.getPermissionsResolver());
+    BuildPermissionsListener buildPermissionsListener = new BuildPermissionsListener(nation.getPermissionsResolver(),
+            denialNotifier);
     pluginManager.registerEvent(Event.Type.BLOCK_PLACE, buildPermissionsListener, Event.Priority.Normal, this);
     pluginManager.registerEvent(Event.Type.BLOCK_BREAK, buildPermissionsListener, Event.Priority.Normal, this);
 
     // Listener for player interactions.
     InteractPermissionsListener interactPermissionsListener =
-            new InteractPermissionsListener(nation.getPermissionsResolver());
+            new InteractPermissionsListener(nation.getPermissionsResolver(), denialNotifier);
     pluginManager.registerEvent(Event.Type.PLAYER_BUCKET_EMPTY, interactPermissionsListener, Event.Priority.Normal,
             this);
     pluginManager.registerEvent(Event.Type.PLAYER_BUCKET_FILL, interactPermissionsListener, Event.Priority.Normal,
@@ -347,11 +429,39 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
     pluginManager.registerEvent(Event.Type.PLAYER_BED_ENTER, interactPermissionsListener, Event.Priority.Normal, this);
     pluginManager.registerEvent(Event.Type.PLAYER_FISH, interactPermissionsListener, Event.Priority.Normal, this);
 
+    // Drops the configurations of unloaded worlds.
+    WorldUnloadListener worldUnloadListener = new WorldUnloadListener(this);
+    pluginManager.registerEvent(Event.Type.WORLD_UNLOAD, worldUnloadListener, Event.Priority.Monitor, this);
+
+    // Reloads changed configuration files.
+    getServer().getScheduler().scheduleAsyncRepeatingTask(this, configurationWatcher,
+            ConfigurationWatcher.CHECK_INTERVAL, ConfigurationWatcher.CHECK_INTERVAL);
+
+    // Renders the residence signs.
+    SignRenderQueue signRenderQueue = nation.getSignRenderQueue();
+    pluginManager.registerEvent(Event.Type.CHUNK_LOAD, signRenderQueue, Event.Priority.Monitor, this);
+    getServer().getScheduler().scheduleSyncRepeatingTask(this, signRenderQueue,
+            SignRenderQueue.FLUSH_INTERVAL, SignRenderQueue.FLUSH_INTERVAL);
+
+    // Checks residence signs inside chunks, which got loaded during a search for invalid residences.
+    pluginManager.registerEvent(Event.Type.CHUNK_LOAD, nation.getInvalidResidenceScanner(), Event.Priority.Monitor,
+            this);
+
     // Listen for residences.
-    SignUpdateListener signUpdateListener = new SignUpdateListener(nation, this);
+    SignUpdateListener signUpdateListener = new SignUpdateListener(signRenderQueue);
     getEventManager().addListener(signUpdateListener);
     NotifyPlayerListener notifyPlayerListener = new NotifyPlayerListener(nation, this);
     getEventManager().addListener(notifyPlayerListener);
+    LeaderboardUpdateListener leaderboardUpdateListener = new LeaderboardUpdateListener(nation);
+    getEventManager().addListener(leaderboardUpdateListener);
+
+    // Keeps the selections of the sessions valid.
+    SessionUpdateListener sessionUpdateListener = new SessionUpdateListener(sessionManager);
+    getEventManager().addListener(sessionUpdateListener);
+
+    // Listen for towns.
+    NotifyMajorListener notifyMajorListener = new NotifyMajorListener(this);
+    getEventManager().addListener(notifyMajorListener);
 
   }
 
@@ -359,13 +469,7 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
    * Setups the commands.
    */
   private void setupCommands() {
-    final MyResidence plugin = this;
-    commands = new CommandsManager<Player>() {
-      @Override
-      public boolean hasPermission(Player player, String permission) {
-        return nation.getPermissionsResolver().hasPermission(player, permission);
-      }
-    };
+    commands = new MyResidenceCommandsManager(nation);
 
     commands.register(GeneralCommands.class);
     commands.register(MapCommand.class);
@@ -396,6 +500,8 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
       info("Installing database due to first time usage!");
       installDDL();
     }
+
+    new SchemaMigrator(this).migrate();
   }
 
   /**
@@ -419,4 +525,114 @@ public class MyResidencePlugin extends JavaPlugin implements MyResidence {
     list.add(Like.class);
     return list;
   }
+
+  /**
+   * Executes the command and sends errors to the player.
+   *
+   * @param commandLine the label and the arguments of the command.
+   * @param player      the player who called the command.
+   * @param session     the session of the player.
+   * @return true, if the plugin handles the command.
+   */
+  private boolean execute(String[] commandLine, Player player, Session session) {
+    try {
+      long start = System.currentTimeMillis();
+
+      try {
+        commands.execute(commandLine, player, this, nation, player, session);
+      } catch (CommandPermissionsException e) {
+        player.sendMessage(ChatColor.RED + "You don't have permission to do this.");
+      } catch (MissingNestedCommandException e) {
+        player.sendMessage(ChatColor.RED + e.getUsage());
+      } catch (CommandUsageException e) {
+        player.sendMessage(ChatColor.RED + e.getMessage());
+        player.sendMessage(ChatColor.RED + e.getUsage());
+      } catch (WrappedCommandException e) {
+        throw e.getCause();
+      } catch (UnhandledCommandException e) {
+        return false;
+      } finally {
+        if (session.isDebugger()) {
+          long time = System.currentTimeMillis() - start;
+          player.sendMessage(String.format("%s%d milliseconds elapsed.", ChatColor.LIGHT_PURPLE, time));
+        }
+      }
+    } catch (NumberFormatException e) {
+      player.sendMessage(ChatColor.LIGHT_PURPLE + "Number expected; string given.");
+    } catch (NoResidenceSelectedException e) {
+      player.sendMessage(ChatColor.RED + "You have to be inside a residence or select it by clicking the sign!");
+    } catch (NoTownSelectedException e) {
+      player.sendMessage(ChatColor.RED + "You need to select a town before!");
+      player.sendMessage(ChatColor.RED + "Use /town select <name> to select a town.");
+    } catch (ResidenceSignMissingException e) {
+      player.sendMessage(ChatColor.LIGHT_PURPLE + "Residence sign is missing!");
+    } catch (NotOwnException e) {
+      player.sendMessage(ChatColor.RED + "You are not the owner!");
+    } catch (IncompleteRegionException e) {
+      player.sendMessage(ChatColor.LIGHT_PURPLE + "Make a region selection first.");
+    } catch (InsufficientArgumentsException e) {
+      player.sendMessage(ChatColor.RED + e.getMessage());
+    } catch (MyResidenceException e) {
+      player.sendMessage(ChatColor.RED + e.getMessage());
+    } catch (PersistenceException exception) {
+      player.sendMessage(ChatColor.RED + "Town or Residence is invalid. Please report this error!");
+      player.sendMessage(ChatColor.RED + exception.getClass().getName() + ": " + exception.getMessage());
+      exception.printStackTrace();
+    } catch (Throwable exception) {
+      player.sendMessage(ChatColor.RED + "Please report this error: [See console]");
+      player.sendMessage(ChatColor.RED + exception.getClass().getName() + ": " + exception.getMessage());
+      exception.printStackTrace();
+    }
+
+    return true;
+  }
+
+  /**
+   * Executes the command on the command executor. Everything the command needs to know about the player is captured
+   * before, messages and teleports are delivered on the main thread.
+   *
+   * @param commandLine the label and the arguments of the command.
+   * @param player      the player who called the command.
+   * @param session     the session of the player.
+   */
+  private void executeAsync(final String[] commandLine, final Player player, final Session session) {
+    final PlayerOutbox outbox =
+            new PlayerOutbox(player, commands.getPermissions(commandLine), nation.getPermissionsResolver());
+    final MyResidence plugin = this;
+
+    // The command only uses the resolved context, so it never asks the player for the location.
+    session.refresh(player.getLocation());
+
+    commandExecutor.execute(new Runnable() {
+      public void run() {
+        try {
+          execute(commandLine, outbox.getPlayer(), session);
+        } finally {
+          getServer().getScheduler().scheduleSyncDelayedTask(plugin, outbox);
+        }
+      }
+    });
+  }
+
+  // Loads and validates the configuration of the world and adds it to a copy of the configuration map. An invalid
+  // configuration is replaced by the defaults, because there is no older one to keep.
+  private synchronized Configuration loadConfiguration(World world) {
+    Configuration configuration = configurationMap.get(world);
+    if (configuration != null) {
+      return configuration;
+    }
+
+    configuration = new Configuration(new org.bukkit.util.config.Configuration(getConfigurationFile(world)));
+    List<String> problems = configuration.load();
+    if (!problems.isEmpty()) {
+      warning("Configuration of world %s is invalid, use the defaults:", world.getName());
+      for (String problem : problems) {
+        warning(" - %s", problem);
+      }
+      configuration.loadDefaults();
+    }
+    publishConfiguration(world, configuration);
+
+    return configuration;
+  }
 }
@@ -0,0 +1,217 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit;
+
+import at.co.hohl.myresidence.PermissionsResolver;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Wraps a player for commands running outside of the main thread. Messages, teleports and other calls changing the
+ * player are collected and delivered, in the order they were made, when the outbox runs on the main thread. The name,
+ * location and the permissions of the player are captured on the main thread, when the outbox is created. Every other
+ * call is rejected, because it would use the Bukkit API outside of the main thread.
+ *
+ * @author Michael Hohl
+ */
+public class PlayerOutbox implements InvocationHandler, Runnable {
+  // Methods which are only allowed to be called on the main thread.
+  private static final Set<String> DEFERRED_METHODS = new HashSet<String>(Arrays.asList(
+          "sendMessage", "sendRawMessage", "teleport", "chat", "performCommand", "kickPlayer", "setCompassTarget",
+          "updateInventory"));
+
+  // The wrapped player.
+  private final Player player;
+
+  // The proxy passed to the command.
+  private final Player proxy;
+
+  // Name of the player, when the outbox got created.
+  private final String name;
+
+  // Display name of the player, when the outbox got created.
+  private final String displayName;
+
+  // Location of the player, when the outbox got created.
+  private final Location location;
+
+  // True, if the player was an operator, when the outbox got created.
+  private final boolean op;
+
+  // Captured permissions of the player.
+  private final Map<String, Boolean> permissions;
+
+  // Calls waiting for delivery.
+  private final List<Call> calls = new ArrayList<Call>();
+
+  /**
+   * Creates a new outbox for the player. Must be called on the main thread.
+   *
+   * @param player      the player to wrap.
+   * @param permissions the permissions, which could be checked by the command.
+   * @param resolver    resolves the permissions of the player.
+   */
+  public PlayerOutbox(Player player, Collection<String> permissions, PermissionsResolver resolver) {
+    this.player = player;
+    this.proxy = (Player) Proxy.newProxyInstance(Player.class.getClassLoader(), new Class<?>[]{Player.class}, this);
+    this.name = player.getName();
+    this.displayName = player.getDisplayName();
+    this.location = player.getLocation().clone();
+    this.op = player.isOp();
+
+    this.permissions = new HashMap<String, Boolean>();
+    for (String permission : permissions) {
+      this.permissions.put(permission, resolver.hasPermission(player, permission));
+    }
+  }
+
+  /**
+   * Returns the outbox of the passed player.
+   *
+   * @param player the player which could be wrapped by an outbox.
+   * @return the outbox or null, if the player is not wrapped.
+   */
+  public static PlayerOutbox getOutbox(Player player) {
+    if (Proxy.isProxyClass(player.getClass())) {
+      InvocationHandler handler = Proxy.getInvocationHandler(player);
+      if (handler instanceof PlayerOutbox) {
+        return (PlayerOutbox) handler;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns the captured permission of the player.
+   *
+   * @param permission the permission to check.
+   * @return true, if the player has the permission.
+   */
+  public boolean hasPermission(String permission) {
+    Boolean allowed = permissions.get(permission);
+    if (allowed == null) {
+      throw new IllegalStateException("Permission " + permission + " was not captured for the command!");
+    }
+
+    return allowed;
+  }
+
+  /**
+   * @return the player to pass to the command.
+   */
+  public Player getPlayer() {
+    return proxy;
+  }
+
+  /**
+   * Handles the call of a method of the proxy.
+   *
+   * @param proxy  the proxy itself.
+   * @param method the called method.
+   * @param args   the arguments of the call.
+   * @return the result of the call.
+   * @throws Throwable thrown by the called method.
+   */
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (DEFERRED_METHODS.contains(method.getName())) {
+      synchronized (calls) {
+        calls.add(new Call(method, args));
+      }
+
+      if (method.getReturnType() == boolean.class) {
+        return true;
+      }
+      return null;
+    }
+
+    String methodName = method.getName();
+    int argumentCount = args == null ? 0 : args.length;
+    if (argumentCount == 0) {
+      if ("getName".equals(methodName)) {
+        return name;
+      } else if ("getDisplayName".equals(methodName)) {
+        return displayName;
+      } else if ("getLocation".equals(methodName)) {
+        return location.clone();
+      } else if ("getWorld".equals(methodName)) {
+        return location.getWorld();
+      } else if ("isOp".equals(methodName)) {
+        return op;
+      } else if ("hashCode".equals(methodName)) {
+        return System.identityHashCode(proxy);
+      } else if ("toString".equals(methodName)) {
+        return "PlayerOutbox{" + name + "}";
+      }
+    } else if (argumentCount == 1) {
+      if ("equals".equals(methodName)) {
+        return proxy == args[0];
+      } else if ("hasPermission".equals(methodName) && args[0] instanceof String) {
+        return hasPermission((String) args[0]);
+      }
+    }
+
+    throw new UnsupportedOperationException(methodName + " is not available outside of the main thread!");
+  }
+
+  /**
+   * Delivers the collected calls. Must be called on the main thread.
+   */
+  public void run() {
+    List<Call> callsToDeliver;
+    synchronized (calls) {
+      callsToDeliver = new ArrayList<Call>(calls);
+      calls.clear();
+    }
+
+    for (Call call : callsToDeliver) {
+      try {
+        call.method.invoke(player, call.args);
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      } catch (InvocationTargetException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+    }
+  }
+
+  // Collected call of a method.
+  private static final class Call {
+    private final Method method;
+    private final Object[] args;
+
+    private Call(Method method, Object[] args) {
+      this.method = method;
+      this.args = args;
+    }
+  }
+}
@@ -18,9 +18,8 @@
 
 package at.co.hohl.myresidence.bukkit.listener;
 
-import at.co.hohl.mcutils.chat.Chat;
 import at.co.hohl.myresidence.PermissionsResolver;
-import at.co.hohl.myresidence.translations.Translate;
+import at.co.hohl.myresidence.bukkit.DenialNotifier;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockListener;
 import org.bukkit.event.block.BlockPlaceEvent;
@@ -33,13 +32,17 @@ import org.bukkit.event.block.BlockPlaceEvent;
 public class BuildPermissionsListener extends BlockListener {
   private final PermissionsResolver permissionsResolver;
 
+  private final DenialNotifier denialNotifier;
+
   /**
    * Creates a new BuildPermissionsListener.
    *
    * @param permissionsResolver resolver used to check if player is allowed to do that.
+   * @param denialNotifier      notifies the players, who are not allowed to do that.
    */
-  public BuildPermissionsListener(PermissionsResolver permissionsResolver) {
+  public BuildPermissionsListener(PermissionsResolver permissionsResolver, DenialNotifier denialNotifier) {
     this.permissionsResolver = permissionsResolver;
+    this.denialNotifier = denialNotifier;
   }
 
   @Override
@@ -49,7 +52,7 @@ public class BuildPermissionsListener extends BlockListener {
     }
 
     if (!permissionsResolver.isAllowedToPlaceBlockAt(event.getPlayer(), event.getBlockPlaced())) {
-      Chat.sendMessage(event.getPlayer(), Translate.get("not_allowed_to_build"));
+      denialNotifier.deny(event.getPlayer(), "not_allowed_to_build");
       event.setBuild(false);
     }
   }
@@ -61,7 +64,7 @@ public class BuildPermissionsListener extends BlockListener {
     }
 
     if (!permissionsResolver.isAllowedToDestroyBlockAt(event.getPlayer(), event.getBlock())) {
-      Chat.sendMessage(event.getPlayer(), Translate.get("not_allowed_to_destroy"));
+      denialNotifier.deny(event.getPlayer(), "not_allowed_to_destroy");
       event.setCancelled(true);
     }
   }
@@ -24,15 +24,26 @@ import org.bukkit.World;
 import org.bukkit.event.entity.CreatureSpawnEvent;
 import org.bukkit.event.entity.EntityListener;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * Listener which checks if mobs are allowed to spawn.
+ * Listener which checks if mobs are allowed to spawn. The living entities of a world are counted again, when the last
+ * count got too old, and every spawn in between is added to the count, so the spawn limit can be checked without
+ * collecting all living entities on every spawn.
  *
  * @author Michael Hohl
  */
 public class CreatureSpawnListener extends EntityListener {
+  // Milliseconds after which the living entities of a world are counted again.
+  private static final long COUNT_INTERVAL = 5000;
+
   private final MyResidence plugin;
   private final PermissionsResolver permissionsResolver;
 
+  // Counted living entities by the name of the world.
+  private final Map<String, LivingEntityCount> livingEntities = new HashMap<String, LivingEntityCount>();
+
   public CreatureSpawnListener(MyResidence plugin) {
     this.plugin = plugin;
     this.permissionsResolver = plugin.getNation().getPermissionsResolver();
@@ -50,12 +61,41 @@ public class CreatureSpawnListener extends EntityListener {
     }
 
     World creatureWorld = event.getLocation().getWorld();
-
+    LivingEntityCount livingEntitiesInWorld = getLivingEntities(creatureWorld);
 
     if ((!event.getSpawnReason().equals(CreatureSpawnEvent.SpawnReason.CUSTOM) &&
-            creatureWorld.getLivingEntities().size() > plugin.getConfiguration(creatureWorld).getMobSpawnLimit())
+            livingEntitiesInWorld.count > plugin.getConfiguration(creatureWorld).getSnapshot().getMobSpawnLimit())
             || !permissionsResolver.isAllowedToSpawnCreature(event)) {
       event.setCancelled(true);
+    } else {
+      ++livingEntitiesInWorld.count;
+    }
+  }
+
+  // Returns the count of the world. Counts the living entities again, if the world isn't counted yet or the count is
+  // too old, so entities which died or despawned since are not counted anymore.
+  private LivingEntityCount getLivingEntities(World world) {
+    LivingEntityCount livingEntityCount = livingEntities.get(world.getName());
+    if (livingEntityCount == null) {
+      livingEntityCount = new LivingEntityCount();
+      livingEntities.put(world.getName(), livingEntityCount);
     }
+
+    long now = System.currentTimeMillis();
+    if (now - livingEntityCount.countedAt >= COUNT_INTERVAL) {
+      livingEntityCount.count = world.getLivingEntities().size();
+      livingEntityCount.countedAt = now;
+    }
+
+    return livingEntityCount;
+  }
+
+  // Number of living entities of a world.
+  private static final class LivingEntityCount {
+    // Counted living entities plus the spawns since.
+    private int count;
+
+    // Time of the last count.
+    private long countedAt;
   }
 }
@@ -0,0 +1,51 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.listener;
+
+import at.co.hohl.myresidence.bukkit.persistent.PersistNation;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerListener;
+
+/**
+ * Loads the data of joining players, so it's already cached when they start building.
+ *
+ * @author Michael Hohl
+ */
+public class InhabitantJoinListener extends PlayerListener {
+  private final PersistNation nation;
+
+  /**
+   * Creates a new listener, which loads the data of joining players.
+   *
+   * @param nation the nation.
+   */
+  public InhabitantJoinListener(PersistNation nation) {
+    this.nation = nation;
+  }
+
+  /**
+   * Called when a player joins the server.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public void onPlayerJoin(PlayerJoinEvent event) {
+    nation.preloadInhabitant(event.getPlayer().getName());
+  }
+}
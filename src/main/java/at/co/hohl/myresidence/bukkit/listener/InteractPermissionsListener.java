@@ -18,9 +18,8 @@
 
 package at.co.hohl.myresidence.bukkit.listener;
 
-import at.co.hohl.mcutils.chat.Chat;
 import at.co.hohl.myresidence.PermissionsResolver;
-import at.co.hohl.myresidence.translations.Translate;
+import at.co.hohl.myresidence.bukkit.DenialNotifier;
 import org.bukkit.event.player.*;
 
 /**
@@ -31,13 +30,17 @@ import org.bukkit.event.player.*;
 public class InteractPermissionsListener extends PlayerListener {
   private final PermissionsResolver permissionsResolver;
 
+  private final DenialNotifier denialNotifier;
+
   /**
    * Creates a new InteractPermissionsListener.
    *
    * @param permissionsResolver permissions resolver to use for retrieving permissions.
+   * @param denialNotifier      notifies the players, who are not allowed to do that.
    */
-  public InteractPermissionsListener(PermissionsResolver permissionsResolver) {
+  public InteractPermissionsListener(PermissionsResolver permissionsResolver, DenialNotifier denialNotifier) {
     this.permissionsResolver = permissionsResolver;
+    this.denialNotifier = denialNotifier;
   }
 
   @Override
@@ -48,7 +51,7 @@ public class InteractPermissionsListener extends PlayerListener {
 
     if (!permissionsResolver.isAllowedToInteractWithBlock(event.getPlayer(),
             event.getBlockClicked())) {
-      Chat.sendMessage(event.getPlayer(), Translate.get("not_allowed_to_fill_bucket_here"));
+      denialNotifier.deny(event.getPlayer(), "not_allowed_to_fill_bucket_here");
       event.setCancelled(true);
     }
   }
@@ -61,7 +64,7 @@ public class InteractPermissionsListener extends PlayerListener {
 
     if (!permissionsResolver.isAllowedToPlaceBlockAt(event.getPlayer(),
             event.getBlockClicked())) {
-      Chat.sendMessage(event.getPlayer(), Translate.get("not_allowed_to_empty_bucket_here"));
+      denialNotifier.deny(event.getPlayer(), "not_allowed_to_empty_bucket_here");
       event.setCancelled(true);
     }
   }
@@ -74,7 +77,7 @@ public class InteractPermissionsListener extends PlayerListener {
 
     if (!permissionsResolver.isAllowedToInteractWithBlock(event.getPlayer(),
             event.getPlayer().getLocation().getBlock())) {
-      Chat.sendMessage(event.getPlayer(), Translate.get("not_allowed_to_sleep_here"));
+      denialNotifier.deny(event.getPlayer(), "not_allowed_to_sleep_here");
       event.setCancelled(true);
     }
   }
@@ -87,7 +90,7 @@ public class InteractPermissionsListener extends PlayerListener {
 
     if (!permissionsResolver.isAllowedToInteractWithBlock(event.getPlayer(),
             event.getPlayer().getLocation().getBlock())) {
-      Chat.sendMessage(event.getPlayer(), Translate.get("not_allowed_to_fish_here"));
+      denialNotifier.deny(event.getPlayer(), "not_allowed_to_fish_here");
       event.setCancelled(true);
     }
   }
@@ -0,0 +1,73 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.listener;
+
+import at.co.hohl.myresidence.Nation;
+import at.co.hohl.myresidence.event.ResidenceChangedEvent;
+import at.co.hohl.myresidence.event.ResidenceCreatedEvent;
+import at.co.hohl.myresidence.event.ResidenceListener;
+import at.co.hohl.myresidence.event.ResidenceRemovedEvent;
+
+/**
+ * Listens to residence events and keeps the leaderboards of the nation in order.
+ *
+ * @author Michael Hohl
+ */
+public class LeaderboardUpdateListener extends ResidenceListener {
+  private final Nation nation;
+
+  /**
+   * Creates a new listener, which updates the leaderboards.
+   *
+   * @param nation the nation.
+   */
+  public LeaderboardUpdateListener(Nation nation) {
+    this.nation = nation;
+  }
+
+  /**
+   * Called when a new residence is created.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public void onResidenceCreated(ResidenceCreatedEvent event) {
+    nation.getLeaderboards().update(event.getResidence());
+  }
+
+  /**
+   * Called when a residence is changed.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public void onResidenceChanged(ResidenceChangedEvent event) {
+    nation.getLeaderboards().update(event.getResidence());
+  }
+
+  /**
+   * Called when a residence is removed.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public void onResidenceRemoved(ResidenceRemovedEvent event) {
+    nation.getLeaderboards().remove(event.getResidence());
+  }
+}
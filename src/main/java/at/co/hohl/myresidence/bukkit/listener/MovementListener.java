@@ -0,0 +1,128 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.listener;
+
+import at.co.hohl.myresidence.event.EventManager;
+import at.co.hohl.myresidence.event.ResidenceEnteredEvent;
+import at.co.hohl.myresidence.event.ResidenceLeftEvent;
+import at.co.hohl.myresidence.event.TownEnteredEvent;
+import at.co.hohl.myresidence.event.TownLeftEvent;
+import at.co.hohl.myresidence.storage.Session;
+import at.co.hohl.myresidence.storage.SessionManager;
+import at.co.hohl.myresidence.storage.persistent.Residence;
+import at.co.hohl.myresidence.storage.persistent.Town;
+import org.bukkit.Location;
+import org.bukkit.event.player.PlayerListener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+/**
+ * Tracks the residence and town every player stands in and fires events when players enter or leave them.
+ *
+ * @author Michael Hohl
+ */
+public class MovementListener extends PlayerListener {
+  private final SessionManager sessionManager;
+
+  private final EventManager eventManager;
+
+  /**
+   * Creates a new listener, which tracks the movement of the players.
+   *
+   * @param sessionManager the manager of the sessions.
+   * @param eventManager   the manager to fire the events.
+   */
+  public MovementListener(SessionManager sessionManager, EventManager eventManager) {
+    this.sessionManager = sessionManager;
+    this.eventManager = eventManager;
+  }
+
+  /**
+   * Called when a player moves.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public void onPlayerMove(PlayerMoveEvent event) {
+    if (event.isCancelled()) {
+      return;
+    }
+
+    // Most moves do not leave the block, so they can not leave a residence or town either.
+    Location from = event.getFrom();
+    Location to = event.getTo();
+    if (from.getBlockX() == to.getBlockX() && from.getBlockY() == to.getBlockY() &&
+            from.getBlockZ() == to.getBlockZ() && from.getWorld() == to.getWorld()) {
+      return;
+    }
+
+    track(sessionManager.get(event.getPlayer()), to);
+  }
+
+  /**
+   * Called when a player teleports.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public void onPlayerTeleport(PlayerTeleportEvent event) {
+    if (event.isCancelled()) {
+      return;
+    }
+
+    track(sessionManager.get(event.getPlayer()), event.getTo());
+  }
+
+  // Moves the session to the location and fires the events for the left and entered residence and town.
+  private void track(Session session, Location location) {
+    Residence previousResidence;
+    Residence currentResidence;
+    Town previousTown;
+    Town currentTown;
+
+    synchronized (session) {
+      if (!session.moveTo(location)) {
+        return;
+      }
+
+      previousResidence = session.getPreviousResidence();
+      currentResidence = session.getCurrentResidence();
+      previousTown = session.getPreviousTown();
+      currentTown = session.getCurrentTown();
+    }
+
+    if (previousResidence != currentResidence) {
+      if (previousResidence != null) {
+        eventManager.callEvent(new ResidenceLeftEvent(session, previousResidence));
+      }
+      if (currentResidence != null) {
+        eventManager.callEvent(new ResidenceEnteredEvent(session, currentResidence));
+      }
+    }
+
+    if (previousTown != currentTown) {
+      if (previousTown != null) {
+        eventManager.callEvent(new TownLeftEvent(session, previousTown));
+      }
+      if (currentTown != null) {
+        eventManager.callEvent(new TownEnteredEvent(session, currentTown));
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.listener;
+
+import at.co.hohl.mcutils.chat.Chat;
+import at.co.hohl.myresidence.MyResidence;
+import at.co.hohl.myresidence.event.TownListener;
+import at.co.hohl.myresidence.event.TownRemovedEvent;
+import org.bukkit.entity.Player;
+
+/**
+ * TownListener used to inform the major on changes.
+ *
+ * @author Michael Hohl
+ */
+public class NotifyMajorListener extends TownListener {
+  private final MyResidence plugin;
+
+  /**
+   * Creates a new listener, which notifies the major.
+   *
+   * @param plugin the plugin.
+   */
+  public NotifyMajorListener(MyResidence plugin) {
+    this.plugin = plugin;
+  }
+
+  /**
+   * Called when a town is removed.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public void onTownRemoved(TownRemovedEvent event) {
+    if (event.getRemovedBy() == null) {
+      return;
+    }
+
+    Player major = plugin.getServer().getPlayer(event.getRemovedBy().getName());
+    if (major != null) {
+      Chat.sendMessage(major, "&2Town {0} removed!", event.getTown());
+    }
+  }
+}
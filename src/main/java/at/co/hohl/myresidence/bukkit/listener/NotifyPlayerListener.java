@@ -18,7 +18,6 @@
 
 package at.co.hohl.myresidence.bukkit.listener;
 
-import at.co.hohl.mcutils.chat.Chat;
 import at.co.hohl.myresidence.MyResidence;
 import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.event.ResidenceLikedEvent;
@@ -58,7 +57,7 @@ public class NotifyPlayerListener extends ResidenceListener {
     Player owner = Bukkit.getServer().getPlayer(nation.getInhabitant(event.getResidence().getOwnerId()).getName());
 
     if (owner != null) {
-      Chat.sendMessage(owner, Translate.get("liked_your_residence"), event.getLikedBy().getName());
+      owner.sendMessage(Translate.getMessage("liked_your_residence").format(event.getLikedBy().getName()));
     }
   }
 }
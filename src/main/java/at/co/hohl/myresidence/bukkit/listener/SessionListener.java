@@ -0,0 +1,62 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.listener;
+
+import at.co.hohl.myresidence.storage.SessionManager;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerListener;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Opens the sessions of joining players and closes them when the players quit.
+ *
+ * @author Michael Hohl
+ */
+public class SessionListener extends PlayerListener {
+  private final SessionManager sessionManager;
+
+  /**
+   * Creates a new listener, which manages the sessions of the players.
+   *
+   * @param sessionManager the manager of the sessions.
+   */
+  public SessionListener(SessionManager sessionManager) {
+    this.sessionManager = sessionManager;
+  }
+
+  /**
+   * Called when a player joins the server.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public void onPlayerJoin(PlayerJoinEvent event) {
+    sessionManager.open(event.getPlayer());
+  }
+
+  /**
+   * Called when a player leaves the server.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public void onPlayerQuit(PlayerQuitEvent event) {
+    sessionManager.close(event.getPlayer());
+  }
+}
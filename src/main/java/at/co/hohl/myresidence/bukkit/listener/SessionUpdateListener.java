@@ -0,0 +1,65 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.listener;
+
+import at.co.hohl.myresidence.event.EventListener;
+import at.co.hohl.myresidence.event.ResidenceRemovedEvent;
+import at.co.hohl.myresidence.event.TownRemovedEvent;
+import at.co.hohl.myresidence.storage.SessionManager;
+
+/**
+ * Listens to removed residences and towns and removes them from the selections of the sessions.
+ *
+ * @author Michael Hohl
+ */
+public class SessionUpdateListener implements EventListener {
+  private final SessionManager sessionManager;
+
+  /**
+   * Creates a new listener, which updates the sessions.
+   *
+   * @param sessionManager the manager of the sessions.
+   */
+  public SessionUpdateListener(SessionManager sessionManager) {
+    this.sessionManager = sessionManager;
+  }
+
+  /**
+   * Checks if the handler can handle the event.
+   *
+   * @param o the object which is the event.
+   * @return true, if the handler could handle the event.
+   */
+  public boolean canHandle(Object o) {
+    return o instanceof ResidenceRemovedEvent || o instanceof TownRemovedEvent;
+  }
+
+  /**
+   * Handles the event.
+   *
+   * @param o the object which is the event.
+   */
+  public void handle(Object o) {
+    if (o instanceof ResidenceRemovedEvent) {
+      sessionManager.forgetResidence(((ResidenceRemovedEvent) o).getResidence().getId());
+    } else if (o instanceof TownRemovedEvent) {
+      sessionManager.forgetTown(((TownRemovedEvent) o).getTown().getId());
+    }
+  }
+}
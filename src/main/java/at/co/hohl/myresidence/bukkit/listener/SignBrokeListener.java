@@ -18,12 +18,11 @@
 
 package at.co.hohl.myresidence.bukkit.listener;
 
-import at.co.hohl.mcutils.chat.Chat;
 import at.co.hohl.myresidence.MyResidence;
 import at.co.hohl.myresidence.Nation;
+import at.co.hohl.myresidence.bukkit.DenialNotifier;
 import at.co.hohl.myresidence.event.ResidenceChangedEvent;
 import at.co.hohl.myresidence.storage.persistent.Residence;
-import at.co.hohl.myresidence.translations.Translate;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
@@ -42,15 +41,19 @@ public class SignBrokeListener extends BlockListener {
 
   private final Nation nation;
 
+  private final DenialNotifier denialNotifier;
+
   /**
    * Creates a new sing broke listener.
    *
-   * @param plugin the plugin which holds the instance.
-   * @param nation the nation.
+   * @param plugin         the plugin which holds the instance.
+   * @param nation         the nation.
+   * @param denialNotifier notifies the players, who are not allowed to break the sign.
    */
-  public SignBrokeListener(MyResidence plugin, Nation nation) {
+  public SignBrokeListener(MyResidence plugin, Nation nation, DenialNotifier denialNotifier) {
     this.nation = nation;
     this.plugin = plugin;
+    this.denialNotifier = denialNotifier;
   }
 
   /**
@@ -78,7 +81,7 @@ public class SignBrokeListener extends BlockListener {
         return;
       }
 
-      Chat.sendMessage(event.getPlayer(), Translate.get("cant_destroy_sign"));
+      denialNotifier.deny(event.getPlayer(), "cant_destroy_sign");
       event.setCancelled(true);
 
       plugin.getEventManager().callEvent(new ResidenceChangedEvent(null, residence));
@@ -98,7 +101,7 @@ public class SignBrokeListener extends BlockListener {
             return;
           }
 
-          Chat.sendMessage(event.getPlayer(), Translate.get("cant_destroy_sign"));
+          denialNotifier.deny(event.getPlayer(), "cant_destroy_sign");
           event.setCancelled(true);
 
           plugin.getEventManager().callEvent(new ResidenceChangedEvent(null, residence));
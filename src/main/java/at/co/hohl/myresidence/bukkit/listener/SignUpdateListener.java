@@ -18,35 +18,24 @@
 
 package at.co.hohl.myresidence.bukkit.listener;
 
-import at.co.hohl.myresidence.MyResidence;
-import at.co.hohl.myresidence.Nation;
+import at.co.hohl.myresidence.bukkit.persistent.SignRenderQueue;
 import at.co.hohl.myresidence.event.*;
-import at.co.hohl.myresidence.exceptions.ResidenceSignMissingException;
-import at.co.hohl.myresidence.storage.persistent.Residence;
-import com.sk89q.util.StringUtil;
-import org.bukkit.ChatColor;
-import org.bukkit.block.Block;
-import org.bukkit.block.Sign;
 
 /**
- * Listens to residence events and updates the sign correct.
+ * Listens to residence events and queues updating the signs.
  *
  * @author Michael Hohl
  */
 public class SignUpdateListener extends ResidenceListener {
-  private final Nation nation;
-
-  private final MyResidence plugin;
+  private final SignRenderQueue signRenderQueue;
 
   /**
    * Creates a new listener, which updates the signs of the residences.
    *
-   * @param nation the nation.
-   * @param plugin the plugin.
+   * @param signRenderQueue the queue which renders the signs.
    */
-  public SignUpdateListener(Nation nation, MyResidence plugin) {
-    this.nation = nation;
-    this.plugin = plugin;
+  public SignUpdateListener(SignRenderQueue signRenderQueue) {
+    this.signRenderQueue = signRenderQueue;
   }
 
   /**
@@ -56,11 +45,7 @@ public class SignUpdateListener extends ResidenceListener {
    */
   @Override
   public void onResidenceCreated(ResidenceCreatedEvent event) {
-    try {
-      updateResidenceSign(event.getResidence());
-    } catch (ResidenceSignMissingException e) {
-      plugin.severe(e.getMessage());
-    }
+    signRenderQueue.render(event.getResidence());
   }
 
   /**
@@ -70,11 +55,7 @@ public class SignUpdateListener extends ResidenceListener {
    */
   @Override
   public void onResidenceChanged(ResidenceChangedEvent event) {
-    try {
-      updateResidenceSign(event.getResidence());
-    } catch (ResidenceSignMissingException e) {
-      plugin.severe(e.getMessage());
-    }
+    signRenderQueue.render(event.getResidence());
   }
 
   /**
@@ -84,63 +65,6 @@ public class SignUpdateListener extends ResidenceListener {
    */
   @Override
   public void onResidenceLiked(ResidenceLikedEvent event) {
-    try {
-      updateResidenceSign(event.getResidence());
-    } catch (ResidenceSignMissingException e) {
-      plugin.severe(e.getMessage());
-    }
-  }
-
-  /**
-   * Called when a residence is removed.
-   *
-   * @param event the event itself.
-   */
-  @Override
-  public void onResidenceRemoved(ResidenceRemovedEvent event) {
-    try {
-      Block signBlock = nation.getResidenceManager(event.getResidence()).getSign();
-      Sign sign = (Sign) signBlock.getState();
-
-      for (int index = 0; index < 4; ++index) {
-        sign.setLine(index, "");
-        sign.update();
-      }
-    } catch (ResidenceSignMissingException e) {
-      plugin.severe("Sign not found for residence %s!", event.getResidence().getName());
-    }
-  }
-
-  /**
-   * Updates the sign linked to passed Residence.
-   *
-   * @param residence Residence to update.
-   */
-  private void updateResidenceSign(Residence residence) throws ResidenceSignMissingException {
-    Block signBlock = nation.getResidenceManager(residence).getSign();
-
-    if (signBlock == null) {
-      throw new ResidenceSignMissingException(residence);
-    }
-
-    Sign sign = (Sign) signBlock.getState();
-    sign.setLine(0, plugin.getConfiguration(signBlock.getWorld()).getSignTitle());
-    sign.setLine(1, StringUtil.trimLength(residence.getName(), 16));
-    if (residence.isForSale()) {
-      sign.setLine(2, ChatColor.YELLOW +
-              StringUtil.trimLength(plugin.getConfiguration(signBlock.getWorld()).getSignSaleText(), 14));
-
-      sign.setLine(3, ChatColor.YELLOW + StringUtil.trimLength(plugin.format(residence.getPrice()), 14));
-    } else {
-      sign.setLine(2, nation.getInhabitant(residence.getOwnerId()).getName());
-
-      int likes = nation.getResidenceManager(residence).getLikes().size();
-      if (likes > 0) {
-        sign.setLine(3, likes + " Likes");
-      } else {
-        sign.setLine(3, "");
-      }
-    }
-    sign.update();
+    signRenderQueue.render(event.getResidence());
   }
 }
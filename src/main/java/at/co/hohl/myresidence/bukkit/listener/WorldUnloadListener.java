@@ -0,0 +1,54 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.listener;
+
+import at.co.hohl.myresidence.bukkit.MyResidencePlugin;
+import org.bukkit.event.world.WorldListener;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Listens for unloaded worlds and drops everything the plugin keeps for them.
+ *
+ * @author Michael Hohl
+ */
+public class WorldUnloadListener extends WorldListener {
+  /**
+   * Plugin which holds the instance.
+   */
+  private final MyResidencePlugin plugin;
+
+  /**
+   * Creates a new WorldUnloadListener.
+   *
+   * @param plugin the plugin which holds the instance.
+   */
+  public WorldUnloadListener(MyResidencePlugin plugin) {
+    this.plugin = plugin;
+  }
+
+  /**
+   * Called when a world gets unloaded.
+   *
+   * @param event the occurred event.
+   */
+  @Override
+  public void onWorldUnload(WorldUnloadEvent event) {
+    plugin.unloadConfiguration(event.getWorld());
+  }
+}
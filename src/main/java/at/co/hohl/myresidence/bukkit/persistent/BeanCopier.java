@@ -0,0 +1,184 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.persistent;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copies the persistent fields of entity beans, so a bean can be written by another thread, while the original is
+ * still changed by the thread which owns it. The values are kept as plain objects, so they could also be stored in the
+ * journal of the write-behind queue.
+ *
+ * @author Michael Hohl
+ */
+final class BeanCopier {
+  // Persistent fields by the entity class.
+  private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<Class<?>, Field[]>();
+
+  // Id fields by the entity class.
+  private static final Map<Class<?>, Field> ID_FIELDS = new ConcurrentHashMap<Class<?>, Field>();
+
+  /**
+   * Returns the class annotated as entity. Beans loaded by Ebean are instances of generated subclasses.
+   *
+   * @param bean the bean to get the entity class for.
+   * @return the entity class of the bean.
+   */
+  static Class<?> getEntityClass(Object bean) {
+    for (Class<?> type = bean.getClass(); type != null; type = type.getSuperclass()) {
+      if (type.isAnnotationPresent(Entity.class)) {
+        return type;
+      }
+    }
+
+    throw new IllegalArgumentException(bean.getClass().getName() + " is not an entity!");
+  }
+
+  /**
+   * @param type the entity class.
+   * @return the name of the table of the entity class.
+   */
+  static String getTableName(Class<?> type) {
+    Table table = type.getAnnotation(Table.class);
+    return table != null ? table.name() : type.getSimpleName();
+  }
+
+  /**
+   * Reads the values of the persistent fields of the bean.
+   *
+   * @param bean the bean to read.
+   * @return the values by the names of the fields.
+   */
+  static Map<String, Object> getValues(Object bean) {
+    Class<?> type = getEntityClass(bean);
+    try {
+      Map<String, Object> values = new HashMap<String, Object>();
+      for (Field field : getFields(type)) {
+        values.put(field.getName(), field.get(bean));
+      }
+      return values;
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Could not read " + type.getName() + "!", e);
+    }
+  }
+
+  /**
+   * Creates a new instance of the entity class with the passed values. Values of fields which do not exist anymore
+   * are ignored.
+   *
+   * @param type   the entity class.
+   * @param values the values by the names of the fields.
+   * @return the created bean.
+   */
+  static Object create(Class<?> type, Map<String, Object> values) {
+    try {
+      Object bean = type.newInstance();
+      for (Field field : getFields(type)) {
+        if (values.containsKey(field.getName())) {
+          field.set(bean, values.get(field.getName()));
+        }
+      }
+      return bean;
+    } catch (InstantiationException e) {
+      throw new IllegalStateException("Could not create " + type.getName() + "!", e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Could not create " + type.getName() + "!", e);
+    }
+  }
+
+  /**
+   * @param bean the bean to get the id for.
+   * @return the id of the bean, 0 if it does not have one yet.
+   */
+  static int getId(Object bean) {
+    try {
+      return getIdField(getEntityClass(bean)).getInt(bean);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Could not read id of " + bean.getClass().getName() + "!", e);
+    }
+  }
+
+  /**
+   * @param bean the bean to set the id for.
+   * @param id   the id to set.
+   */
+  static void setId(Object bean, int id) {
+    try {
+      getIdField(getEntityClass(bean)).setInt(bean, id);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException("Could not set id of " + bean.getClass().getName() + "!", e);
+    }
+  }
+
+  // Do not instantiate these helper class!
+  private BeanCopier() {
+  }
+
+  // Returns the persistent fields of the entity class and its super classes.
+  private static Field[] getFields(Class<?> type) {
+    Field[] fields = FIELDS.get(type);
+    if (fields != null) {
+      return fields;
+    }
+
+    List<Field> persistentFields = new ArrayList<Field>();
+    for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+      for (Field field : current.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic() ||
+                field.getName().startsWith("_ebean")) {
+          continue;
+        }
+
+        field.setAccessible(true);
+        persistentFields.add(field);
+      }
+    }
+
+    fields = persistentFields.toArray(new Field[persistentFields.size()]);
+    FIELDS.put(type, fields);
+    return fields;
+  }
+
+  // Returns the field annotated as id of the entity class.
+  private static Field getIdField(Class<?> type) {
+    Field idField = ID_FIELDS.get(type);
+    if (idField != null) {
+      return idField;
+    }
+
+    for (Field field : getFields(type)) {
+      if (field.isAnnotationPresent(Id.class)) {
+        ID_FIELDS.put(type, field);
+        return field;
+      }
+    }
+
+    throw new IllegalArgumentException(type.getName() + " does not have an id!");
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.persistent;
+
+import at.co.hohl.myresidence.InvalidResidenceListener;
+import at.co.hohl.myresidence.MyResidence;
+import at.co.hohl.myresidence.storage.cache.LongHashMap;
+import at.co.hohl.myresidence.storage.persistent.Residence;
+import at.co.hohl.myresidence.storage.persistent.ResidenceSign;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.WorldListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Searches residences, whose signs got lost. Signs are grouped by their chunk, so all signs of a chunk are checked at
+ * once. The check runs on the main thread within a time budget per tick. The result is reported as soon as all loaded
+ * chunks are checked, signs inside unloaded chunks are checked when their chunk gets loaded and residences found
+ * invalid by then are reported to the listeners of the scan as follow-up results.
+ *
+ * @author Michael Hohl
+ */
+public class InvalidResidenceScanner extends WorldListener implements Runnable {
+  // Nanoseconds the scanner is allowed to spend per tick.
+  private static final long TIME_BUDGET = 5000000L;
+
+  // Milliseconds between two progress reports in the log.
+  private static final long PROGRESS_INTERVAL = 30000L;
+
+  private final MyResidence plugin;
+  private final PersistNation nation;
+
+  // Listeners waiting for the result of the running scan.
+  private final List<InvalidResidenceListener> listeners = new CopyOnWriteArrayList<InvalidResidenceListener>();
+
+  // Listeners of the last finished scan, waiting for the results of the deferred chunks.
+  private final List<InvalidResidenceListener> followUpListeners =
+          new CopyOnWriteArrayList<InvalidResidenceListener>();
+
+  // Chunks which are ready to be checked.
+  private final LinkedList<ChunkSigns> pendingChunks = new LinkedList<ChunkSigns>();
+
+  // Chunks waiting to be loaded, by world and packed chunk coordinates.
+  private final Map<String, LongHashMap<ChunkSigns>> deferredChunks = new HashMap<String, LongHashMap<ChunkSigns>>();
+
+  // Residences with invalid signs found by the running scan or in deferred chunks, which are not reported yet.
+  private final List<Residence> invalidResidences = new ArrayList<Residence>();
+
+  // True, while a scan is running.
+  private boolean running;
+
+  // True, while the next check is scheduled.
+  private boolean scheduled;
+
+  // Number of signs to check in the running scan.
+  private int totalSigns;
+
+  // Number of signs already checked in the running scan.
+  private int checkedSigns;
+
+  // Number of signs waiting for their chunk to be loaded, also after the scan finished.
+  private int deferredSigns;
+
+  // Time of the last progress report.
+  private long lastReport;
+
+  /**
+   * Creates a new scanner.
+   *
+   * @param plugin the plugin which holds the instance.
+   * @param nation the nation holding the residences.
+   */
+  public InvalidResidenceScanner(MyResidence plugin, PersistNation nation) {
+    this.plugin = plugin;
+    this.nation = nation;
+  }
+
+  /**
+   * Starts a new scan. If a scan is already running, the listener gets notified when the running scan finished. A new
+   * scan replaces the deferred chunks of the last scan.
+   *
+   * @param listener the listener to notify about the found residences.
+   * @return true, if a new scan got started.
+   */
+  public synchronized boolean start(InvalidResidenceListener listener) {
+    listeners.add(listener);
+    if (running) {
+      return false;
+    }
+
+    followUpListeners.clear();
+    pendingChunks.clear();
+    deferredChunks.clear();
+    deferredSigns = 0;
+
+    Map<String, LongHashMap<ChunkSigns>> chunks = new HashMap<String, LongHashMap<ChunkSigns>>();
+    for (ResidenceSign residenceSign : nation.getResidenceSigns()) {
+      LongHashMap<ChunkSigns> worldChunks = chunks.get(residenceSign.getWorld());
+      if (worldChunks == null) {
+        worldChunks = new LongHashMap<ChunkSigns>();
+        chunks.put(residenceSign.getWorld(), worldChunks);
+      }
+
+      int chunkX = residenceSign.getX() >> 4;
+      int chunkZ = residenceSign.getZ() >> 4;
+      long key = LongHashMap.pack(chunkX, chunkZ);
+      ChunkSigns chunkSigns = worldChunks.get(key);
+      if (chunkSigns == null) {
+        chunkSigns = new ChunkSigns(residenceSign.getWorld(), chunkX, chunkZ);
+        worldChunks.put(key, chunkSigns);
+        pendingChunks.add(chunkSigns);
+      }
+
+      chunkSigns.signs.add(residenceSign);
+      ++totalSigns;
+    }
+
+    plugin.info("Check %d residence signs in %d chunks.", totalSigns, pendingChunks.size());
+
+    running = true;
+    lastReport = System.currentTimeMillis();
+    schedule();
+    return true;
+  }
+
+  /**
+   * @return true, while a scan is running.
+   */
+  public synchronized boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * @return the number of signs to check in the running scan.
+   */
+  public synchronized int getTotalSigns() {
+    return totalSigns;
+  }
+
+  /**
+   * @return the number of signs already checked in the running scan.
+   */
+  public synchronized int getCheckedSigns() {
+    return checkedSigns;
+  }
+
+  /**
+   * @return the number of signs waiting for their chunk to be loaded.
+   */
+  public synchronized int getDeferredSigns() {
+    return deferredSigns;
+  }
+
+  /**
+   * Checks the signs of the pending chunks, until the time budget is used up. Called by the scheduler on the main
+   * thread.
+   */
+  public synchronized void run() {
+    scheduled = false;
+
+    long start = System.nanoTime();
+    while (!pendingChunks.isEmpty() && System.nanoTime() - start < TIME_BUDGET) {
+      ChunkSigns chunkSigns = pendingChunks.poll();
+
+      World world = plugin.getServer().getWorld(chunkSigns.world);
+      if (world == null) {
+        plugin.warning("Can not check %d residence signs in unknown world %s!", chunkSigns.signs.size(),
+                chunkSigns.world);
+        checkedSigns += chunkSigns.signs.size();
+      } else if (!world.isChunkLoaded(chunkSigns.x, chunkSigns.z)) {
+        defer(chunkSigns);
+      } else {
+        check(world, chunkSigns);
+      }
+    }
+
+    if (running && System.currentTimeMillis() - lastReport >= PROGRESS_INTERVAL) {
+      plugin.info("Checked %d of %d residence signs, %d are waiting for their chunk to be loaded.",
+              checkedSigns, totalSigns, deferredSigns);
+      lastReport = System.currentTimeMillis();
+    }
+
+    if (!pendingChunks.isEmpty()) {
+      schedule();
+    } else if (running) {
+      finish();
+    } else {
+      reportFollowUp();
+    }
+  }
+
+  /**
+   * Queues the signs, which waited for the loaded chunk.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public synchronized void onChunkLoad(ChunkLoadEvent event) {
+    Chunk chunk = event.getChunk();
+    LongHashMap<ChunkSigns> worldChunks = deferredChunks.get(chunk.getWorld().getName());
+    if (worldChunks == null) {
+      return;
+    }
+
+    ChunkSigns chunkSigns = worldChunks.remove(LongHashMap.pack(chunk.getX(), chunk.getZ()));
+    if (chunkSigns == null) {
+      return;
+    }
+
+    deferredSigns -= chunkSigns.signs.size();
+    pendingChunks.add(chunkSigns);
+    schedule();
+  }
+
+  // Checks all signs of the loaded chunk.
+  private void check(World world, ChunkSigns chunkSigns) {
+    for (ResidenceSign residenceSign : chunkSigns.signs) {
+      int type = world.getBlockTypeIdAt(residenceSign.getX(), residenceSign.getY(), residenceSign.getZ());
+
+      if (type != Material.SIGN_POST.getId() && type != Material.WALL_SIGN.getId()) {
+        Residence residence = nation.getResidence(residenceSign.getResidenceId());
+        if (residence != null) {
+          invalidResidences.add(residence);
+        } else {
+          nation.delete(residenceSign);
+        }
+      }
+    }
+
+    checkedSigns += chunkSigns.signs.size();
+  }
+
+  // Stores the chunk until it gets loaded.
+  private void defer(ChunkSigns chunkSigns) {
+    LongHashMap<ChunkSigns> worldChunks = deferredChunks.get(chunkSigns.world);
+    if (worldChunks == null) {
+      worldChunks = new LongHashMap<ChunkSigns>();
+      deferredChunks.put(chunkSigns.world, worldChunks);
+    }
+
+    worldChunks.put(LongHashMap.pack(chunkSigns.x, chunkSigns.z), chunkSigns);
+    deferredSigns += chunkSigns.signs.size();
+  }
+
+  // Schedules the next check, if it is not scheduled already.
+  private void schedule() {
+    if (!scheduled) {
+      plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, this, 1);
+      scheduled = true;
+    }
+  }
+
+  // Notifies the listeners about the signs checked so far and resets the scanner. The deferred chunks are kept, the
+  // listeners get notified again about invalid residences found in them.
+  private void finish() {
+    if (deferredSigns == 0) {
+      plugin.info("Checked %d residence signs, found %d invalid residences.", checkedSigns, invalidResidences.size());
+    } else {
+      plugin.info("Checked %d residence signs, found %d invalid residences. %d signs will be checked when their " +
+              "chunk gets loaded.", checkedSigns, invalidResidences.size(), deferredSigns);
+      followUpListeners.addAll(listeners);
+    }
+
+    notifyListeners(listeners);
+
+    listeners.clear();
+    totalSigns = 0;
+    checkedSigns = 0;
+    running = false;
+  }
+
+  // Notifies the listeners of the last scan about invalid residences found in deferred chunks.
+  private void reportFollowUp() {
+    if (!invalidResidences.isEmpty()) {
+      plugin.info("Found %d more invalid residences in loaded chunks.", invalidResidences.size());
+      notifyListeners(followUpListeners);
+    }
+
+    if (deferredSigns == 0) {
+      followUpListeners.clear();
+    }
+  }
+
+  // Passes the found invalid residences to the listeners.
+  private void notifyListeners(List<InvalidResidenceListener> listenersToNotify) {
+    List<Residence> result = new ArrayList<Residence>(invalidResidences);
+    for (InvalidResidenceListener listener : listenersToNotify) {
+      listener.invalidResidencesFound(result);
+    }
+
+    invalidResidences.clear();
+  }
+
+  // Signs inside a single chunk.
+  private static final class ChunkSigns {
+    private final String world;
+    private final int x;
+    private final int z;
+    private final List<ResidenceSign> signs = new ArrayList<ResidenceSign>();
+
+    private ChunkSigns(String world, int x, int z) {
+      this.world = world;
+      this.x = x;
+      this.z = z;
+    }
+  }
+}
@@ -19,16 +19,19 @@
 package at.co.hohl.myresidence.bukkit.persistent;
 
 import at.co.hohl.myresidence.ChunkManager;
-import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.exceptions.TownNotFoundException;
+import at.co.hohl.myresidence.storage.cache.ChunkBitmap;
+import at.co.hohl.myresidence.storage.cache.ChunkOwnerIndex;
 import at.co.hohl.myresidence.storage.persistent.Town;
 import at.co.hohl.myresidence.storage.persistent.TownChunk;
 import com.sk89q.worldedit.Vector2D;
 import org.bukkit.World;
 
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -40,14 +43,14 @@ public class PersistChunkManager implements ChunkManager {
   /**
    * Nation which holds the residence.
    */
-  protected final Nation nation;
+  protected final PersistNation nation;
 
   /**
    * Creates a new ChunkManager implementation.
    *
    * @param nation nation which holds the residence.
    */
-  public PersistChunkManager(Nation nation) {
+  public PersistChunkManager(PersistNation nation) {
     this.nation = nation;
   }
 
@@ -58,21 +61,40 @@ public class PersistChunkManager implements ChunkManager {
    * @return the owner of the chunk, or null if the chunk is connected to wildnes.
    */
   public Town getChunkOwner(World world, Vector2D chunk) {
-    TownChunk townChunk = nation.getDatabase().find(TownChunk.class)
-            .where()
-            .eq("world", world.getName())
-            .eq("x", chunk.getBlockX())
-            .eq("z", chunk.getBlockZ())
-            .findUnique();
-
-    if (townChunk != null) {
-      return nation.getDatabase().find(Town.class)
-              .where()
-              .idEq(townChunk.getTownId())
-              .findUnique();
-    } else {
-      return null;
+    return nation.getTown(world.getName(), chunk.getBlockX(), chunk.getBlockZ());
+  }
+
+  /**
+   * Returns the owners of all chunks in the rectangle.
+   *
+   * @param world the world of the chunks.
+   * @param min   the chunk with the lowest coordinates.
+   * @param max   the chunk with the highest coordinates.
+   * @return the owners, indexed by [x - min.x][z - min.z], null for chunks connected to wildness.
+   */
+  public Town[][] getChunkOwners(World world, Vector2D min, Vector2D max) {
+    int[][] townIds = nation.getChunkOwners()
+            .getTownIds(world.getName(), min.getBlockX(), min.getBlockZ(), max.getBlockX(), max.getBlockZ());
+
+    // Every town gets resolved once, regardless of how many chunks it owns.
+    Map<Integer, Town> towns = new HashMap<Integer, Town>();
+    Town[][] owners = new Town[townIds.length][];
+    for (int x = 0; x < townIds.length; ++x) {
+      owners[x] = new Town[townIds[x].length];
+      for (int z = 0; z < townIds[x].length; ++z) {
+        int townId = townIds[x][z];
+        if (townId == ChunkOwnerIndex.NO_TOWN) {
+          continue;
+        }
+
+        if (!towns.containsKey(townId)) {
+          towns.put(townId, nation.getTown(townId));
+        }
+        owners[x][z] = towns.get(townId);
+      }
     }
+
+    return owners;
   }
 
   /**
@@ -86,24 +108,13 @@ public class PersistChunkManager implements ChunkManager {
       throw new TownNotFoundException("Can only add chunks next to another town chunk!");
     }
 
-    TownChunk townChunk = nation.getDatabase().find(TownChunk.class)
-            .where()
-            .eq("world", world.getName())
-            .eq("x", chunk.getBlockX())
-            .eq("z", chunk.getBlockZ())
-            .findUnique();
-
-    if (townChunk == null) {
-      townChunk = new TownChunk();
-      townChunk.setWorld(world.getName());
-      townChunk.setX(chunk.getBlockX());
-      townChunk.setZ(chunk.getBlockZ());
+    if (nation.getChunkOwners().getTownId(world.getName(), chunk.getBlockX(), chunk.getBlockZ())
+            == ChunkOwnerIndex.NO_TOWN) {
+      nation.save(createTownChunk(town, world, chunk));
+    } else {
+      nation.execute(createTransfer(town, world, chunk));
     }
-
-
-    townChunk.setTownId(town.getId());
-
-    nation.getDatabase().save(townChunk);
+    nation.getChunkOwners().put(world.getName(), chunk.getBlockX(), chunk.getBlockZ(), town.getId());
   }
 
   /**
@@ -113,34 +124,36 @@ public class PersistChunkManager implements ChunkManager {
    * @param chunks list of chunks to add.
    */
   public void addChunks(Town town, World world, Set<Vector2D> chunks) throws TownNotFoundException {
-    if (!nextToAnyChunks(town, world, chunks)) {
-      throw new TownNotFoundException("Can only add chunks next to another town chunk!");
+    if (chunks.isEmpty()) {
+      return;
     }
 
-    List<TownChunk> changedTownChunks = new LinkedList<TownChunk>();
+    ChunkBitmap townChunks = createTownBitmap(town, world, chunks);
+    if (!nextToAnyChunks(town, townChunks, chunks)) {
+      throw new TownNotFoundException("Can only add chunks next to another town chunk!");
+    }
 
+    // The owners are resolved from the index, because the rows of recently claimed chunks may still be queued.
+    List<TownChunk> newTownChunks = new LinkedList<TownChunk>();
+    List<QueuedUpdate> transfers = new LinkedList<QueuedUpdate>();
     for (Vector2D chunk : chunks) {
-      TownChunk townChunk = nation.getDatabase().find(TownChunk.class)
-              .where()
-              .eq("world", world.getName())
-              .eq("x", chunk.getBlockX())
-              .eq("z", chunk.getBlockZ())
-              .findUnique();
-
-      if (townChunk == null) {
-        townChunk = new TownChunk();
-        townChunk.setWorld(world.getName());
-        townChunk.setX(chunk.getBlockX());
-        townChunk.setZ(chunk.getBlockZ());
+      if (townChunks.get(chunk.getBlockX(), chunk.getBlockZ())) {
+        continue;
       }
 
-      if (townChunk.getTownId() != town.getId()) {
-        townChunk.setTownId(town.getId());
-        changedTownChunks.add(townChunk);
+      if (nation.getChunkOwners().getTownId(world.getName(), chunk.getBlockX(), chunk.getBlockZ())
+              == ChunkOwnerIndex.NO_TOWN) {
+        newTownChunks.add(createTownChunk(town, world, chunk));
+      } else {
+        transfers.add(createTransfer(town, world, chunk));
       }
+      nation.getChunkOwners().put(world.getName(), chunk.getBlockX(), chunk.getBlockZ(), town.getId());
     }
 
-    nation.getDatabase().save(changedTownChunks);
+    nation.saveAll(newTownChunks);
+    if (!transfers.isEmpty()) {
+      nation.executeAll(transfers);
+    }
   }
 
   /**
@@ -151,13 +164,7 @@ public class PersistChunkManager implements ChunkManager {
    * @return true, if the town owns the chunk.
    */
   public boolean hasChunk(Town town, World world, Vector2D chunk) {
-    return nation.getDatabase().find(TownChunk.class)
-            .where()
-            .eq("townId", town.getId())
-            .eq("world", world.getName())
-            .eq("x", chunk.getBlockX())
-            .eq("z", chunk.getBlockZ())
-            .findRowCount() > 0;
+    return nation.getChunkOwners().getTownId(world.getName(), chunk.getBlockX(), chunk.getBlockZ()) == town.getId();
   }
 
   /**
@@ -169,13 +176,7 @@ public class PersistChunkManager implements ChunkManager {
    */
   public boolean hasChunks(Town town, World world, Set<Vector2D> chunks) {
     for (Vector2D chunk : chunks) {
-      if (nation.getDatabase().find(TownChunk.class)
-              .where()
-              .eq("townId", town.getId())
-              .eq("world", world.getName())
-              .eq("x", chunk.getBlockX())
-              .eq("z", chunk.getBlockZ())
-              .findRowCount() == 0) {
+      if (!hasChunk(town, world, chunk)) {
         return false;
       }
     }
@@ -208,29 +209,60 @@ public class PersistChunkManager implements ChunkManager {
    * @return true if at least one of the chunks is next to one of the town chunks.
    */
   public boolean nextToAnyChunks(Town town, World world, Set<Vector2D> chunks) {
-    int countTownChunks = nation.getDatabase().find(TownChunk.class)
-            .where()
-            .eq("townId", town.getId())
-            .findRowCount();
+    if (chunks.isEmpty()) {
+      return nation.getChunkOwners().countChunks(town.getId()) == 0;
+    }
 
-    if (countTownChunks == 0) {
+    return nextToAnyChunks(town, createTownBitmap(town, world, chunks), chunks);
+  }
+
+  // Checks the chunks against the bitmap of the town chunks around them.
+  private boolean nextToAnyChunks(Town town, ChunkBitmap townChunks, Set<Vector2D> chunks) {
+    if (nation.getChunkOwners().countChunks(town.getId()) == 0) {
       return true;
     }
 
-    int countNearTownChunks = 0;
+    for (Vector2D chunk : chunks) {
+      if (townChunks.isNextTo(chunk.getBlockX(), chunk.getBlockZ())) {
+        return true;
+      }
+    }
+
+    return false;
+  }
 
+  // Creates a bitmap of the town chunks covering the passed chunks and the chunks around them.
+  private ChunkBitmap createTownBitmap(Town town, World world, Set<Vector2D> chunks) {
+    int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
     for (Vector2D chunk : chunks) {
-      countNearTownChunks += nation.getDatabase().find(TownChunk.class)
-              .where()
-              .eq("world", world.getName())
-              .ge("x", chunk.getBlockX() - 1)
-              .le("x", chunk.getBlockX() + 1)
-              .ge("z", chunk.getBlockZ() - 1)
-              .le("z", chunk.getBlockZ() + 1)
-              .eq("townId", town.getId())
-              .findRowCount();
+      minX = Math.min(minX, chunk.getBlockX());
+      minZ = Math.min(minZ, chunk.getBlockZ());
+      maxX = Math.max(maxX, chunk.getBlockX());
+      maxZ = Math.max(maxZ, chunk.getBlockZ());
     }
 
-    return countNearTownChunks > 0;
+    ChunkBitmap townChunks = new ChunkBitmap(minX - 1, minZ - 1, maxX + 1, maxZ + 1);
+    nation.getChunkOwners().fill(world.getName(), town.getId(), townChunks);
+    return townChunks;
+  }
+
+  // Creates a new stored chunk for the town.
+  private TownChunk createTownChunk(Town town, World world, Vector2D chunk) {
+    TownChunk townChunk = new TownChunk();
+    townChunk.setTownId(town.getId());
+    townChunk.setWorld(world.getName());
+    townChunk.setX(chunk.getBlockX());
+    townChunk.setZ(chunk.getBlockZ());
+    return townChunk;
+  }
+
+  // Creates a statement which transfers the stored chunk to the town. Queued behind the write which stored the chunk.
+  private QueuedUpdate createTransfer(Town town, World world, Vector2D chunk) {
+    return new QueuedUpdate(TownChunk.class,
+            "update TownChunk set townId = :townId where world = :world and x = :x and z = :z")
+            .set("townId", town.getId())
+            .set("world", world.getName())
+            .set("x", chunk.getBlockX())
+            .set("z", chunk.getBlockZ());
   }
 }
@@ -20,22 +20,35 @@ package at.co.hohl.myresidence.bukkit.persistent;
 
 import at.co.hohl.mcutils.chat.Chat;
 import at.co.hohl.myresidence.*;
+import at.co.hohl.myresidence.event.TownRemovedEvent;
 import at.co.hohl.myresidence.exceptions.MyResidenceException;
+import at.co.hohl.myresidence.storage.Session;
+import at.co.hohl.myresidence.storage.cache.ChunkOwnerIndex;
+import at.co.hohl.myresidence.storage.cache.FlagStore;
+import at.co.hohl.myresidence.storage.cache.InhabitantCache;
+import at.co.hohl.myresidence.storage.cache.Leaderboards;
+import at.co.hohl.myresidence.storage.cache.LikeIndex;
+import at.co.hohl.myresidence.storage.cache.MajorCache;
+import at.co.hohl.myresidence.storage.cache.MemberIndex;
+import at.co.hohl.myresidence.storage.cache.PermissionCache;
+import at.co.hohl.myresidence.storage.cache.ResidenceAreaIndex;
+import at.co.hohl.myresidence.storage.cache.TownStatistics;
 import at.co.hohl.myresidence.storage.persistent.*;
 import com.avaje.ebean.EbeanServer;
 import com.sk89q.util.StringUtil;
-import com.sk89q.worldedit.bukkit.selections.Selection;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
-import org.bukkit.Material;
-import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * MyResidence Nation implementation for Bukkit.
@@ -43,6 +56,9 @@ import java.util.Map;
  * @author Michael Hohl
  */
 public class PersistNation implements Nation {
+  // Milliseconds between two flushes of the write queue.
+  private static final long WRITE_FLUSH_INTERVAL = 1000;
+
   // Plugin which holds this nation.
   protected final MyResidence plugin;
 
@@ -55,6 +71,57 @@ public class PersistNation implements Nation {
   // PermissionsResolver of this nation.
   private PermissionsResolver permissionsResolver;
 
+  // Spatial index of all residence areas.
+  private final ResidenceAreaIndex areaIndex = new ResidenceAreaIndex();
+
+  // Loaded residences by their id.
+  private final ConcurrentMap<Integer, Residence> loadedResidences = new ConcurrentHashMap<Integer, Residence>();
+
+  // Owners of the town chunks.
+  private final ChunkOwnerIndex chunkOwners = new ChunkOwnerIndex();
+
+  // Loaded towns by their id.
+  private final ConcurrentMap<Integer, Town> loadedTowns = new ConcurrentHashMap<Integer, Town>();
+
+  // Resolved build verdicts of the inhabitants.
+  private final PermissionCache permissionCache = new PermissionCache();
+
+  // Flags of the residences.
+  private final FlagStore<ResidenceFlag.Type> residenceFlags = new FlagStore<ResidenceFlag.Type>(ResidenceFlag.Type.class);
+
+  // Flags of the towns.
+  private final FlagStore<TownFlag.Type> townFlags = new FlagStore<TownFlag.Type>(TownFlag.Type.class);
+
+  // Known inhabitants by their id and name.
+  private final InhabitantCache inhabitants = new InhabitantCache();
+
+  // Majors of all towns.
+  private final MajorCache majors = new MajorCache();
+
+  // Orderings used by the list commands.
+  private final Leaderboards leaderboards = new Leaderboards();
+
+  // Aggregates of the residences per town.
+  private final TownStatistics townStatistics = new TownStatistics();
+
+  // Inhabitants who liked the residences.
+  private final LikeIndex likeIndex = new LikeIndex();
+
+  // Members of the residences.
+  private final MemberIndex memberIndex = new MemberIndex();
+
+  // Signs of the residences, by the id of their residence.
+  private final Map<Integer, ResidenceSign> residenceSigns = new ConcurrentHashMap<Integer, ResidenceSign>();
+
+  // Queue of pending database writes.
+  private final WriteBehindQueue writeQueue;
+
+  // Queue of signs waiting to be rendered.
+  private final SignRenderQueue signRenderQueue;
+
+  // Searches residences with lost signs.
+  private final InvalidResidenceScanner invalidResidenceScanner;
+
   /**
    * Creates a new Nation for the passed plugin.
    *
@@ -63,6 +130,104 @@ public class PersistNation implements Nation {
   public PersistNation(MyResidence plugin) {
     this.plugin = plugin;
     this.wildnessManager = new PersistWildnessManager(this);
+    this.writeQueue = new WriteBehindQueue(plugin, WRITE_FLUSH_INTERVAL);
+    this.signRenderQueue = new SignRenderQueue(plugin, this);
+    this.invalidResidenceScanner = new InvalidResidenceScanner(plugin, this);
+  }
+
+  /**
+   * Loads the residences and their areas into memory. Must be called once the database is ready. Changes which were
+   * not written before the last stop are written first.
+   */
+  public void load() {
+    writeQueue.start();
+
+    loadedResidences.clear();
+    for (Residence residence : getDatabase().find(Residence.class).findList()) {
+      loadedResidences.put(residence.getId(), residence);
+    }
+
+    areaIndex.clear();
+    for (ResidenceArea area : getDatabase().find(ResidenceArea.class).findList()) {
+      areaIndex.add(area);
+    }
+
+    plugin.info("Loaded %d residences with %d areas.", loadedResidences.size(), areaIndex.size());
+
+    loadedTowns.clear();
+    for (Town town : getDatabase().find(Town.class).findList()) {
+      loadedTowns.put(town.getId(), town);
+    }
+
+    chunkOwners.clear();
+    for (TownChunk townChunk : getDatabase().find(TownChunk.class).findList()) {
+      chunkOwners.put(townChunk.getWorld(), townChunk.getX(), townChunk.getZ(), townChunk.getTownId());
+    }
+
+    plugin.info("Loaded %d towns with %d chunks.", loadedTowns.size(), chunkOwners.size());
+
+    leaderboards.clear();
+    townStatistics.clear();
+    for (Residence residence : loadedResidences.values()) {
+      leaderboards.update(residence);
+      townStatistics.update(residence);
+    }
+    for (Town town : loadedTowns.values()) {
+      leaderboards.update(town);
+    }
+
+    residenceFlags.clear();
+    for (ResidenceFlag residenceFlag : getDatabase().find(ResidenceFlag.class).findList()) {
+      residenceFlags.setFlag(residenceFlag.getResidenceId(), residenceFlag.getFlag());
+    }
+
+    townFlags.clear();
+    for (TownFlag townFlag : getDatabase().find(TownFlag.class).findList()) {
+      townFlags.setFlag(townFlag.getTownId(), townFlag.getFlag());
+    }
+
+    inhabitants.clear();
+    for (Inhabitant inhabitant : getDatabase().find(Inhabitant.class).findList()) {
+      inhabitants.add(inhabitant);
+    }
+
+    majors.clear();
+    for (Major major : getDatabase().find(Major.class).findList()) {
+      majors.add(major);
+    }
+
+    plugin.info("Loaded %d inhabitants and %d majors.", inhabitants.size(), majors.size());
+
+    residenceSigns.clear();
+    for (ResidenceSign residenceSign : getDatabase().find(ResidenceSign.class).findList()) {
+      residenceSigns.put(residenceSign.getResidenceId(), residenceSign);
+    }
+
+    likeIndex.clear();
+    for (Like like : getDatabase().find(Like.class).findList()) {
+      likeIndex.add(like.getResidenceId(), like.getInhabitantId());
+    }
+    for (Residence residence : loadedResidences.values()) {
+      int likes = likeIndex.count(residence.getId());
+      if (likes > 0) {
+        leaderboards.setLikes(residence, likes);
+      }
+    }
+
+    memberIndex.clear();
+    for (ResidenceMember member : getDatabase().find(ResidenceMember.class).findList()) {
+      memberIndex.add(member.getResidenceId(), member.getInhabitantId());
+    }
+
+    plugin.info("Loaded %d signs, %d likes and %d members.", residenceSigns.size(), likeIndex.size(),
+            memberIndex.size());
+  }
+
+  /**
+   * Writes all pending changes to the database. Must be called before the database gets closed.
+   */
+  public void close() {
+    writeQueue.stop();
   }
 
   /**
@@ -89,16 +254,19 @@ public class PersistNation implements Nation {
 
       // Retrieve and send town...
       String town = "ANY (wildness)";
-      if (residence.getTownId() != -1) {
-        Town townData = getTown(residence.getTownId());
+      Town townData = getTown(residence.getTownId());
+      if (townData != null) {
         town = townData.getName() +
                 " (Major: " + StringUtil.joinString(getTownManager(townData).getMajors(), ", ", 0) + ")";
       }
       player.sendMessage(ChatColor.GRAY + "Town: " + ChatColor.WHITE + town);
 
-      // Retrieve and send area...
-      Selection area = manager.getArea();
-      Chat.sendMessage(player, "&7Size: &f{0}x{1}x{2}", area.getLength(), area.getWidth(), area.getHeight());
+      // Retrieve and send area. Taken from the index, so the world is not needed.
+      ResidenceArea area = areaIndex.getArea(residence.getId());
+      if (area != null) {
+        Chat.sendMessage(player, "&7Size: &f{0}x{1}x{2}", area.getHighZ() - area.getLowZ() + 1,
+                area.getHighX() - area.getLowX() + 1, area.getHighY() - area.getLowY() + 1);
+      }
 
       // Retrieve flags
       List<ResidenceFlag.Type> flags = manager.getFlags();
@@ -140,16 +308,16 @@ public class PersistNation implements Nation {
       player.sendMessage(ChatColor.GRAY + "Major: " +
               ChatColor.WHITE + StringUtil.joinString(manager.getMajors(), " ,", 0));
 
-      // Retrieve residences
-      List<Residence> residences = manager.getResidences();
-      player.sendMessage(ChatColor.GRAY + "Residences: " + ChatColor.WHITE + residences.size());
+      // Retrieve residences, inhabitants and chunks
+      player.sendMessage(ChatColor.GRAY + "Residences: " + ChatColor.WHITE +
+              townStatistics.getResidenceCount(town.getId()));
+      player.sendMessage(ChatColor.GRAY + "Inhabitants: " + ChatColor.WHITE +
+              townStatistics.getInhabitantCount(town.getId()));
+      player.sendMessage(ChatColor.GRAY + "Chunks: " + ChatColor.WHITE + chunkOwners.countChunks(town.getId()));
 
       // Retrieve value
-      double value = 0;
-      for (Residence residence : residences) {
-        value += residence.getValue();
-      }
-      player.sendMessage(ChatColor.GRAY + "Value: " + ChatColor.WHITE + plugin.format(value));
+      player.sendMessage(ChatColor.GRAY + "Value: " + ChatColor.WHITE +
+              plugin.format(townStatistics.getValue(town.getId())));
 
       // Retrieve and send money values.
       player.sendMessage(ChatColor.GRAY + "Money: " + ChatColor.WHITE + plugin.format(town.getMoney()));
@@ -174,68 +342,8 @@ public class PersistNation implements Nation {
     }
   }
 
-  public void searchInvalidResidences(final InvalidResidenceListener invalidResidenceListener) {
-    Runnable delayedTask = new Runnable() {
-      private List<List<ResidenceSign>> residenceSignPackages;
-      private List<Residence> invalidResidences = new LinkedList<Residence>();
-
-      public void run() {
-        if (residenceSignPackages == null) {
-          List<ResidenceSign> residenceSigns = getDatabase().find(ResidenceSign.class).findList();
-          plugin.info("Check %d residence signs.", residenceSigns.size());
-
-          residenceSignPackages = new LinkedList<List<ResidenceSign>>();
-          for (int index = 0; index < residenceSigns.size(); index += 5) {
-            List<ResidenceSign> residenceSignPackage =
-                    residenceSigns.subList(index, index + Math.min(residenceSigns.size() - index, 5));
-            residenceSignPackages.add(residenceSignPackage);
-          }
-
-          plugin.info("Divided into %d packages to check.", residenceSignPackages.size());
-        }
-
-        plugin.info("Run background task to search database conflicts.");
-        plugin.info("%d packaged left to check.", residenceSignPackages.size());
-
-        List<ResidenceSign> residenceSignsToCheck = residenceSignPackages.remove(0);
-        plugin.info("Check package with %d residence signs.", residenceSignsToCheck.size());
-
-        // Check residences and save invalid ones
-        for (ResidenceSign residenceSign : residenceSignsToCheck) {
-          try {
-            Block residenceSignBlock = plugin.getServer().getWorld(residenceSign.getWorld())
-                    .getBlockAt(residenceSign.getX(), residenceSign.getY(), residenceSign.getZ());
-
-            plugin.info("Check residence sign at [%s] for residence with id %d...",
-                    residenceSignBlock.toString(),
-                    residenceSign.getResidenceId());
-
-            if (!(residenceSignBlock.getType().equals(Material.SIGN_POST) ||
-                    residenceSignBlock.getType().equals(Material.WALL_SIGN))) {
-              Residence residenceOfInvalidSign = getResidence(residenceSign.getResidenceId());
-              if (residenceOfInvalidSign != null) {
-                invalidResidences.add(residenceOfInvalidSign);
-              } else {
-                getDatabase().delete(residenceSign);
-              }
-            }
-          } catch (Throwable e) {
-            plugin.info("Can not check residence with id %d because of an exception which is thrown during check!",
-                    residenceSign.getResidenceId());
-            e.printStackTrace();
-          }
-        }
-
-        // Inform users or search other residences if there are others
-        if (!residenceSignPackages.isEmpty()) {
-          plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, this, 5);
-        } else {
-          invalidResidenceListener.invalidResidencesFound(invalidResidences);
-        }
-      }
-    };
-
-    plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, delayedTask);
+  public boolean searchInvalidResidences(final InvalidResidenceListener invalidResidenceListener) {
+    return invalidResidenceScanner.start(invalidResidenceListener);
   }
 
   /**
@@ -245,15 +353,8 @@ public class PersistNation implements Nation {
    * @return the founded residence or null.
    */
   public Residence getResidence(Location location) {
-    ResidenceArea residenceArea = getDatabase().find(ResidenceArea.class).where()
-            .ieq("world", location.getWorld().getName())
-            .le("lowX", location.getBlockX())
-            .le("lowY", location.getBlockY())
-            .le("lowZ", location.getBlockZ())
-            .ge("highX", location.getBlockX())
-            .ge("highY", location.getBlockY())
-            .ge("highZ", location.getBlockZ())
-            .findUnique();
+    ResidenceArea residenceArea = areaIndex.find(location.getWorld().getName(),
+            location.getBlockX(), location.getBlockY(), location.getBlockZ());
 
     if (residenceArea != null) {
       return getResidence(residenceArea.getResidenceId());
@@ -269,7 +370,7 @@ public class PersistNation implements Nation {
    * @return the founded residence or null.
    */
   public Residence getResidence(int id) {
-    return getDatabase().find(Residence.class).where().idEq(id).findUnique();
+    return loadedResidences.get(id);
   }
 
   /**
@@ -279,7 +380,13 @@ public class PersistNation implements Nation {
    * @return the founded residence or null.
    */
   public Residence getResidence(String name) {
-    return getDatabase().find(Residence.class).where().ieq("name", name).findUnique();
+    for (Residence residence : loadedResidences.values()) {
+      if (residence.getName() != null && residence.getName().equalsIgnoreCase(name)) {
+        return residence;
+      }
+    }
+
+    return null;
   }
 
   /**
@@ -300,7 +407,7 @@ public class PersistNation implements Nation {
     ResidenceSign residenceSign = getDatabase().find(ResidenceSign.class).where().allEq(locationArgs).findUnique();
 
     if (residenceSign != null) {
-      return getDatabase().find(Residence.class).where().idEq(residenceSign.getResidenceId()).findUnique();
+      return getResidence(residenceSign.getResidenceId());
     } else {
       return null;
     }
@@ -314,10 +421,10 @@ public class PersistNation implements Nation {
    * @return the residence found.
    */
   public List<Residence> findResidences(Inhabitant inhabitant, String search) {
-    return getDatabase().find(Residence.class).where()
+    return loaded(getDatabase().find(Residence.class).where()
             .eq("ownerId", inhabitant.getId())
             .like("name", "%" + search + "%")
-            .findList();
+            .findList());
   }
 
   /**
@@ -327,9 +434,9 @@ public class PersistNation implements Nation {
    * @return the residence found.
    */
   public List<Residence> findResidences(String search) {
-    return getDatabase().find(Residence.class)
+    return loaded(getDatabase().find(Residence.class)
             .where().like("name", "%" + search + "%")
-            .findList();
+            .findList());
   }
 
   /**
@@ -339,9 +446,9 @@ public class PersistNation implements Nation {
    * @return list of the found residences.
    */
   public List<Residence> findResidences(Inhabitant inhabitant) {
-    return getDatabase().find(Residence.class).where()
+    return loaded(getDatabase().find(Residence.class).where()
             .eq("ownerId", inhabitant.getId())
-            .findList();
+            .findList());
   }
 
   /**
@@ -352,15 +459,8 @@ public class PersistNation implements Nation {
    * @return list of found residences.
    */
   public List<Residence> findResidencesNearTo(Location location, int overlay) {
-    List<ResidenceArea> residenceAreas = getDatabase().find(ResidenceArea.class).where()
-            .ieq("world", location.getWorld().getName())
-            .le("lowX", location.getBlockX() + overlay)
-            .le("lowY", location.getBlockY())
-            .le("lowZ", location.getBlockZ() + overlay)
-            .ge("highX", location.getBlockX() - overlay)
-            .ge("highY", location.getBlockY())
-            .ge("highZ", location.getBlockZ() - overlay)
-            .findList();
+    List<ResidenceArea> residenceAreas = areaIndex.findNear(location.getWorld().getName(),
+            location.getBlockX(), location.getBlockY(), location.getBlockZ(), overlay);
 
     List<Residence> residences = new LinkedList<Residence>();
     for (ResidenceArea residenceArea : residenceAreas) {
@@ -369,7 +469,8 @@ public class PersistNation implements Nation {
         residences.add(residence);
       } else {
         plugin.warning("ResidenceArea without a Residence found! Remove ResidenceArea %d...", residenceArea.getId());
-        getDatabase().delete(residenceArea);
+        areaIndex.remove(residenceArea.getResidenceId());
+        delete(residenceArea);
       }
     }
 
@@ -383,7 +484,7 @@ public class PersistNation implements Nation {
    * @return the founded town or null.
    */
   public Town getTown(int id) {
-    return getDatabase().find(Town.class).where().idEq(id).findUnique();
+    return loadedTowns.get(id);
   }
 
   /**
@@ -393,7 +494,13 @@ public class PersistNation implements Nation {
    * @return the founded town or null.
    */
   public Town getTown(String name) {
-    return getDatabase().find(Town.class).where().ieq("name", name).findUnique();
+    for (Town town : loadedTowns.values()) {
+      if (town.getName() != null && town.getName().equalsIgnoreCase(name)) {
+        return town;
+      }
+    }
+
+    return null;
   }
 
   /**
@@ -403,15 +510,22 @@ public class PersistNation implements Nation {
    * @return the founded town or null.
    */
   public Town getTown(Location location) {
-    Map<String, Object> chunkArgs = new HashMap<String, Object>();
-    chunkArgs.put("x", location.getBlock().getChunk().getX());
-    chunkArgs.put("z", location.getBlock().getChunk().getZ());
-    chunkArgs.put("world", location.getWorld().getName());
+    return getTown(location.getWorld().getName(), location.getBlockX() >> 4, location.getBlockZ() >> 4);
+  }
 
-    TownChunk currentChunk = getDatabase().find(TownChunk.class).where().allEq(chunkArgs).findUnique();
+  /**
+   * Returns the town owning the passed chunk.
+   *
+   * @param world  the name of the world.
+   * @param chunkX the x coordinate of the chunk.
+   * @param chunkZ the z coordinate of the chunk.
+   * @return the founded town or null.
+   */
+  public Town getTown(String world, int chunkX, int chunkZ) {
+    int townId = chunkOwners.getTownId(world, chunkX, chunkZ);
 
-    if (currentChunk != null) {
-      return getDatabase().find(Town.class).where().idEq(currentChunk.getTownId()).findUnique();
+    if (townId != ChunkOwnerIndex.NO_TOWN) {
+      return getTown(townId);
     } else {
       return null;
     }
@@ -424,7 +538,14 @@ public class PersistNation implements Nation {
    * @return founded towns.
    */
   public List<Town> findTown(String name) {
-    return getDatabase().find(Town.class).where().like("name", name + "%").findList();
+    List<Town> towns = new LinkedList<Town>();
+    for (Town town : getDatabase().find(Town.class).where().like("name", name + "%").findList()) {
+      Town loaded = loadedTowns.get(town.getId());
+      if (loaded != null) {
+        towns.add(loaded);
+      }
+    }
+    return towns;
   }
 
   /**
@@ -433,34 +554,21 @@ public class PersistNation implements Nation {
    * @param town town to remove.
    */
   public void remove(Town town) throws MyResidenceException {
-    if (getDatabase().find(Residence.class).where().eq("townId", town.getId()).findRowCount() > 0) {
-      throw new MyResidenceException("You can not remove cities with inhabitants and residences!");
-    }
-
-    final List<TownChunk> townChunks = getDatabase().find(TownChunk.class)
-            .where()
-            .eq("townId", town.getId())
-            .findList();
-
-    final List<Major> townMajors = getDatabase().find(Major.class)
-            .where()
-            .eq("townId", town.getId())
-            .findList();
-
-    final List<TownFlag> townFlags = getDatabase().find(TownFlag.class)
-            .where()
-            .eq("townId", town.getId())
-            .findList();
-
-    final List<TownRule> townRules = getDatabase().find(TownRule.class)
-            .where()
-            .eq("townId", town.getId())
-            .findList();
+    removeTown(town, null);
+  }
 
-    getDatabase().delete(townChunks);
-    getDatabase().delete(townMajors);
-    getDatabase().delete(townFlags);
-    getDatabase().delete(townRules);
+  /**
+   * Removes a town in the background. A TownRemovedEvent is called as soon as the town is removed from the database.
+   *
+   * @param town      town to remove.
+   * @param removedBy the session which removes the town.
+   */
+  public void remove(final Town town, final Session removedBy) throws MyResidenceException {
+    removeTown(town, new Runnable() {
+      public void run() {
+        plugin.getEventManager().callEvent(new TownRemovedEvent(removedBy, town));
+      }
+    });
   }
 
   /**
@@ -473,51 +581,34 @@ public class PersistNation implements Nation {
       throw new NullPointerException("null is not a residence!");
     }
 
-    final ResidenceArea residenceArea = getDatabase().find(ResidenceArea.class)
-            .where()
-            .eq("residenceId", residence.getId())
-            .findUnique();
-
-    final ResidenceSign residenceSign = getDatabase().find(ResidenceSign.class)
-            .where()
-            .eq("residenceId", residence.getId())
-            .findUnique();
-
-    final List<HomePoint> residenceHomes = getDatabase().find(HomePoint.class)
-            .where()
-            .eq("residenceId", residence.getId())
-            .findList();
-
-    final List<ResidenceFlag> residenceFlags = getDatabase().find(ResidenceFlag.class)
-            .where()
-            .eq("residenceId", residence.getId())
-            .findList();
-
-    final List<ResidenceMember> residenceMembers = getDatabase().find(ResidenceMember.class)
-            .where()
-            .eq("residenceId", residence.getId())
-            .findList();
-
-    final List<Like> residenceLikes = getDatabase().find(Like.class)
-            .where()
-            .eq("residenceId", residence.getId())
-            .findList();
-
-    getDatabase().delete(residence);
-    if (residenceArea != null) {
-      getDatabase().delete(residenceArea);
-    } else {
+    loadedResidences.remove(residence.getId());
+    if (areaIndex.remove(residence.getId()) == null) {
       plugin.warning("Deleted residence which does not have an area!");
     }
+    permissionCache.invalidateOwnership(residence.getId());
+    residenceFlags.removeFlags(residence.getId());
+    leaderboards.remove(residence);
+    townStatistics.remove(residence);
+    likeIndex.removeResidence(residence.getId());
+    memberIndex.removeResidence(residence.getId());
+
+    ResidenceSign residenceSign = residenceSigns.remove(residence.getId());
     if (residenceSign != null) {
-      getDatabase().delete(residenceSign);
+      signRenderQueue.clear(residenceSign);
     } else {
-      plugin.warning("Deleted residence which does not have an sign!");
+      plugin.severe("Sign not found for residence %s!", residence.getName());
     }
-    getDatabase().delete(residenceHomes);
-    getDatabase().delete(residenceMembers);
-    getDatabase().delete(residenceFlags);
-    getDatabase().delete(residenceLikes);
+
+    List<QueuedUpdate> deletes = new ArrayList<QueuedUpdate>();
+    deletes.add(createDelete(ResidenceArea.class, "residenceId", residence.getId()));
+    deletes.add(createDelete(ResidenceSign.class, "residenceId", residence.getId()));
+    deletes.add(createDelete(HomePoint.class, "residenceId", residence.getId()));
+    deletes.add(createDelete(ResidenceMember.class, "residenceId", residence.getId()));
+    deletes.add(createDelete(ResidenceFlag.class, "residenceId", residence.getId()));
+    deletes.add(createDelete(Like.class, "residenceId", residence.getId()));
+    deletes.add(createDelete(Residence.class, "id", residence.getId()));
+
+    writeQueue.executeAll(deletes, null);
   }
 
   /**
@@ -527,19 +618,32 @@ public class PersistNation implements Nation {
    * @return the founded player or null.
    */
   public Inhabitant getInhabitant(String name) {
-    Inhabitant player = getDatabase().find(Inhabitant.class).where().ilike("name", "%" + name + "%").findUnique();
+    Inhabitant player = inhabitants.get(name);
 
     if (player == null) {
-      player = new Inhabitant();
-      player.setName(name);
-      getDatabase().save(player);
-
-      plugin.info("Created database entry for player %s.", name);
+      player = loadInhabitant(name);
     }
 
     return player;
   }
 
+  /**
+   * Loads the player data for the passed name in the background, so it is cached when it's needed.
+   *
+   * @param name the name of the player.
+   */
+  public void preloadInhabitant(final String name) {
+    if (inhabitants.get(name) != null) {
+      return;
+    }
+
+    plugin.getServer().getScheduler().scheduleAsyncDelayedTask(plugin, new Runnable() {
+      public void run() {
+        loadInhabitant(name);
+      }
+    });
+  }
+
   /**
    * Returns the player with the passed id.
    *
@@ -547,7 +651,18 @@ public class PersistNation implements Nation {
    * @return the founded player or null.
    */
   public Inhabitant getInhabitant(int id) {
-    return getDatabase().find(Inhabitant.class).where().idEq(id).findUnique();
+    Inhabitant player = inhabitants.get(id);
+
+    // Residences without owner use -1 as owner id, no need to ask the database for them.
+    if (player == null && id != -1) {
+      player = getDatabase().find(Inhabitant.class).where().idEq(id).findUnique();
+
+      if (player != null) {
+        inhabitants.add(player);
+      }
+    }
+
+    return player;
   }
 
   /**
@@ -632,7 +747,179 @@ public class PersistNation implements Nation {
    * @param object the object of the town or residence to save.
    */
   public void save(Object object) {
-    plugin.getDatabase().save(object);
+    if (object instanceof Residence) {
+      Residence residence = (Residence) object;
+      writeQueue.save(residence);
+      townStatistics.update(cache(residence));
+      permissionCache.invalidateOwnership(residence.getId());
+    } else if (object instanceof Town) {
+      Town town = (Town) object;
+      writeQueue.save(town);
+      leaderboards.update(cache(town));
+      permissionCache.invalidateTown(town.getId());
+    } else if (object instanceof ResidenceSign) {
+      ResidenceSign residenceSign = (ResidenceSign) object;
+      residenceSigns.put(residenceSign.getResidenceId(), residenceSign);
+      writeQueue.save(residenceSign);
+    } else {
+      writeQueue.save(object);
+    }
+  }
+
+  /**
+   * Saves the passed beans.
+   *
+   * @param objects the beans to save.
+   */
+  public void saveAll(Collection<?> objects) {
+    writeQueue.saveAll(objects);
+  }
+
+  /**
+   * Deletes the passed bean.
+   *
+   * @param object the bean to delete.
+   */
+  public void delete(Object object) {
+    if (object instanceof ResidenceSign) {
+      residenceSigns.remove(((ResidenceSign) object).getResidenceId());
+    }
+    writeQueue.delete(object);
+  }
+
+  /**
+   * Deletes the passed beans.
+   *
+   * @param objects the beans to delete.
+   */
+  public void deleteAll(Collection<?> objects) {
+    writeQueue.deleteAll(objects);
+  }
+
+  /**
+   * Executes the passed update statement.
+   *
+   * @param update the update to execute.
+   */
+  public void execute(QueuedUpdate update) {
+    writeQueue.execute(update);
+  }
+
+  /**
+   * Executes the update statements in a single transaction.
+   *
+   * @param updates the updates to execute.
+   */
+  public void executeAll(List<QueuedUpdate> updates) {
+    writeQueue.executeAll(updates, null);
+  }
+
+  /**
+   * @return the spatial index of all residence areas.
+   */
+  public ResidenceAreaIndex getAreaIndex() {
+    return areaIndex;
+  }
+
+  /**
+   * @return the owners of the town chunks.
+   */
+  public ChunkOwnerIndex getChunkOwners() {
+    return chunkOwners;
+  }
+
+  /**
+   * @return the flags of the residences.
+   */
+  public FlagStore<ResidenceFlag.Type> getResidenceFlags() {
+    return residenceFlags;
+  }
+
+  /**
+   * @return the flags of the towns.
+   */
+  public FlagStore<TownFlag.Type> getTownFlags() {
+    return townFlags;
+  }
+
+  /**
+   * @return the orderings of the residences and towns.
+   */
+  public Leaderboards getLeaderboards() {
+    return leaderboards;
+  }
+
+  /**
+   * @return a number which changes whenever the area of any residence or the chunks of any town change.
+   */
+  public long getMapGeneration() {
+    return areaIndex.getGeneration() + chunkOwners.getGeneration();
+  }
+
+  /**
+   * @return the aggregates of the residences per town.
+   */
+  public TownStatistics getTownStatistics() {
+    return townStatistics;
+  }
+
+  /**
+   * @return the majors of all towns.
+   */
+  public MajorCache getMajorCache() {
+    return majors;
+  }
+
+  /**
+   * @return the inhabitants who liked the residences.
+   */
+  public LikeIndex getLikeIndex() {
+    return likeIndex;
+  }
+
+  /**
+   * @return the members of the residences.
+   */
+  public MemberIndex getMemberIndex() {
+    return memberIndex;
+  }
+
+  /**
+   * Returns the sign of the residence.
+   *
+   * @param residenceId the id of the residence.
+   * @return the sign or null.
+   */
+  public ResidenceSign getResidenceSign(int residenceId) {
+    return residenceSigns.get(residenceId);
+  }
+
+  /**
+   * @return the signs of all residences.
+   */
+  public Collection<ResidenceSign> getResidenceSigns() {
+    return residenceSigns.values();
+  }
+
+  /**
+   * @return the queue of signs waiting to be rendered.
+   */
+  public SignRenderQueue getSignRenderQueue() {
+    return signRenderQueue;
+  }
+
+  /**
+   * @return the scanner for residences with lost signs.
+   */
+  public InvalidResidenceScanner getInvalidResidenceScanner() {
+    return invalidResidenceScanner;
+  }
+
+  /**
+   * @return the cache of the resolved build verdicts.
+   */
+  public PermissionCache getPermissionCache() {
+    return permissionCache;
   }
 
   /**
@@ -641,4 +928,88 @@ public class PersistNation implements Nation {
   public EbeanServer getDatabase() {
     return plugin.getDatabase();
   }
+
+  // Removes the town from memory and queues deleting it and everything belonging to it in a single transaction.
+  private void removeTown(Town town, Runnable onRemoved) throws MyResidenceException {
+    if (townStatistics.getResidenceCount(town.getId()) > 0) {
+      throw new MyResidenceException("You can not remove cities with inhabitants and residences!");
+    }
+
+    loadedTowns.remove(town.getId());
+    chunkOwners.removeTown(town.getId());
+    permissionCache.invalidateTown(town.getId());
+    townFlags.removeFlags(town.getId());
+    majors.removeTown(town.getId());
+    leaderboards.remove(town);
+
+    List<QueuedUpdate> deletes = new ArrayList<QueuedUpdate>();
+    deletes.add(createDelete(TownChunk.class, "townId", town.getId()));
+    deletes.add(createDelete(Major.class, "townId", town.getId()));
+    deletes.add(createDelete(TownFlag.class, "townId", town.getId()));
+    deletes.add(createDelete(TownRule.class, "townId", town.getId()));
+    deletes.add(createDelete(Town.class, "id", town.getId()));
+
+    writeQueue.executeAll(deletes, onRemoved);
+  }
+
+  // Creates a statement which deletes all beans of the type with the passed value.
+  private QueuedUpdate createDelete(Class<?> type, String property, int value) {
+    return new QueuedUpdate(type, "delete from " + type.getSimpleName() + " where " + property + " = :value")
+            .set("value", value);
+  }
+
+  // Looks up the player with exactly the passed name and creates it, if there isn't any. Synchronized to create
+  // each player only once, even if the player is loaded in the background at the same time.
+  private synchronized Inhabitant loadInhabitant(String name) {
+    Inhabitant player = inhabitants.get(name);
+    if (player != null) {
+      return player;
+    }
+
+    player = getDatabase().find(Inhabitant.class).where().ieq("name", name).findUnique();
+
+    if (player == null) {
+      player = new Inhabitant();
+      player.setName(name);
+      writeQueue.save(player);
+
+      plugin.info("Created database entry for player %s.", name);
+    }
+
+    inhabitants.add(player);
+    return player;
+  }
+
+  // Registers the saved residence, if it is new. Returns the loaded instance, so every caller shares the same object.
+  private Residence cache(Residence residence) {
+    if (residence == null) {
+      return null;
+    }
+
+    Residence loaded = loadedResidences.putIfAbsent(residence.getId(), residence);
+    return loaded != null ? loaded : residence;
+  }
+
+  // Registers the saved town, if it is new. Returns the loaded instance, so every caller shares the same object.
+  private Town cache(Town town) {
+    if (town == null) {
+      return null;
+    }
+
+    Town loaded = loadedTowns.putIfAbsent(town.getId(), town);
+    return loaded != null ? loaded : town;
+  }
+
+  // Replaces the residences of the list by their loaded instances. Residences which are not loaded got removed, but the
+  // deletes are not written yet, so they are skipped.
+  private List<Residence> loaded(List<Residence> residences) {
+    List<Residence> loaded = new LinkedList<Residence>();
+    for (Residence residence : residences) {
+      Residence loadedResidence = loadedResidences.get(residence.getId());
+      if (loadedResidence != null) {
+        loaded.add(loadedResidence);
+      }
+    }
+    return loaded;
+  }
 }
@@ -20,6 +20,9 @@ package at.co.hohl.myresidence.bukkit.persistent;
 
 import at.co.hohl.myresidence.*;
 import at.co.hohl.myresidence.PermissionsResolver;
+import at.co.hohl.myresidence.storage.ConfigurationSnapshot;
+import at.co.hohl.myresidence.storage.cache.ChunkVerdictCache;
+import at.co.hohl.myresidence.storage.cache.PermissionCache;
 import at.co.hohl.myresidence.storage.persistent.*;
 import com.sk89q.wepif.PermissionsResolverManager;
 import org.bukkit.Location;
@@ -41,8 +44,20 @@ public class PersistPermissionsResolver implements PermissionsResolver {
   // Permission describes that player is trusted.
   private static final String TRUSTED_PERMISSION = "myresidence.trust";
 
+  // Verdict for chunks in which creatures are allowed to spawn everywhere.
+  private static final int SPAWN_ALLOWED = 1;
+
+  // Verdict for chunks in which every location has to be checked.
+  private static final int SPAWN_CHECK_LOCATION = 2;
+
+  // Maximum number of chunks with cached spawn verdicts.
+  private static final int SPAWN_VERDICT_CAPACITY = 16384;
+
   private final MyResidence plugin;
-  private final Nation nation;
+  private final PersistNation nation;
+
+  // Spawn verdicts of the chunks.
+  private final ChunkVerdictCache spawnVerdicts = new ChunkVerdictCache(SPAWN_VERDICT_CAPACITY);
 
   /**
    * Checks if the player has the passed permission.
@@ -65,7 +80,7 @@ public class PersistPermissionsResolver implements PermissionsResolver {
    * @param plugin the myresidence which holds the nation.
    * @param nation the nation to manage.
    */
-  public PersistPermissionsResolver(MyResidence plugin, Nation nation) {
+  public PersistPermissionsResolver(MyResidence plugin, PersistNation nation) {
     this.nation = nation;
     this.plugin = plugin;
   }
@@ -104,10 +119,11 @@ public class PersistPermissionsResolver implements PermissionsResolver {
 
     Location blockLocation = blockPlaced.getLocation();
     Inhabitant inhabitant = nation.getInhabitant(player.getName());
+    ConfigurationSnapshot configuration = plugin.getConfiguration(player.getWorld()).getSnapshot();
 
     // On Residence?
     List<Residence> residencesAtLocation = nation.findResidencesNearTo(blockLocation,
-            plugin.getConfiguration(player.getWorld()).getResidenceOverlay());
+            configuration.getResidenceOverlay());
     if (residencesAtLocation != null && residencesAtLocation.size() > 0) {
       for (Residence residence : residencesAtLocation) {
         if (!canBuildAndDestroy(residence, inhabitant)) {
@@ -120,12 +136,11 @@ public class PersistPermissionsResolver implements PermissionsResolver {
     // Inside Town?
     Town town = nation.getTown(blockLocation);
     if (town != null) {
-      return canBuildAndDestroy(town, inhabitant) || plugin.getConfiguration(player.getWorld())
-              .getAllowedToBuildInTown().contains(blockPlaced.getTypeId());
+      return canBuildAndDestroy(town, inhabitant) || configuration.isAllowedToBuildInTown(blockPlaced.getTypeId());
     }
 
     // In wildness?
-    return plugin.getConfiguration(player.getWorld()).getAllowedToBuildInWildness().contains(blockPlaced.getTypeId());
+    return configuration.isAllowedToBuildInWildness(blockPlaced.getTypeId());
   }
 
   /**
@@ -142,9 +157,10 @@ public class PersistPermissionsResolver implements PermissionsResolver {
 
     Location blockLocation = blockDestroyed.getLocation();
     Inhabitant inhabitant = nation.getInhabitant(player.getName());
+    ConfigurationSnapshot configuration = plugin.getConfiguration(player.getWorld()).getSnapshot();
 
     List<Residence> residencesAtLocation = nation.findResidencesNearTo(blockLocation,
-            plugin.getConfiguration(player.getWorld()).getResidenceOverlay());
+            configuration.getResidenceOverlay());
     if (residencesAtLocation != null && residencesAtLocation.size() > 0) {
       for (Residence residence : residencesAtLocation) {
         if (!canBuildAndDestroy(residence, inhabitant)) {
@@ -157,14 +173,11 @@ public class PersistPermissionsResolver implements PermissionsResolver {
     Town town = nation.getTown(blockLocation);
     // Town not null? You must be inside a town.
     if (town != null) {
-      return canBuildAndDestroy(town, inhabitant) ||
-              plugin.getConfiguration(player.getWorld()).getAllowedToDestroyInTown()
-                      .contains(blockDestroyed.getTypeId());
+      return canBuildAndDestroy(town, inhabitant) || configuration.isAllowedToDestroyInTown(blockDestroyed.getTypeId());
     }
 
     // In wildness?
-    return plugin.getConfiguration(player.getWorld()).getAllowedToDestroyInWildness()
-            .contains(blockDestroyed.getTypeId());
+    return configuration.isAllowedToDestroyInWildness(blockDestroyed.getTypeId());
   }
 
   /**
@@ -192,13 +205,49 @@ public class PersistPermissionsResolver implements PermissionsResolver {
    */
   public boolean isAllowedToSpawnCreature(CreatureSpawnEvent event) {
     if (event.getSpawnReason().equals(CreatureSpawnEvent.SpawnReason.SPAWNER)
-            && plugin.getConfiguration(event.getLocation().getWorld()).isDenyBlockSpawners()) {
+            && plugin.getConfiguration(event.getLocation().getWorld()).getSnapshot().isDenyBlockSpawners()) {
       return false;
     }
 
-    Residence residence = nation.getResidence(event.getLocation());
+    Location location = event.getLocation();
+    String world = location.getWorld().getName();
+    int chunkX = location.getBlockX() >> 4;
+    int chunkZ = location.getBlockZ() >> 4;
+
+    long generation = nation.getAreaIndex().getGeneration() + nation.getResidenceFlags().getGeneration();
+    int verdict = spawnVerdicts.get(world, chunkX, chunkZ, generation);
+    if (verdict == ChunkVerdictCache.UNKNOWN) {
+      verdict = resolveSpawnVerdict(world, chunkX, chunkZ);
+      spawnVerdicts.put(world, chunkX, chunkZ, generation, verdict);
+    }
+
+    if (verdict == SPAWN_ALLOWED) {
+      return true;
+    }
+
+    Residence residence = nation.getResidence(location);
+
+    return residence == null ||
+            nation.getResidenceFlags().hasFlag(residence.getId(), ResidenceFlag.Type.MOB_SPAWNING);
+  }
+
+  /**
+   * Resolves if creatures could spawn anywhere in the chunk, which is the case if all residences in the chunk allow
+   * mob spawning.
+   *
+   * @param world  the name of the world.
+   * @param chunkX the x coordinate of the chunk.
+   * @param chunkZ the z coordinate of the chunk.
+   * @return the verdict for the chunk.
+   */
+  private int resolveSpawnVerdict(String world, int chunkX, int chunkZ) {
+    for (ResidenceArea area : nation.getAreaIndex().getAreas(world, chunkX, chunkZ)) {
+      if (!nation.getResidenceFlags().hasFlag(area.getResidenceId(), ResidenceFlag.Type.MOB_SPAWNING)) {
+        return SPAWN_CHECK_LOCATION;
+      }
+    }
 
-    return residence == null || nation.getResidenceManager(residence).hasFlag(ResidenceFlag.Type.MOB_SPAWNING);
+    return SPAWN_ALLOWED;
   }
 
   /**
@@ -209,18 +258,29 @@ public class PersistPermissionsResolver implements PermissionsResolver {
    * @return true, if the player can build and destroy.
    */
   private boolean canBuildAndDestroy(Residence residence, Inhabitant inhabitant) {
+    PermissionCache permissionCache = nation.getPermissionCache();
+
+    Boolean cachedVerdict = permissionCache.getResidenceVerdict(residence.getId(), inhabitant.getId());
+    if (cachedVerdict != null) {
+      return cachedVerdict;
+    }
+
     ResidenceManager residenceManager = nation.getResidenceManager(residence);
 
     if (residenceManager.hasFlag(ResidenceFlag.Type.PUBLIC) || residenceManager.isMember(inhabitant)) {
+      permissionCache.putResidenceVerdict(residence.getId(), inhabitant.getId(), true, false);
       return true;
     }
 
     if (residenceManager.hasFlag(ResidenceFlag.Type.LOCAL) && residence.getTownId() != 0) {
       Town town = nation.getTown(residence.getTownId());
       TownManager townManager = nation.getTownManager(town);
-      return townManager.isInhabitant(inhabitant);
+      boolean allowed = townManager.isInhabitant(inhabitant);
+      permissionCache.putResidenceVerdict(residence.getId(), inhabitant.getId(), allowed, true);
+      return allowed;
     }
 
+    permissionCache.putResidenceVerdict(residence.getId(), inhabitant.getId(), false, false);
     return false;
   }
 
@@ -232,7 +292,16 @@ public class PersistPermissionsResolver implements PermissionsResolver {
    * @return true, if the player can build and destroy.
    */
   private boolean canBuildAndDestroy(Town town, Inhabitant inhabitant) {
+    PermissionCache permissionCache = nation.getPermissionCache();
+
+    Boolean cachedVerdict = permissionCache.getTownVerdict(town.getId(), inhabitant.getId());
+    if (cachedVerdict != null) {
+      return cachedVerdict;
+    }
+
     TownManager townManager = nation.getTownManager(town);
-    return townManager.hasFlag(TownFlag.Type.INHABITANTS_CAN_BUILD) || townManager.isMajor(inhabitant);
+    boolean allowed = townManager.hasFlag(TownFlag.Type.INHABITANTS_CAN_BUILD) || townManager.isMajor(inhabitant);
+    permissionCache.putTownVerdict(town.getId(), inhabitant.getId(), allowed);
+    return allowed;
   }
 }
@@ -19,11 +19,9 @@
 package at.co.hohl.myresidence.bukkit.persistent;
 
 import at.co.hohl.myresidence.FlagManager;
-import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.storage.persistent.Residence;
 import at.co.hohl.myresidence.storage.persistent.ResidenceFlag;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -35,7 +33,7 @@ public class PersistResidenceFlagManager implements FlagManager<ResidenceFlag.Ty
   /**
    * Nation which holds the residence.
    */
-  protected final Nation nation;
+  protected final PersistNation nation;
 
   /**
    * The area to manage.
@@ -48,7 +46,7 @@ public class PersistResidenceFlagManager implements FlagManager<ResidenceFlag.Ty
    * @param nation    nation which holds the residence.
    * @param residence the residence to manage.
    */
-  public PersistResidenceFlagManager(Nation nation, Residence residence) {
+  public PersistResidenceFlagManager(PersistNation nation, Residence residence) {
     this.nation = nation;
     this.residence = residence;
   }
@@ -60,11 +58,7 @@ public class PersistResidenceFlagManager implements FlagManager<ResidenceFlag.Ty
    * @return true, if the flag is set.
    */
   public boolean hasFlag(ResidenceFlag.Type flag) {
-    return nation.getDatabase().find(ResidenceFlag.class)
-            .where()
-            .eq("residenceId", residence.getId())
-            .eq("flag", flag)
-            .findRowCount() > 0;
+    return nation.getResidenceFlags().hasFlag(residence.getId(), flag);
   }
 
   /**
@@ -73,16 +67,7 @@ public class PersistResidenceFlagManager implements FlagManager<ResidenceFlag.Ty
    * @return all flags set for the residence.
    */
   public List<ResidenceFlag.Type> getFlags() {
-    List<ResidenceFlag> residenceFlags = nation.getDatabase().find(ResidenceFlag.class)
-            .where()
-            .eq("residenceId", residence.getId()).findList();
-
-    List<ResidenceFlag.Type> flagTypes = new LinkedList<ResidenceFlag.Type>();
-    for (ResidenceFlag flag : residenceFlags) {
-      flagTypes.add(flag.getFlag());
-    }
-
-    return flagTypes;
+    return nation.getResidenceFlags().getFlags(residence.getId());
   }
 
   /**
@@ -91,11 +76,12 @@ public class PersistResidenceFlagManager implements FlagManager<ResidenceFlag.Ty
    * @param flag the flag to set.
    */
   public void setFlag(ResidenceFlag.Type flag) {
-    if (!hasFlag(flag)) {
+    if (nation.getResidenceFlags().setFlag(residence.getId(), flag)) {
       ResidenceFlag residenceFlag = new ResidenceFlag();
       residenceFlag.setResidenceId(residence.getId());
       residenceFlag.setFlag(flag);
-      nation.getDatabase().save(residenceFlag);
+      nation.save(residenceFlag);
+      nation.getPermissionCache().invalidateResidence(residence.getId());
     }
   }
 
@@ -105,13 +91,12 @@ public class PersistResidenceFlagManager implements FlagManager<ResidenceFlag.Ty
    * @param flag the flag to remove.
    */
   public void removeFlag(ResidenceFlag.Type flag) {
-    List<ResidenceFlag> residenceFlagsToDelete = nation.getDatabase().find(ResidenceFlag.class)
-            .where()
-            .eq("residenceId", residence.getId())
-            .eq("flag", flag).findList();
-
-    if (residenceFlagsToDelete.size() > 0) {
-      nation.getDatabase().delete(residenceFlagsToDelete);
+    if (nation.getResidenceFlags().removeFlag(residence.getId(), flag)) {
+      nation.execute(new QueuedUpdate(ResidenceFlag.class,
+              "delete from ResidenceFlag where residenceId = :residenceId and flag = :flag")
+              .set("residenceId", residence.getId())
+              .set("flag", flag));
+      nation.getPermissionCache().invalidateResidence(residence.getId());
     }
   }
 }
@@ -19,7 +19,6 @@
 package at.co.hohl.myresidence.bukkit.persistent;
 
 import at.co.hohl.myresidence.MyResidence;
-import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.ResidenceManager;
 import at.co.hohl.myresidence.exceptions.ResidenceSignMissingException;
 import at.co.hohl.myresidence.storage.persistent.*;
@@ -52,7 +51,7 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
    * @param nation    nation which holds the residence.
    * @param residence the residence to manage.
    */
-  public PersistResidenceManager(MyResidence plugin, Nation nation, Residence residence) {
+  public PersistResidenceManager(MyResidence plugin, PersistNation nation, Residence residence) {
     super(nation, residence);
     this.plugin = plugin;
   }
@@ -63,12 +62,14 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
    * @param inhabitant the inhabitant to become membership.
    */
   public void addMember(Inhabitant inhabitant) {
-    if (!isMember(inhabitant)) {
+    if (residence.getOwnerId() != inhabitant.getId() &&
+            nation.getMemberIndex().add(residence.getId(), inhabitant.getId())) {
       ResidenceMember membership = new ResidenceMember();
       membership.setInhabitantId(inhabitant.getId());
       membership.setResidenceId(residence.getId());
 
       nation.save(membership);
+      nation.getPermissionCache().invalidateResidence(residence.getId());
     }
   }
 
@@ -78,15 +79,15 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
    * @param inhabitant the inhabitant to remove as member.
    */
   public void removeMember(Inhabitant inhabitant) {
-    List<ResidenceMember> foundedMembers = nation.getDatabase().find(ResidenceMember.class)
-            .where()
-            .eq("residenceId", residence.getId())
-            .eq("inhabitantId", inhabitant.getId())
-            .findList();
-
-    if (foundedMembers.size() > 0) {
-      nation.getDatabase().delete(foundedMembers);
+    if (!nation.getMemberIndex().remove(residence.getId(), inhabitant.getId())) {
+      return;
     }
+
+    nation.execute(new QueuedUpdate(ResidenceMember.class,
+            "delete from ResidenceMember where residenceId = :residenceId and inhabitantId = :inhabitantId")
+            .set("residenceId", residence.getId())
+            .set("inhabitantId", inhabitant.getId()));
+    nation.getPermissionCache().invalidateResidence(residence.getId());
   }
 
   /**
@@ -97,10 +98,7 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
    */
   public boolean isMember(Inhabitant inhabitant) {
     return residence.getOwnerId() == inhabitant.getId() ||
-            nation.getDatabase().find(ResidenceMember.class).where()
-                    .eq("residenceId", residence.getId())
-                    .eq("inhabitantId", inhabitant.getId())
-                    .findRowCount() > 0;
+            nation.getMemberIndex().contains(residence.getId(), inhabitant.getId());
   }
 
   /**
@@ -109,14 +107,9 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
    * @return the members of the residence.
    */
   public List<Inhabitant> getMembers() {
-    List<ResidenceMember> foundedMembers = nation.getDatabase().find(ResidenceMember.class)
-            .where()
-            .eq("residenceId", residence.getId())
-            .findList();
-
     List<Inhabitant> inhabitants = new LinkedList<Inhabitant>();
-    for (ResidenceMember member : foundedMembers) {
-      inhabitants.add(nation.getInhabitant(member.getInhabitantId()));
+    for (int inhabitantId : nation.getMemberIndex().getInhabitantIds(residence.getId())) {
+      inhabitants.add(nation.getInhabitant(inhabitantId));
     }
 
     Collections.sort(inhabitants);
@@ -130,8 +123,8 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
    * @param selection the area to set.
    */
   public void setArea(Selection selection) {
-    ResidenceArea area = nation.getDatabase().find(ResidenceArea.class)
-            .where().eq("residenceId", residence.getId()).findUnique();
+    // Remove from index before changing the bounds, otherwise the old buckets can not be found anymore.
+    ResidenceArea area = nation.getAreaIndex().remove(residence.getId());
 
     if (area == null) {
       area = new ResidenceArea();
@@ -147,14 +140,14 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
     area.setLowZ(selection.getMinimumPoint().getBlockZ());
 
     nation.save(area);
+    nation.getAreaIndex().add(area);
   }
 
   /**
    * @return the area of the residence.
    */
   public Selection getArea() {
-    ResidenceArea area = nation.getDatabase().find(ResidenceArea.class)
-            .where().eq("residenceId", residence.getId()).findUnique();
+    ResidenceArea area = nation.getAreaIndex().getArea(residence.getId());
 
     World world = plugin.getServer().getWorld(area.getWorld());
     Location loc1 = new Location(world, area.getLowX(), area.getLowY(), area.getLowZ());
@@ -169,8 +162,7 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
    * @param sign the sign of the residence.
    */
   public void setSign(Block sign) {
-    ResidenceSign residenceSign = nation.getDatabase().find(ResidenceSign.class)
-            .where().eq("residenceId", residence.getId()).findUnique();
+    ResidenceSign residenceSign = nation.getResidenceSign(residence.getId());
 
     if (residenceSign == null) {
       residenceSign = new ResidenceSign();
@@ -189,8 +181,7 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
    * @return the sign of the residence.
    */
   public Block getSign() throws ResidenceSignMissingException {
-    ResidenceSign residenceSign = nation.getDatabase().find(ResidenceSign.class)
-            .where().eq("residenceId", residence.getId()).findUnique();
+    ResidenceSign residenceSign = nation.getResidenceSign(residence.getId());
 
     if (residenceSign != null) {
       World world = Bukkit.getServer().getWorld(residenceSign.getWorld());
@@ -228,7 +219,7 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
     residenceHome.setPitch(homeLocation.getPitch());
     residenceHome.setYaw(homeLocation.getYaw());
 
-    nation.getDatabase().save(residenceHome);
+    nation.save(residenceHome);
   }
 
   /**
@@ -243,8 +234,7 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
       residenceHome = new HomePoint();
       residenceHome.setResidenceId(residence.getId());
 
-      ResidenceArea area = nation.getDatabase().find(ResidenceArea.class).where()
-              .eq("residenceId", residence.getId()).findUnique();
+      ResidenceArea area = nation.getAreaIndex().getArea(residence.getId());
       if (area != null) {
         residenceHome.setWorld(area.getWorld());
         residenceHome.setX(area.getLowX() + (area.getHighX() - area.getLowX()) / 2);
@@ -268,41 +258,74 @@ public class PersistResidenceManager extends PersistResidenceFlagManager impleme
    * @return the inhabitants who liked the residence.
    */
   public List<Inhabitant> getLikes() {
-    List<Like> likes =
-            nation.getDatabase().find(Like.class).where().eq("residenceId", residence.getId()).findList();
-
     List<Inhabitant> inhabitantsLikedThis = new LinkedList<Inhabitant>();
-    for (Like like : likes) {
-      inhabitantsLikedThis.add(nation.getInhabitant(like.getInhabitantId()));
+    for (int inhabitantId : nation.getLikeIndex().getInhabitantIds(residence.getId())) {
+      inhabitantsLikedThis.add(nation.getInhabitant(inhabitantId));
     }
 
     return inhabitantsLikedThis;
   }
 
+  /**
+   * @return the number of inhabitants who liked the residence.
+   */
+  public int getLikeCount() {
+    return nation.getLikeIndex().count(residence.getId());
+  }
+
+  /**
+   * @param inhabitant the inhabitant to check.
+   * @return true, if the inhabitant liked the residence.
+   */
+  public boolean hasLiked(Inhabitant inhabitant) {
+    return nation.getLikeIndex().contains(residence.getId(), inhabitant.getId());
+  }
+
   /**
    * @param inhabitant the inhabitant to like the residence.
    */
   public void like(Inhabitant inhabitant) {
-    unlike(inhabitant);
+    if (!nation.getLikeIndex().add(residence.getId(), inhabitant.getId())) {
+      return;
+    }
 
     Like like = new Like();
     like.setInhabitantId(inhabitant.getId());
     like.setResidenceId(residence.getId());
 
     nation.save(like);
+    updateLikes();
   }
 
   /**
    * @param inhabitant the inhabitant to unlike the residence.
    */
   public void unlike(Inhabitant inhabitant) {
-    List<Like> likes = nation.getDatabase().find(Like.class).where()
-            .eq("residenceId", residence.getId())
-            .eq("inhabitantId", inhabitant.getId())
-            .findList();
-
-    if (likes != null && likes.size() > 0) {
-      nation.getDatabase().delete(likes);
+    if (!nation.getLikeIndex().remove(residence.getId(), inhabitant.getId())) {
+      return;
     }
+
+    nation.execute(new QueuedUpdate(Like.class,
+            "delete from Like where residenceId = :residenceId and inhabitantId = :inhabitantId")
+            .set("residenceId", residence.getId())
+            .set("inhabitantId", inhabitant.getId()));
+    updateLikes();
+  }
+
+  /**
+   * Removes all likes of the residence.
+   */
+  public void resetLikes() {
+    nation.getLikeIndex().removeResidence(residence.getId());
+
+    nation.execute(new QueuedUpdate(Like.class,
+            "delete from Like where residenceId = :residenceId")
+            .set("residenceId", residence.getId()));
+    updateLikes();
+  }
+
+  // Moves the residence to the position of its new number of likes.
+  private void updateLikes() {
+    nation.getLeaderboards().setLikes(residence, nation.getLikeIndex().count(residence.getId()));
   }
 }
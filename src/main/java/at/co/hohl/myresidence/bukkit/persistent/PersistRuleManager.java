@@ -18,7 +18,6 @@
 
 package at.co.hohl.myresidence.bukkit.persistent;
 
-import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.RuleManager;
 import at.co.hohl.myresidence.exceptions.MyResidenceException;
 import at.co.hohl.myresidence.storage.persistent.Town;
@@ -37,7 +36,7 @@ public class PersistRuleManager implements RuleManager {
   /**
    * Nation of the town to manage.
    */
-  protected final Nation nation;
+  protected final PersistNation nation;
 
   /**
    * Town to manage.
@@ -50,7 +49,7 @@ public class PersistRuleManager implements RuleManager {
    * @param nation the nation of the town to manage.
    * @param town   the town to manage.
    */
-  public PersistRuleManager(Nation nation, Town town) {
+  public PersistRuleManager(PersistNation nation, Town town) {
     this.nation = nation;
     this.town = town;
   }
@@ -65,7 +64,7 @@ public class PersistRuleManager implements RuleManager {
     townRule.setTownId(town.getId());
     townRule.setMessage(rule);
 
-    nation.getDatabase().save(townRule);
+    nation.save(townRule);
   }
 
   /**
@@ -80,7 +79,7 @@ public class PersistRuleManager implements RuleManager {
               .eq("townId", town.getId())
               .findUnique();
 
-      nation.getDatabase().delete(townRule);
+      nation.delete(townRule);
     } catch (PersistenceException e) {
       throw new MyResidenceException("Rule not found!");
     }
@@ -19,11 +19,9 @@
 package at.co.hohl.myresidence.bukkit.persistent;
 
 import at.co.hohl.myresidence.FlagManager;
-import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.storage.persistent.Town;
 import at.co.hohl.myresidence.storage.persistent.TownFlag;
 
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -35,7 +33,7 @@ public class PersistTownFlagManager implements FlagManager<TownFlag.Type> {
   /**
    * Nation which holds the town.
    */
-  protected final Nation nation;
+  protected final PersistNation nation;
 
   /**
    * The area to manage.
@@ -48,7 +46,7 @@ public class PersistTownFlagManager implements FlagManager<TownFlag.Type> {
    * @param nation nation which holds the town.
    * @param town   the town to manage.
    */
-  public PersistTownFlagManager(Nation nation, Town town) {
+  public PersistTownFlagManager(PersistNation nation, Town town) {
     this.nation = nation;
     this.town = town;
   }
@@ -60,11 +58,7 @@ public class PersistTownFlagManager implements FlagManager<TownFlag.Type> {
    * @return true, if the flag is set.
    */
   public boolean hasFlag(TownFlag.Type flag) {
-    return nation.getDatabase().find(TownFlag.class)
-            .where()
-            .eq("townId", town.getId())
-            .eq("flag", flag)
-            .findRowCount() > 0;
+    return nation.getTownFlags().hasFlag(town.getId(), flag);
   }
 
   /**
@@ -73,16 +67,7 @@ public class PersistTownFlagManager implements FlagManager<TownFlag.Type> {
    * @return the flags set.
    */
   public List<TownFlag.Type> getFlags() {
-    List<TownFlag> residenceFlags = nation.getDatabase().find(TownFlag.class)
-            .where()
-            .eq("townId", town.getId()).findList();
-
-    List<TownFlag.Type> flagTypes = new LinkedList<TownFlag.Type>();
-    for (TownFlag flag : residenceFlags) {
-      flagTypes.add(flag.getFlag());
-    }
-
-    return flagTypes;
+    return nation.getTownFlags().getFlags(town.getId());
   }
 
   /**
@@ -91,11 +76,12 @@ public class PersistTownFlagManager implements FlagManager<TownFlag.Type> {
    * @param flag the flag to set.
    */
   public void setFlag(TownFlag.Type flag) {
-    if (!hasFlag(flag)) {
+    if (nation.getTownFlags().setFlag(town.getId(), flag)) {
       TownFlag townFlag = new TownFlag();
       townFlag.setTownId(town.getId());
       townFlag.setFlag(flag);
-      nation.getDatabase().save(townFlag);
+      nation.save(townFlag);
+      nation.getPermissionCache().invalidateTown(town.getId());
     }
   }
 
@@ -105,13 +91,12 @@ public class PersistTownFlagManager implements FlagManager<TownFlag.Type> {
    * @param flag the flag to remove.
    */
   public void removeFlag(TownFlag.Type flag) {
-    List<TownFlag> townFlagsToDelete = nation.getDatabase().find(TownFlag.class)
-            .where()
-            .eq("townId", town.getId())
-            .eq("flag", flag).findList();
-
-    if (townFlagsToDelete.size() > 0) {
-      nation.getDatabase().delete(townFlagsToDelete);
+    if (nation.getTownFlags().removeFlag(town.getId(), flag)) {
+      nation.execute(new QueuedUpdate(TownFlag.class,
+              "delete from TownFlag where townId = :townId and flag = :flag")
+              .set("townId", town.getId())
+              .set("flag", flag));
+      nation.getPermissionCache().invalidateTown(town.getId());
     }
   }
 }
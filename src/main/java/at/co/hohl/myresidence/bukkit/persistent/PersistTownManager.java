@@ -18,7 +18,6 @@
 
 package at.co.hohl.myresidence.bukkit.persistent;
 
-import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.TownManager;
 import at.co.hohl.myresidence.storage.persistent.Inhabitant;
 import at.co.hohl.myresidence.storage.persistent.Major;
@@ -40,7 +39,7 @@ public class PersistTownManager extends PersistTownFlagManager implements TownMa
    * @param nation nation which holds the town.
    * @param town   the town to manage.
    */
-  public PersistTownManager(Nation nation, Town town) {
+  public PersistTownManager(PersistNation nation, Town town) {
     super(nation, town);
   }
 
@@ -50,19 +49,17 @@ public class PersistTownManager extends PersistTownFlagManager implements TownMa
    * @param inhabitant the inhabitant to add as major.
    */
   public void addMajor(Inhabitant inhabitant) {
-    Major major = nation.getDatabase().find(Major.class)
-            .where()
-            .eq("inhabitantId", inhabitant.getId())
-            .eq("townId", town.getId())
-            .findUnique();
+    Major major = nation.getMajorCache().get(town.getId(), inhabitant.getId());
 
     if (major == null) {
       major = new Major();
       major.setInhabitantId(inhabitant.getId());
       major.setTownId(town.getId());
+      nation.getMajorCache().add(major);
     }
 
-    nation.getDatabase().save(major);
+    nation.save(major);
+    nation.getPermissionCache().invalidateTown(town.getId());
   }
 
   /**
@@ -71,10 +68,12 @@ public class PersistTownManager extends PersistTownFlagManager implements TownMa
    * @param inhabitant the inhabitant to remove as major.
    */
   public void removeMajor(Inhabitant inhabitant) {
-    List<Major> majorsToRemove = nation.getDatabase().find(Major.class)
-            .where().eq("townId", town.getId()).eq("inhabitantId", inhabitant.getId()).findList();
-
-    nation.getDatabase().delete(majorsToRemove);
+    nation.getMajorCache().remove(town.getId(), inhabitant.getId());
+    nation.execute(new QueuedUpdate(Major.class,
+            "delete from Major where townId = :townId and inhabitantId = :inhabitantId")
+            .set("townId", town.getId())
+            .set("inhabitantId", inhabitant.getId()));
+    nation.getPermissionCache().invalidateTown(town.getId());
   }
 
   /**
@@ -84,22 +83,15 @@ public class PersistTownManager extends PersistTownFlagManager implements TownMa
    * @return true, if the inhabitant is major.
    */
   public boolean isMajor(Inhabitant inhabitant) {
-    return nation.getDatabase().find(Major.class)
-            .where().eq("townId", town.getId()).eq("inhabitantId", inhabitant.getId())
-            .findRowCount() > 0;
+    return nation.getMajorCache().get(town.getId(), inhabitant.getId()) != null;
   }
 
   /**
    * @return the major of the town.
    */
   public List<Inhabitant> getMajors() {
-    List<Major> majors = nation.getDatabase().find(Major.class)
-            .where()
-            .eq("townId", town.getId())
-            .findList();
-
     List<Inhabitant> inhabitants = new LinkedList<Inhabitant>();
-    for (Major major : majors) {
+    for (Major major : nation.getMajorCache().getMajors(town.getId())) {
       inhabitants.add(nation.getInhabitant(major.getInhabitantId()));
     }
 
@@ -110,15 +102,11 @@ public class PersistTownManager extends PersistTownFlagManager implements TownMa
    * @return all public majors of the town.
    */
   public List<Inhabitant> getPublicMajors() {
-    List<Major> majors = nation.getDatabase().find(Major.class)
-            .where()
-            .eq("townId", town.getId())
-            .eq("hidden", false)
-            .findList();
-
     List<Inhabitant> inhabitants = new LinkedList<Inhabitant>();
-    for (Major major : majors) {
-      inhabitants.add(nation.getInhabitant(major.getInhabitantId()));
+    for (Major major : nation.getMajorCache().getMajors(town.getId())) {
+      if (!major.isHidden()) {
+        inhabitants.add(nation.getInhabitant(major.getInhabitantId()));
+      }
     }
 
     return inhabitants;
@@ -128,14 +116,11 @@ public class PersistTownManager extends PersistTownFlagManager implements TownMa
    * @return inhabitants of the town.
    */
   public List<Inhabitant> getInhabitants() {
-    List<Residence> residences = nation.getDatabase().find(Residence.class)
-            .where().eq("townId", town.getId()).findList();
-
     List<Inhabitant> inhabitants = new LinkedList<Inhabitant>();
-    for (Residence residence : residences) {
-      Inhabitant owner = nation.getInhabitant(residence.getOwnerId());
+    for (int inhabitantId : nation.getTownStatistics().getInhabitantIds(town.getId())) {
+      Inhabitant owner = nation.getInhabitant(inhabitantId);
 
-      if (owner == null) {
+      if (owner != null) {
         inhabitants.add(owner);
       }
     }
@@ -150,10 +135,7 @@ public class PersistTownManager extends PersistTownFlagManager implements TownMa
    * @return true, if the inhabitant is an inhabitant of the town.
    */
   public boolean isInhabitant(Inhabitant inhabitant) {
-    return nation.getDatabase().find(Residence.class).where()
-            .eq("townId", town.getId())
-            .eq("ownerId", inhabitant.getId())
-            .findRowCount() > 0;
+    return nation.getTownStatistics().isInhabitant(town.getId(), inhabitant.getId());
   }
 
   /**
@@ -0,0 +1,87 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.persistent;
+
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.Update;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Update statement in the query language of Ebean, queued for the write-behind queue. Only holds the statement and
+ * the plain values of its parameters, so it could be stored in the journal of the queue and replayed after a crash.
+ *
+ * @author Michael Hohl
+ */
+public class QueuedUpdate implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  // Entity class the statement is written for.
+  private final Class<?> type;
+
+  // The statement itself.
+  private final String statement;
+
+  // Values of the named parameters.
+  private final Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+
+  /**
+   * Creates a new statement.
+   *
+   * @param type      the entity class the statement is written for.
+   * @param statement the statement, with named parameters.
+   */
+  public QueuedUpdate(Class<?> type, String statement) {
+    this.type = type;
+    this.statement = statement;
+  }
+
+  /**
+   * Sets the value of a named parameter.
+   *
+   * @param name  the name of the parameter.
+   * @param value the value to bind, must be serializable.
+   * @return the statement itself.
+   */
+  public QueuedUpdate set(String name, Object value) {
+    parameters.put(name, value);
+    return this;
+  }
+
+  /**
+   * Creates the Ebean update for the statement.
+   *
+   * @param database the database to create the update for.
+   * @return the update with all parameters bound.
+   */
+  Update<?> createUpdate(EbeanServer database) {
+    Update<?> update = database.createUpdate(type, statement);
+    for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+      update.set(parameter.getKey(), parameter.getValue());
+    }
+    return update;
+  }
+
+  @Override
+  public String toString() {
+    return statement + " " + parameters;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.persistent;
+
+import at.co.hohl.myresidence.MyResidence;
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlRow;
+
+import javax.persistence.PersistenceException;
+import java.sql.SQLException;
+
+/**
+ * Upgrades the database schema of existing installations in place. The tables themselves are created by the DDL of
+ * the entities, the migrations add everything the entities can not declare, like the indexes used by the queries. The
+ * installed version is stored in its own table.
+ *
+ * @author Michael Hohl
+ */
+public class SchemaMigrator {
+  // Error code of MySQL for an index name which is already used.
+  private static final int MYSQL_DUPLICATE_KEY_NAME = 1061;
+
+  // Table which stores the installed version of the schema.
+  private static final String VERSION_TABLE = "res_schema";
+
+  // Statements of the migrations. The migration at index i upgrades the schema to version i + 1.
+  private static final String[][] MIGRATIONS = {
+          {
+                  "create index ix_res_areas_residence on res_areas (residence_id)",
+                  "create index ix_res_areas_bounds on res_areas (world, low_x, high_x, low_z, high_z)",
+                  "create index ix_res_chunks_location on res_chunks (world, x, z)",
+                  "create index ix_res_chunks_town on res_chunks (town_id)",
+                  "create index ix_res_members_residence on res_members (residence_id, inhabitant_id)",
+                  "create index ix_res_members_inhabitant on res_members (inhabitant_id)",
+                  "create index ix_res_likes_residence on res_likes (residence_id, inhabitant_id)",
+                  "create index ix_res_likes_inhabitant on res_likes (inhabitant_id)",
+                  "create index ix_res_residenceflags_residence on res_residenceflags (residence_id)",
+                  "create index ix_res_townflags_town on res_townflags (town_id)",
+                  "create index ix_res_majors_town on res_majors (town_id, inhabitant_id)",
+                  "create index ix_res_majors_inhabitant on res_majors (inhabitant_id)",
+                  "create index ix_res_signs_residence on res_signs (residence_id)",
+                  "create index ix_res_signs_location on res_signs (world, x, y, z)",
+                  "create index ix_res_residences_town on res_residences (town_id)",
+                  "create index ix_res_residences_owner on res_residences (owner_id)",
+                  "create index ix_res_rules_town on res_rules (town_id)"
+          }
+  };
+
+  private final MyResidence plugin;
+
+  /**
+   * Creates a new migrator.
+   *
+   * @param plugin the plugin which holds the database.
+   */
+  public SchemaMigrator(MyResidence plugin) {
+    this.plugin = plugin;
+  }
+
+  /**
+   * @return the version of the schema, this release needs.
+   */
+  public static int getLatestVersion() {
+    return MIGRATIONS.length;
+  }
+
+  /**
+   * Runs all migrations, which are newer than the installed version of the schema. Indexes which already exist are
+   * skipped. If any other statement fails, the version is not recorded, so the migration runs again on the next start.
+   */
+  public void migrate() {
+    EbeanServer database = plugin.getDatabase();
+
+    database.createSqlUpdate("create table if not exists " + VERSION_TABLE + " (version integer not null)").execute();
+
+    int version = getInstalledVersion(database);
+    if (version >= getLatestVersion()) {
+      return;
+    }
+
+    for (; version < getLatestVersion(); ++version) {
+      plugin.info("Upgrade database schema to version %d...", version + 1);
+
+      boolean failed = false;
+      for (String statement : MIGRATIONS[version]) {
+        try {
+          database.createSqlUpdate(statement).execute();
+        } catch (PersistenceException e) {
+          if (isAlreadyExisting(e)) {
+            plugin.info("Skipped '%s', the index already exists.", statement);
+          } else {
+            plugin.severe("Could not execute '%s': %s", statement, e.getMessage());
+            failed = true;
+          }
+        }
+      }
+
+      if (failed) {
+        plugin.severe("Could not upgrade database schema to version %d! Retry on next start.", version + 1);
+        return;
+      }
+
+      setInstalledVersion(database, version + 1);
+    }
+
+    plugin.info("Database schema is up to date.");
+  }
+
+  // Checks if the statement failed, because the created index already exists.
+  private static boolean isAlreadyExisting(PersistenceException exception) {
+    for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLException && ((SQLException) cause).getErrorCode() == MYSQL_DUPLICATE_KEY_NAME) {
+        return true;
+      }
+
+      String message = cause.getMessage();
+      if (message != null && message.toLowerCase().contains("already exists")) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  // Returns the installed version of the schema, 0 if no migration ran before.
+  private int getInstalledVersion(EbeanServer database) {
+    SqlRow row = database.createSqlQuery("select max(version) as version from " + VERSION_TABLE).findUnique();
+    if (row == null || row.getInteger("version") == null) {
+      return 0;
+    }
+
+    return row.getInteger("version");
+  }
+
+  // Stores the installed version of the schema.
+  private void setInstalledVersion(EbeanServer database, int version) {
+    database.createSqlUpdate("delete from " + VERSION_TABLE).execute();
+    database.createSqlUpdate("insert into " + VERSION_TABLE + " (version) values (:version)")
+            .setParameter("version", version)
+            .execute();
+  }
+}
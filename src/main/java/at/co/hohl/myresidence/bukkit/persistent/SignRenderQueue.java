@@ -0,0 +1,280 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.persistent;
+
+import at.co.hohl.myresidence.MyResidence;
+import at.co.hohl.myresidence.storage.Configuration;
+import at.co.hohl.myresidence.storage.cache.LongHashMap;
+import at.co.hohl.myresidence.storage.persistent.Inhabitant;
+import at.co.hohl.myresidence.storage.persistent.Residence;
+import at.co.hohl.myresidence.storage.persistent.ResidenceSign;
+import com.sk89q.util.StringUtil;
+import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Sign;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.WorldListener;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Queue of residence signs waiting to be rendered. Every residence is queued at most once, only a limited number of
+ * signs is updated per tick and signs inside unloaded chunks are rendered when their chunk gets loaded.
+ *
+ * @author Michael Hohl
+ */
+public class SignRenderQueue extends WorldListener implements Runnable {
+  /**
+   * Number of ticks between two flushes of the queue.
+   */
+  public static final int FLUSH_INTERVAL = 1;
+
+  // Maximum number of jobs processed per flush.
+  private static final int MAX_JOBS_PER_FLUSH = 16;
+
+  // Number of lines of a sign.
+  private static final int SIGN_LINES = 4;
+
+  private final MyResidence plugin;
+  private final PersistNation nation;
+
+  // Signs waiting to be rendered, by the id of their residence.
+  private final Map<Integer, Job> pendingJobs = new LinkedHashMap<Integer, Job>();
+
+  // Signs waiting for their chunk to be loaded, by world and packed chunk coordinates.
+  private final Map<String, LongHashMap<Map<Integer, Job>>> deferredJobs =
+          new HashMap<String, LongHashMap<Map<Integer, Job>>>();
+
+  // Deferred jobs by the id of their residence.
+  private final Map<Integer, Job> deferredResidences = new HashMap<Integer, Job>();
+
+  /**
+   * Creates a new queue for rendering signs.
+   *
+   * @param plugin the plugin which holds the instance.
+   * @param nation the nation holding the residences.
+   */
+  public SignRenderQueue(MyResidence plugin, PersistNation nation) {
+    this.plugin = plugin;
+    this.nation = nation;
+  }
+
+  /**
+   * Queues rendering the sign of the residence.
+   *
+   * @param residence the residence to render the sign for.
+   */
+  public synchronized void render(Residence residence) {
+    removeDeferred(residence.getId());
+    pendingJobs.put(residence.getId(), new Job(residence.getId(), null));
+  }
+
+  /**
+   * Queues clearing the sign of a removed residence.
+   *
+   * @param residenceSign the sign to clear.
+   */
+  public synchronized void clear(ResidenceSign residenceSign) {
+    removeDeferred(residenceSign.getResidenceId());
+    pendingJobs.put(residenceSign.getResidenceId(), new Job(residenceSign.getResidenceId(), residenceSign));
+  }
+
+  /**
+   * @return the number of signs waiting to be rendered, including the deferred ones.
+   */
+  public synchronized int size() {
+    return pendingJobs.size() + deferredResidences.size();
+  }
+
+  /**
+   * Renders the next signs of the queue. Called by the scheduler on the main thread.
+   */
+  public synchronized void run() {
+    int processedJobs = 0;
+
+    Iterator<Job> iterator = pendingJobs.values().iterator();
+    while (processedJobs < MAX_JOBS_PER_FLUSH && iterator.hasNext()) {
+      Job job = iterator.next();
+      iterator.remove();
+      ++processedJobs;
+
+      ResidenceSign residenceSign = job.isClear() ? job.sign : nation.getResidenceSign(job.residenceId);
+      if (residenceSign == null) {
+        plugin.severe("Sign not found for residence %d!", job.residenceId);
+        continue;
+      }
+
+      World world = plugin.getServer().getWorld(residenceSign.getWorld());
+      if (world == null) {
+        continue;
+      }
+
+      if (!world.isChunkLoaded(residenceSign.getX() >> 4, residenceSign.getZ() >> 4)) {
+        defer(residenceSign, job);
+        continue;
+      }
+
+      render(world, residenceSign, job);
+    }
+  }
+
+  /**
+   * Queues the signs, which waited for the loaded chunk.
+   *
+   * @param event the event itself.
+   */
+  @Override
+  public synchronized void onChunkLoad(ChunkLoadEvent event) {
+    Chunk chunk = event.getChunk();
+    LongHashMap<Map<Integer, Job>> chunks = deferredJobs.get(chunk.getWorld().getName());
+    if (chunks == null) {
+      return;
+    }
+
+    Map<Integer, Job> jobs = chunks.remove(LongHashMap.pack(chunk.getX(), chunk.getZ()));
+    if (jobs == null) {
+      return;
+    }
+
+    for (Job job : jobs.values()) {
+      deferredResidences.remove(job.residenceId);
+      if (!pendingJobs.containsKey(job.residenceId)) {
+        pendingJobs.put(job.residenceId, job);
+      }
+    }
+  }
+
+  // Stores the job until the chunk of the sign gets loaded.
+  private void defer(ResidenceSign residenceSign, Job job) {
+    LongHashMap<Map<Integer, Job>> chunks = deferredJobs.get(residenceSign.getWorld());
+    if (chunks == null) {
+      chunks = new LongHashMap<Map<Integer, Job>>();
+      deferredJobs.put(residenceSign.getWorld(), chunks);
+    }
+
+    long chunk = LongHashMap.pack(residenceSign.getX() >> 4, residenceSign.getZ() >> 4);
+    Map<Integer, Job> jobs = chunks.get(chunk);
+    if (jobs == null) {
+      jobs = new HashMap<Integer, Job>();
+      chunks.put(chunk, jobs);
+    }
+
+    job.deferredWorld = residenceSign.getWorld();
+    job.deferredChunk = chunk;
+    jobs.put(job.residenceId, job);
+    deferredResidences.put(job.residenceId, job);
+  }
+
+  // Removes the deferred job of the residence, because a newer job replaces it.
+  private void removeDeferred(int residenceId) {
+    Job job = deferredResidences.remove(residenceId);
+    if (job == null) {
+      return;
+    }
+
+    LongHashMap<Map<Integer, Job>> chunks = deferredJobs.get(job.deferredWorld);
+    Map<Integer, Job> jobs = chunks.get(job.deferredChunk);
+    jobs.remove(residenceId);
+    if (jobs.isEmpty()) {
+      chunks.remove(job.deferredChunk);
+    }
+  }
+
+  // Renders the sign. Returns true, if the sign got updated.
+  private boolean render(World world, ResidenceSign residenceSign, Job job) {
+    BlockState state = world.getBlockAt(residenceSign.getX(), residenceSign.getY(), residenceSign.getZ()).getState();
+    if (!(state instanceof Sign)) {
+      plugin.severe("Invalid block at location of sign for residence %d!", job.residenceId);
+      return false;
+    }
+
+    String[] lines;
+    if (job.isClear()) {
+      lines = new String[]{"", "", "", ""};
+    } else {
+      Residence residence = nation.getResidence(job.residenceId);
+      if (residence == null) {
+        return false;
+      }
+      lines = getLines(world, residence);
+    }
+
+    Sign sign = (Sign) state;
+    boolean changed = false;
+    for (int index = 0; index < SIGN_LINES; ++index) {
+      if (!lines[index].equals(sign.getLine(index))) {
+        sign.setLine(index, lines[index]);
+        changed = true;
+      }
+    }
+
+    if (changed) {
+      sign.update();
+    }
+
+    return changed;
+  }
+
+  // Returns the lines of the sign of the residence.
+  private String[] getLines(World world, Residence residence) {
+    Configuration configuration = plugin.getConfiguration(world);
+    String[] lines = new String[SIGN_LINES];
+
+    lines[0] = configuration.getSignTitle();
+    lines[1] = StringUtil.trimLength(residence.getName(), 16);
+    if (residence.isForSale()) {
+      lines[2] = ChatColor.YELLOW + StringUtil.trimLength(configuration.getSignSaleText(), 14);
+      lines[3] = ChatColor.YELLOW + StringUtil.trimLength(plugin.format(residence.getPrice()), 14);
+    } else {
+      Inhabitant owner = nation.getInhabitant(residence.getOwnerId());
+      lines[2] = owner == null ? "" : owner.getName();
+
+      int likes = nation.getLikeIndex().count(residence.getId());
+      lines[3] = likes > 0 ? likes + " Likes" : "";
+    }
+
+    return lines;
+  }
+
+  // Sign waiting to be rendered.
+  private static final class Job {
+    private final int residenceId;
+
+    // The sign to clear, null if the sign of the residence should be rendered.
+    private final ResidenceSign sign;
+
+    // World and packed coordinates of the chunk the job is waiting for.
+    private String deferredWorld;
+    private long deferredChunk;
+
+    private Job(int residenceId, ResidenceSign sign) {
+      this.residenceId = residenceId;
+      this.sign = sign;
+    }
+
+    private boolean isClear() {
+      return sign != null;
+    }
+  }
+}
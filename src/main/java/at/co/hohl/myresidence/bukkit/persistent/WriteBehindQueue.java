@@ -0,0 +1,597 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.persistent;
+
+import at.co.hohl.myresidence.MyResidence;
+import com.avaje.ebean.EbeanServer;
+import com.avaje.ebean.SqlRow;
+import com.avaje.ebean.Transaction;
+
+import javax.persistence.PersistenceException;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of database writes, which are flushed in batches on a dedicated thread. Writes are flushed in the order they
+ * were queued, so the writes to a single entity are never reordered. Beans are copied when they get queued, and new
+ * beans get their ids assigned by the queue, so the callers could keep changing and saving them.
+ * <p/>
+ * Every write is appended to a journal before it gets queued, so writes which did not reach the database before a
+ * crash or a stop are replayed on the next start. Writes which failed for a reason, which does not go away by
+ * retrying, are moved to a dead-letter log and do not block the writes queued after them.
+ *
+ * @author Michael Hohl
+ */
+public class WriteBehindQueue {
+  // Maximum number of writes flushed in a single transaction.
+  private static final int BATCH_SIZE = 500;
+
+  // Seconds to wait for the last flush on stop.
+  private static final int STOP_TIMEOUT = 30;
+
+  // Name of the file which holds the journal.
+  private static final String JOURNAL_FILE = "writes.journal";
+
+  // Name of the file which holds the writes which failed permanently.
+  private static final String DEAD_LETTER_FILE = "failed-writes.log";
+
+  // Plugin which holds the queue.
+  private final MyResidence plugin;
+
+  // Milliseconds between two flushes.
+  private final long flushInterval;
+
+  // Writes which are not flushed yet.
+  private final BlockingQueue<Write> pendingWrites = new LinkedBlockingQueue<Write>();
+
+  // Writes which failed for a transient reason, retried before the pending writes to keep the order.
+  private final BlockingDeque<Write> failedWrites = new LinkedBlockingDeque<Write>();
+
+  // Last assigned id by the entity class.
+  private final Map<Class<?>, Integer> lastIds = new HashMap<Class<?>, Integer>();
+
+  // Held while flushing, so flushes never overlap.
+  private final Object flushLock = new Object();
+
+  // Log of the queued writes.
+  private final WriteJournal journal;
+
+  // Thread which flushes the writes.
+  private ScheduledExecutorService writer;
+
+  // True, if the queue is not running and writes have to be done immediately.
+  private volatile boolean stopped = true;
+
+  /**
+   * Creates a new queue.
+   *
+   * @param plugin        the plugin which holds the queue.
+   * @param flushInterval milliseconds between two flushes.
+   */
+  public WriteBehindQueue(MyResidence plugin, long flushInterval) {
+    this.plugin = plugin;
+    this.flushInterval = flushInterval;
+    this.journal = new WriteJournal(plugin, new File(plugin.getDataFolder(), JOURNAL_FILE));
+  }
+
+  /**
+   * Writes the changes left in the journal by the last run and starts the thread which flushes the writes.
+   */
+  public synchronized void start() {
+    if (!stopped) {
+      return;
+    }
+
+    replay();
+
+    writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, plugin.getDescription().getName() + " Writer");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    writer.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        flush();
+      }
+    }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+
+    stopped = false;
+  }
+
+  /**
+   * Stops the thread and flushes all pending writes. Writes which could still not be written are kept in the journal
+   * and written on the next start.
+   */
+  public synchronized void stop() {
+    if (stopped) {
+      return;
+    }
+
+    stopped = true;
+    writer.shutdown();
+    try {
+      if (!writer.awaitTermination(STOP_TIMEOUT, TimeUnit.SECONDS)) {
+        plugin.warning("Writer did not finish in time!");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    flush();
+
+    if (size() > 0) {
+      plugin.severe("Could not write %d changes to the database, they are kept in %s and written on next start.",
+              size(), JOURNAL_FILE);
+    }
+    journal.close();
+  }
+
+  /**
+   * Queues saving the bean. The bean is copied, so changes made after calling this method are not saved. New beans get
+   * their id assigned immediately.
+   *
+   * @param bean the bean to save.
+   */
+  public void save(Object bean) {
+    Class<?> type = BeanCopier.getEntityClass(bean);
+    boolean insert = BeanCopier.getId(bean) == 0;
+    if (insert) {
+      BeanCopier.setId(bean, nextId(type));
+    }
+
+    queue(new Write(new SaveOperation(type, BeanCopier.getId(bean), insert, BeanCopier.getValues(bean))));
+  }
+
+  /**
+   * Queues saving the beans.
+   *
+   * @param beans the beans to save.
+   */
+  public void saveAll(Collection<?> beans) {
+    for (Object bean : beans) {
+      save(bean);
+    }
+  }
+
+  /**
+   * Queues deleting the bean.
+   *
+   * @param bean the bean to delete.
+   */
+  public void delete(Object bean) {
+    int id = BeanCopier.getId(bean);
+    if (id == 0) {
+      return;
+    }
+
+    queue(new Write(new DeleteOperation(BeanCopier.getEntityClass(bean), id)));
+  }
+
+  /**
+   * Queues deleting the beans.
+   *
+   * @param beans the beans to delete.
+   */
+  public void deleteAll(Collection<?> beans) {
+    for (Object bean : beans) {
+      delete(bean);
+    }
+  }
+
+  /**
+   * Queues executing the update statement.
+   *
+   * @param update the update to execute.
+   */
+  public void execute(QueuedUpdate update) {
+    queue(new Write(new UpdateOperation(update)));
+  }
+
+  /**
+   * Queues executing the update statements in a single transaction.
+   *
+   * @param updates     the updates to execute.
+   * @param onCommitted called on the writer thread after the updates got committed. Could be null.
+   */
+  public void executeAll(List<QueuedUpdate> updates, Runnable onCommitted) {
+    Operation[] operations = new Operation[updates.size()];
+    for (int index = 0; index < operations.length; ++index) {
+      operations[index] = new UpdateOperation(updates.get(index));
+    }
+
+    Write write = new Write(operations);
+    write.onCommitted = onCommitted;
+    queue(write);
+  }
+
+  /**
+   * @return the number of writes which are not flushed yet.
+   */
+  public int size() {
+    return pendingWrites.size() + failedWrites.size();
+  }
+
+  /**
+   * Flushes all pending writes.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      long handled = 0;
+      try {
+        handled = retryFailedWrites();
+        if (!failedWrites.isEmpty()) {
+          return;
+        }
+
+        while (!pendingWrites.isEmpty()) {
+          List<Write> batch = new ArrayList<Write>(Math.min(pendingWrites.size(), BATCH_SIZE));
+          pendingWrites.drainTo(batch, BATCH_SIZE);
+
+          if (write(batch) == null) {
+            handled = batch.get(batch.size() - 1).sequence;
+            continue;
+          }
+
+          plugin.warning("Could not write %d changes at once. Retry them one by one...", batch.size());
+          for (Write write : batch) {
+            if (!failedWrites.isEmpty()) {
+              failedWrites.add(write);
+              continue;
+            }
+
+            RuntimeException error = write(single(write));
+            if (error != null && isTransient(error)) {
+              failedWrites.add(write);
+            } else {
+              if (error != null) {
+                deadLetter(write, error);
+              }
+              handled = write.sequence;
+            }
+          }
+
+          if (!failedWrites.isEmpty()) {
+            plugin.severe("Could not write %d changes, keep them queued for the next flush.", failedWrites.size());
+            return;
+          }
+        }
+      } finally {
+        if (handled > 0) {
+          journal.markHandled(handled);
+        }
+      }
+    }
+  }
+
+  // Writes the changes left in the journal, before any new changes get queued.
+  private void replay() {
+    List<Object> writes = journal.open();
+    if (writes.isEmpty()) {
+      return;
+    }
+
+    plugin.info("Write %d changes, which were not written before the last stop...", writes.size());
+    for (Object replayed : writes) {
+      Write write = (Write) replayed;
+      write.replayed = true;
+      for (Operation operation : write.operations) {
+        if (operation instanceof SaveOperation) {
+          reserveId(((SaveOperation) operation).type, ((SaveOperation) operation).id);
+        }
+      }
+      pendingWrites.add(write);
+    }
+
+    flush();
+  }
+
+  // Retries the failed writes in their order. Writes which still fail for a transient reason stay queued, the others
+  // are moved to the dead-letter log. Returns the sequence of the last handled write, 0 if no write got handled.
+  private long retryFailedWrites() {
+    long handled = 0;
+    while (!failedWrites.isEmpty()) {
+      Write write = failedWrites.peekFirst();
+      RuntimeException error = write(single(write));
+      if (error != null && isTransient(error)) {
+        plugin.severe("Still could not write %d changes, keep them queued for the next flush.", failedWrites.size());
+        break;
+      }
+
+      if (error != null) {
+        deadLetter(write, error);
+      }
+      failedWrites.pollFirst();
+      handled = write.sequence;
+    }
+
+    return handled;
+  }
+
+  // Returns the next free id for beans of the entity class. The queue assigns the ids of all beans it inserts, so they
+  // are known before the beans get written.
+  private int nextId(Class<?> type) {
+    synchronized (lastIds) {
+      int lastId = getLastId(type) + 1;
+      lastIds.put(type, lastId);
+      return lastId;
+    }
+  }
+
+  // Makes sure the passed id is never assigned again.
+  private void reserveId(Class<?> type, int id) {
+    synchronized (lastIds) {
+      lastIds.put(type, Math.max(getLastId(type), id));
+    }
+  }
+
+  // Returns the last assigned id of the entity class. Must be called while holding the lock of the last ids.
+  private int getLastId(Class<?> type) {
+    Integer lastId = lastIds.get(type);
+    if (lastId == null) {
+      SqlRow row = plugin.getDatabase()
+              .createSqlQuery("select max(id) as id from " + BeanCopier.getTableName(type))
+              .findUnique();
+      lastId = row != null && row.getInteger("id") != null ? row.getInteger("id") : 0;
+      lastIds.put(type, lastId);
+    }
+
+    return lastId;
+  }
+
+  // Appends the write to the dead-letter log, so it could be examined and written by hand.
+  private void deadLetter(Write write, RuntimeException error) {
+    plugin.severe("Could not write change, moved it to %s: %s", DEAD_LETTER_FILE, error.getMessage());
+
+    PrintWriter output = null;
+    try {
+      output = new PrintWriter(new FileWriter(new File(plugin.getDataFolder(), DEAD_LETTER_FILE), true));
+      output.printf("%tF %<tT %s%n  %s%n", new Date(), error.getMessage(), write);
+    } catch (IOException e) {
+      plugin.severe("Could not append to %s, change is lost: %s", DEAD_LETTER_FILE, write);
+    } finally {
+      if (output != null) {
+        output.close();
+      }
+    }
+  }
+
+  // Creates a batch containing only the passed write.
+  private static List<Write> single(Write write) {
+    List<Write> single = new ArrayList<Write>(1);
+    single.add(write);
+    return single;
+  }
+
+  // Checks if the write could succeed, when it gets retried later. Lost connections, timeouts and deadlocks are
+  // transient, broken constraints and invalid statements are not.
+  private static boolean isTransient(RuntimeException error) {
+    if (!(error instanceof PersistenceException)) {
+      return false;
+    }
+
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+        return true;
+      }
+      if (cause instanceof SQLNonTransientException) {
+        return false;
+      }
+
+      if (cause instanceof SQLException) {
+        String state = ((SQLException) cause).getSQLState();
+        if (state != null && (state.startsWith("08") || state.startsWith("40") || state.startsWith("HYT"))) {
+          return true;
+        }
+        if (state != null && (state.startsWith("21") || state.startsWith("22") || state.startsWith("23") ||
+                state.startsWith("42") || state.startsWith("44"))) {
+          return false;
+        }
+      }
+
+      String message = cause.getMessage();
+      if (message != null) {
+        message = message.toLowerCase();
+        if (message.contains("constraint") || message.contains("unique") || message.contains("duplicate")) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  // Writes the batch in a single transaction. Returns the error, if the transaction got rolled back.
+  private RuntimeException write(List<Write> batch) {
+    EbeanServer database = plugin.getDatabase();
+    Transaction transaction = database.createTransaction();
+    try {
+      transaction.setBatchMode(batch.size() > 1);
+      for (Write write : batch) {
+        for (Operation operation : write.operations) {
+          operation.apply(database, transaction, write.replayed);
+        }
+      }
+      transaction.commit();
+    } catch (RuntimeException e) {
+      plugin.severe("Failed to write changes to database: %s", e.getMessage());
+      return e;
+    } finally {
+      transaction.end();
+    }
+
+    for (Write write : batch) {
+      if (write.onCommitted != null) {
+        write.onCommitted.run();
+      }
+    }
+    return null;
+  }
+
+  // Adds the write to the journal and the queue, or does it immediately if the queue is not running.
+  private void queue(Write write) {
+    if (stopped) {
+      write(single(write));
+      return;
+    }
+
+    synchronized (journal) {
+      write.sequence = journal.getLastSequence() + 1;
+      journal.append(write.sequence, write);
+      pendingWrites.add(write);
+    }
+  }
+
+  // A single write to the database. Holds only plain values, so it could be stored in the journal.
+  private static final class Write implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Operations written in a single transaction.
+    private final Operation[] operations;
+
+    // Position of the write in the journal.
+    private long sequence;
+
+    // Called after the transaction with the write got committed. Not journaled.
+    private transient Runnable onCommitted;
+
+    // True, if the write got replayed from the journal and could have been written already.
+    private transient boolean replayed;
+
+    private Write(Operation... operations) {
+      this.operations = operations;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder description = new StringBuilder();
+      for (Operation operation : operations) {
+        if (description.length() > 0) {
+          description.append("; ");
+        }
+        description.append(operation);
+      }
+      return description.toString();
+    }
+  }
+
+  // A single operation of a write.
+  private abstract static class Operation implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // Applies the operation within the passed transaction.
+    abstract void apply(EbeanServer database, Transaction transaction, boolean replayed);
+  }
+
+  // Inserts or updates a bean.
+  private static final class SaveOperation extends Operation {
+    private static final long serialVersionUID = 1L;
+
+    private final Class<?> type;
+    private final int id;
+    private final boolean insert;
+    private final Map<String, Object> values;
+
+    private SaveOperation(Class<?> type, int id, boolean insert, Map<String, Object> values) {
+      this.type = type;
+      this.id = id;
+      this.insert = insert;
+      this.values = values;
+    }
+
+    // A replayed insert could have been written before the crash, so it becomes an update if the bean exists.
+    void apply(EbeanServer database, Transaction transaction, boolean replayed) {
+      Object bean = BeanCopier.create(type, values);
+      if (insert && !(replayed && database.find(type, id, transaction) != null)) {
+        database.insert(bean, transaction);
+      } else {
+        database.update(bean, transaction);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return (insert ? "insert " : "update ") + type.getSimpleName() + " " + values;
+    }
+  }
+
+  // Deletes a bean by its id.
+  private static final class DeleteOperation extends Operation {
+    private static final long serialVersionUID = 1L;
+
+    private final Class<?> type;
+    private final int id;
+
+    private DeleteOperation(Class<?> type, int id) {
+      this.type = type;
+      this.id = id;
+    }
+
+    void apply(EbeanServer database, Transaction transaction, boolean replayed) {
+      database.delete(type, id, transaction);
+    }
+
+    @Override
+    public String toString() {
+      return "delete " + type.getSimpleName() + " " + id;
+    }
+  }
+
+  // Executes an update statement.
+  private static final class UpdateOperation extends Operation {
+    private static final long serialVersionUID = 1L;
+
+    private final QueuedUpdate update;
+
+    private UpdateOperation(QueuedUpdate update) {
+      this.update = update;
+    }
+
+    void apply(EbeanServer database, Transaction transaction, boolean replayed) {
+      database.execute(update.createUpdate(database), transaction);
+    }
+
+    @Override
+    public String toString() {
+      return update.toString();
+    }
+  }
+}
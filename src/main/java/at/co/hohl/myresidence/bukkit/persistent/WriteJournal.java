@@ -0,0 +1,282 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.bukkit.persistent;
+
+import at.co.hohl.myresidence.MyResidence;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the writes of the write-behind queue. Every write is appended before it gets queued, and the
+ * sequence of the last handled write is appended after each flush, so writes which did not reach the database are
+ * replayed on the next start. A record cut off by a crash is detected by its checksum and dropped. The file is emptied
+ * whenever all appended writes are handled.
+ *
+ * @author Michael Hohl
+ */
+final class WriteJournal {
+  // Marks a record holding a write.
+  private static final byte WRITE_RECORD = 1;
+
+  // Marks a record holding the sequence of the last handled write.
+  private static final byte HANDLED_RECORD = 2;
+
+  private final MyResidence plugin;
+
+  // File which holds the journal.
+  private final File file;
+
+  // Stream to append records, null if the journal is not open.
+  private DataOutputStream output;
+
+  // Sequence of the last appended write.
+  private long lastAppended;
+
+  // Sequence of the last handled write.
+  private long lastHandled;
+
+  /**
+   * Creates a new journal.
+   *
+   * @param plugin the plugin which holds the queue.
+   * @param file   the file which holds the journal.
+   */
+  WriteJournal(MyResidence plugin, File file) {
+    this.plugin = plugin;
+    this.file = file;
+  }
+
+  /**
+   * Opens the journal for appending.
+   *
+   * @return the writes which were appended, but not handled before the journal got closed the last time.
+   */
+  synchronized List<Object> open() {
+    Map<Long, Object> writes = new LinkedHashMap<Long, Object>();
+    long validLength = 0;
+
+    if (file.exists()) {
+      DataInputStream input = null;
+      try {
+        input = new DataInputStream(new FileInputStream(file));
+        while (true) {
+          byte type = input.readByte();
+          long sequence = input.readLong();
+          int length = input.readInt();
+          if (length < 0 || length > file.length() - validLength) {
+            plugin.warning("Journal %s contains a broken record, ignore everything after it.", file.getName());
+            break;
+          }
+
+          byte[] payload = new byte[length];
+          input.readFully(payload);
+          if (input.readLong() != checksum(type, sequence, payload)) {
+            plugin.warning("Journal %s contains a broken record, ignore everything after it.", file.getName());
+            break;
+          }
+
+          if (type == WRITE_RECORD) {
+            writes.put(sequence, deserialize(payload));
+            lastAppended = sequence;
+          } else {
+            lastHandled = Math.max(lastHandled, sequence);
+          }
+          validLength += 1 + 8 + 4 + payload.length + 8;
+        }
+      } catch (EOFException e) {
+        // End of the journal or a record cut off by a crash.
+      } catch (IOException e) {
+        plugin.severe("Could not read journal %s: %s", file.getName(), e.getMessage());
+      } finally {
+        close(input);
+      }
+    }
+
+    List<Object> unhandled = new ArrayList<Object>();
+    for (Map.Entry<Long, Object> write : writes.entrySet()) {
+      if (write.getKey() > lastHandled && write.getValue() != null) {
+        unhandled.add(write.getValue());
+      }
+    }
+
+    try {
+      file.getParentFile().mkdirs();
+      truncate(validLength);
+      output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    } catch (IOException e) {
+      plugin.severe("Could not open journal %s, changes are not journaled: %s", file.getName(), e.getMessage());
+    }
+
+    return unhandled;
+  }
+
+  /**
+   * @return the sequence of the last appended write.
+   */
+  synchronized long getLastSequence() {
+    return lastAppended;
+  }
+
+  /**
+   * Appends the write. The record is passed to the file system before the method returns.
+   *
+   * @param sequence the sequence of the write, must be higher than the last one.
+   * @param write    the write to append.
+   */
+  synchronized void append(long sequence, Serializable write) {
+    lastAppended = sequence;
+    if (output == null) {
+      return;
+    }
+
+    try {
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      ObjectOutputStream objectOutput = new ObjectOutputStream(buffer);
+      objectOutput.writeObject(write);
+      objectOutput.close();
+      writeRecord(WRITE_RECORD, sequence, buffer.toByteArray());
+    } catch (IOException e) {
+      plugin.severe("Could not append to journal %s: %s", file.getName(), e.getMessage());
+    }
+  }
+
+  /**
+   * Records that all writes up to the passed sequence are handled. Empties the journal, if there are no other writes.
+   *
+   * @param sequence the sequence of the last handled write.
+   */
+  synchronized void markHandled(long sequence) {
+    if (sequence <= lastHandled) {
+      return;
+    }
+
+    lastHandled = sequence;
+    if (output == null) {
+      return;
+    }
+
+    try {
+      if (lastHandled >= lastAppended) {
+        output.close();
+        truncate(0);
+        output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+      } else {
+        writeRecord(HANDLED_RECORD, sequence, new byte[0]);
+      }
+    } catch (IOException e) {
+      plugin.severe("Could not append to journal %s: %s", file.getName(), e.getMessage());
+    }
+  }
+
+  /**
+   * @return true, if all appended writes are handled.
+   */
+  synchronized boolean isEmpty() {
+    return lastHandled >= lastAppended;
+  }
+
+  /**
+   * Closes the journal. Unhandled writes are kept in the file.
+   */
+  synchronized void close() {
+    close(output);
+    output = null;
+  }
+
+  // Writes a single record and passes it to the file system.
+  private void writeRecord(byte type, long sequence, byte[] payload) throws IOException {
+    output.writeByte(type);
+    output.writeLong(sequence);
+    output.writeInt(payload.length);
+    output.write(payload);
+    output.writeLong(checksum(type, sequence, payload));
+    output.flush();
+  }
+
+  // Cuts the file to the passed length.
+  private void truncate(long length) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      randomAccessFile.setLength(length);
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  // Deserializes a write. Returns null, if the write can not be read anymore.
+  private Object deserialize(byte[] payload) {
+    try {
+      ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(payload));
+      try {
+        return input.readObject();
+      } finally {
+        input.close();
+      }
+    } catch (IOException e) {
+      plugin.severe("Could not read change from journal %s: %s", file.getName(), e.getMessage());
+    } catch (ClassNotFoundException e) {
+      plugin.severe("Could not read change from journal %s: %s", file.getName(), e.getMessage());
+    }
+
+    return null;
+  }
+
+  // Calculates the checksum of a record.
+  private static long checksum(byte type, long sequence, byte[] payload) {
+    CRC32 crc = new CRC32();
+    crc.update(type);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      crc.update((int) (sequence >>> shift));
+    }
+    crc.update(payload);
+    return crc.getValue();
+  }
+
+  // Closes the stream and ignores any errors.
+  private static void close(Closeable closeable) {
+    if (closeable == null) {
+      return;
+    }
+
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      // Nothing to do, the stream is not used anymore.
+    }
+  }
+}
@@ -100,7 +100,7 @@ public class HomeCommands {
                              final Nation nation,
                              final Player player,
                              final Session session) throws MyResidenceException {
-    Residence residence = nation.getResidence(player.getLocation());
+    Residence residence = session.getCurrentResidence();
 
     // Check if player is inside residence.
     if (residence == null) {
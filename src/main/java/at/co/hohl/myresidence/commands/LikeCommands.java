@@ -62,6 +62,10 @@ public class LikeCommands {
     Inhabitant playerInhabitant = nation.getInhabitant(session.getPlayerId());
     ResidenceManager manager = nation.getResidenceManager(residence);
 
+    if (manager.hasLiked(playerInhabitant)) {
+      throw new MyResidenceException("You already like the residence!");
+    }
+
     manager.like(playerInhabitant);
 
     Chat.sendMessage(player, "&2You liked the residence.");
@@ -92,6 +96,10 @@ public class LikeCommands {
     Inhabitant playerInhabitant = nation.getInhabitant(session.getPlayerId());
     ResidenceManager manager = nation.getResidenceManager(residence);
 
+    if (!manager.hasLiked(playerInhabitant)) {
+      throw new MyResidenceException("You do not like the residence!");
+    }
+
     manager.unlike(playerInhabitant);
 
     Chat.sendMessage(player, "&2You do not like the residence anymore.");
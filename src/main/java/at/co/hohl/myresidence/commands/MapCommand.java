@@ -20,13 +20,14 @@ package at.co.hohl.myresidence.commands;
 
 import at.co.hohl.myresidence.MyResidence;
 import at.co.hohl.myresidence.Nation;
+import at.co.hohl.myresidence.storage.Configuration;
 import at.co.hohl.myresidence.storage.Session;
 import at.co.hohl.myresidence.storage.persistent.Town;
 import com.sk89q.minecraft.util.commands.Command;
 import com.sk89q.minecraft.util.commands.CommandContext;
 import com.sk89q.worldedit.Vector2D;
 import org.bukkit.ChatColor;
-import org.bukkit.Chunk;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 
@@ -36,41 +37,46 @@ import org.bukkit.entity.Player;
  * @author Michael Hohl
  */
 public class MapCommand {
-  private static final int MAP_ROWS = 20;
-  private static final int MAP_LINES = 5;
-
   @Command(
           aliases = {"map"},
           desc = "Displays the town map",
           max = 0
   )
+  @AsyncSafe
   public static void map(final CommandContext args,
                          final MyResidence plugin,
                          final Nation nation,
                          final Player player,
                          final Session session) {
-    Chunk playerChunk = player.getLocation().getBlock().getChunk();
+    Location location = player.getLocation();
     World world = player.getWorld();
-    Town currentTown = nation.getTown(player.getLocation());
+    Town currentTown = session.getCurrentTown();
+
+    // Calculated from the location, so the chunk does not get loaded outside of the main thread.
+    int playerChunkX = location.getBlockX() >> 4;
+    int playerChunkZ = location.getBlockZ() >> 4;
+    Configuration configuration = plugin.getConfiguration(world);
 
-    int chunkXstart = playerChunk.getX() - (MAP_ROWS / 2);
-    int chunkXend = chunkXstart + MAP_ROWS;
-    int chunkZstart = playerChunk.getZ() - (MAP_LINES / 2);
-    int chunkZend = chunkZstart + MAP_LINES;
+    int chunkXstart = playerChunkX - (configuration.getMapWidth() - 1) / 2;
+    int chunkXend = chunkXstart + configuration.getMapWidth() - 1;
+    int chunkZstart = playerChunkZ - (configuration.getMapHeight() - 1) / 2;
+    int chunkZend = chunkZstart + configuration.getMapHeight() - 1;
+
+    // Fetch the owners of the whole map at once.
+    Town[][] chunkOwners = nation.getChunkManager().getChunkOwners(world,
+            new Vector2D(chunkXstart, chunkZstart), new Vector2D(chunkXend, chunkZend));
 
     player.sendMessage(ChatColor.GRAY + "= = = = TOWN MAP = = = =");
     for (int indexZ = chunkZstart; indexZ <= chunkZend; ++indexZ) {
       StringBuilder line = new StringBuilder();
       for (int indexX = chunkXstart; indexX <= chunkXend; ++indexX) {
-        Vector2D chunk = new Vector2D(indexX, indexZ);
-
-        if (chunk.getX() == playerChunk.getX() && chunk.getZ() == playerChunk.getZ()) {
+        if (indexX == playerChunkX && indexZ == playerChunkZ) {
           line.append(ChatColor.WHITE);
         } else {
           line.append(ChatColor.GRAY);
         }
 
-        Town chunkOwner = nation.getChunkManager().getChunkOwner(world, chunk);
+        Town chunkOwner = chunkOwners[indexX - chunkXstart][indexZ - chunkZstart];
         if (chunkOwner == null) {
           line.append(" -");
         } else if (chunkOwner.equals(currentTown)) {
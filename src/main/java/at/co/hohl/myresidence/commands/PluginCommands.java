@@ -40,18 +40,19 @@ import java.util.List;
 public class PluginCommands {
   @Command(
           aliases = {"reload"},
-          desc = "Reloads the MyResidence plugin",
+          desc = "Reloads the configuration of all worlds",
           max = 0
   )
   @CommandPermissions({"myresidence.admin"})
+  @AsyncSafe
   public static void reload(final CommandContext args,
                             final MyResidence plugin,
                             final Nation nation,
                             final Player player,
                             final Session session) {
 
-    plugin.getServer().reload();
-    player.sendMessage(ChatColor.LIGHT_PURPLE + "Configuration reloaded!");
+    int reloaded = plugin.reloadConfigurations();
+    player.sendMessage(ChatColor.LIGHT_PURPLE + "Configuration of " + reloaded + " worlds reloaded!");
 
   }
 
@@ -109,10 +110,7 @@ public class PluginCommands {
                                      final Player player,
                                      final Session session) {
 
-    Chat.sendMessage(player, "&8MyResidence is checking the database in background.");
-    Chat.sendMessage(player, "&8You'll get notified when interaction is needed.");
-
-    nation.searchInvalidResidences(new InvalidResidenceListener() {
+    boolean started = nation.searchInvalidResidences(new InvalidResidenceListener() {
       public void invalidResidencesFound(final List<Residence> invalidResidences) {
         if (invalidResidences.size() == 0) {
           Chat.sendMessage(player, "&2Everything is ok in MyResidence database!");
@@ -138,6 +136,12 @@ public class PluginCommands {
       }
     });
 
+    if (started) {
+      Chat.sendMessage(player, "&8MyResidence is checking the database in background.");
+    } else {
+      Chat.sendMessage(player, "&8MyResidence is already checking the database in background.");
+    }
+    Chat.sendMessage(player, "&8You'll get notified when interaction is needed.");
 
   }
 
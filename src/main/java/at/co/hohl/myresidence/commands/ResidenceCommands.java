@@ -39,8 +39,6 @@ import com.sk89q.worldedit.IncompleteRegionException;
 import com.sk89q.worldedit.bukkit.selections.Selection;
 import org.bukkit.entity.Player;
 
-import java.util.List;
-
 /**
  * Command for managing residences.
  *
@@ -78,7 +76,7 @@ public class ResidenceCommands {
     }
 
     // If player wants to create a residence in town, he must be inside a town too!
-    final Town town = nation.getTown(player.getLocation());
+    final Town town = session.getCurrentTown();
     if (!buildInWildness) {
       if (town == null) {
         throw new MyResidenceException("You can not create a residence outside the town!");
@@ -203,11 +201,7 @@ public class ResidenceCommands {
       throw new PermissionsDeniedException("You must be the owner and the major to do that!");
     }
 
-    ResidenceManager residenceManager = nation.getResidenceManager(residence);
-    List<Inhabitant> likes = residenceManager.getLikes();
-    for (Inhabitant like : likes) {
-      residenceManager.unlike(like);
-    }
+    nation.getResidenceManager(residence).resetLikes();
 
     Chat.sendMessage(player, "&2Removed all likes of residence {0}!", residence);
     plugin.getEventManager().callEvent(new ResidenceChangedEvent(session, residence));
@@ -248,7 +242,7 @@ public class ResidenceCommands {
     Player oldOwner = plugin.getServer().getPlayer(nation.getInhabitant(residence.getOwnerId()).getName());
     residence.setOwnerId(nation.getInhabitant(player.getName()).getId());
     residence.setForSale(false);
-    nation.getDatabase().save(residence);
+    nation.save(residence);
 
     Chat.sendMessage(player, "&2You have successfully bought the residence!");
     if (oldOwner != null && oldOwner.isOnline()) {
@@ -286,7 +280,7 @@ public class ResidenceCommands {
     if (residence.getValue() <= 0.0) {
       residence.setValue(price);
     }
-    nation.getDatabase().save(residence);
+    nation.save(residence);
 
     Chat.sendMessage(player, "&3Your residence is available for sale now!");
 
@@ -369,7 +363,7 @@ public class ResidenceCommands {
     }
 
     residence.setValue(args.getDouble(0));
-    nation.getDatabase().save(residence);
+    nation.save(residence);
 
     Chat.sendMessage(player, "&2Value has been set to &a{0}&2!", plugin.format(residence.getValue()));
 
@@ -397,7 +391,7 @@ public class ResidenceCommands {
     }
 
     residence.setName(args.getJoinedStrings(0));
-    nation.getDatabase().save(residence);
+    nation.save(residence);
 
     Chat.sendMessage(player, "&2Residence renamed to &a{0}&2!", residence.getName());
 
@@ -410,6 +404,7 @@ public class ResidenceCommands {
           desc = "Shows information about residences",
           usage = "[residence]"
   )
+  @AsyncSafe
   public static void info(final CommandContext args,
                           final MyResidence plugin,
                           final Nation nation,
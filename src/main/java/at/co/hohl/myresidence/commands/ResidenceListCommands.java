@@ -22,6 +22,8 @@ import at.co.hohl.myresidence.MyResidence;
 import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.exceptions.PlayerNotFoundException;
 import at.co.hohl.myresidence.storage.Session;
+import at.co.hohl.myresidence.storage.cache.Leaderboards;
+import at.co.hohl.myresidence.storage.cache.SortedIndex;
 import at.co.hohl.myresidence.storage.persistent.Inhabitant;
 import at.co.hohl.myresidence.storage.persistent.Residence;
 import at.co.hohl.myresidence.storage.persistent.Town;
@@ -52,33 +54,19 @@ public class ResidenceListCommands {
           flags = "t",
           max = 1
   )
+  @AsyncSafe
   public static void forSale(final CommandContext args,
                              final MyResidence plugin,
                              final Nation nation,
                              final Player player,
                              final Session session) throws InsufficientArgumentsException {
 
-    ExpressionList expressionList = nation.getDatabase().find(Residence.class).where();
-
-    // Cheapest residence at the top.
-    expressionList.orderBy("price ASC");
-
-    // Only residences for sale.
-    expressionList.eq("forSale", true);
-
-    if (args.hasFlag('t')) {
-      Town currentTown = nation.getTown(player.getLocation());
-      if (currentTown == null) {
-        throw new InsufficientArgumentsException(
-                "You are not inside a town! You could only use -t inside towns.");
-      } else {
-        expressionList.eq("townId", currentTown.getId());
-      }
-    }
+    // Cheapest residence at the top, only residences for sale.
+    SortedIndex<Residence> leaderboard = getLeaderboard(args, nation, session, Leaderboards.ResidenceOrder.PRICE);
 
     // Find and display exact page.
     int page = args.getInteger(0, 1);
-    displayResults("Residences (Oldest)", expressionList, page, plugin, nation, player, !args.hasFlag('t'), true,
+    displayResults("Residences (Oldest)", leaderboard, page, plugin, nation, player, !args.hasFlag('t'), true,
             true);
 
   }
@@ -90,6 +78,7 @@ public class ResidenceListCommands {
           flags = "t",
           max = 2
   )
+  @AsyncSafe
   public static void own(final CommandContext args,
                          final MyResidence plugin,
                          final Nation nation,
@@ -105,7 +94,7 @@ public class ResidenceListCommands {
     expressionList.eq("ownerId", session.getPlayerId());
 
     if (args.hasFlag('t')) {
-      Town currentTown = nation.getTown(player.getLocation());
+      Town currentTown = session.getCurrentTown();
       if (currentTown == null) {
         throw new InsufficientArgumentsException(
                 "You are not inside a town! You could only use -t inside towns.");
@@ -129,6 +118,7 @@ public class ResidenceListCommands {
           min = 1,
           max = 2
   )
+  @AsyncSafe
   public static void player(final CommandContext args,
                             final MyResidence plugin,
                             final Nation nation,
@@ -148,7 +138,7 @@ public class ResidenceListCommands {
     expressionList.eq("ownerId", inhabitant.getId());
 
     if (args.hasFlag('t')) {
-      Town currentTown = nation.getTown(player.getLocation());
+      Town currentTown = session.getCurrentTown();
       if (currentTown == null) {
         throw new InsufficientArgumentsException(
                 "You are not inside a town! You could only use -t inside towns.");
@@ -171,30 +161,19 @@ public class ResidenceListCommands {
           flags = "t",
           max = 1
   )
+  @AsyncSafe
   public static void alphabetic(final CommandContext args,
                                 final MyResidence plugin,
                                 final Nation nation,
                                 final Player player,
                                 final Session session) throws InsufficientArgumentsException {
 
-    ExpressionList expressionList = nation.getDatabase().find(Residence.class).where();
-
     // Sort by name.
-    expressionList.orderBy("name ASC");
-
-    if (args.hasFlag('t')) {
-      Town currentTown = nation.getTown(player.getLocation());
-      if (currentTown == null) {
-        throw new InsufficientArgumentsException(
-                "You are not inside a town! You could only use -t inside towns.");
-      } else {
-        expressionList.eq("townId", currentTown.getId());
-      }
-    }
+    SortedIndex<Residence> leaderboard = getLeaderboard(args, nation, session, Leaderboards.ResidenceOrder.NAME);
 
     // Find and display exact page.
     int page = args.getInteger(0, 1);
-    displayResults("Residences (Alphabetic Order)", expressionList, page, plugin, nation, player,
+    displayResults("Residences (Alphabetic Order)", leaderboard, page, plugin, nation, player,
             !args.hasFlag('t'), true, false);
 
   }
@@ -206,19 +185,30 @@ public class ResidenceListCommands {
           flags = "to",
           max = 1
   )
+  @AsyncSafe
   public static void expensive(final CommandContext args,
                                final MyResidence plugin,
                                final Nation nation,
                                final Player player,
                                final Session session) throws InsufficientArgumentsException {
 
+    int page = args.getInteger(0, 1);
+
+    // Most valuable residences are held in memory, only own residences have to be searched.
+    if (!args.hasFlag('o')) {
+      SortedIndex<Residence> leaderboard = getLeaderboard(args, nation, session, Leaderboards.ResidenceOrder.VALUE);
+      displayResults("Residences (Most Expensive)", leaderboard, page, plugin, nation, player,
+              !args.hasFlag('t'), true, false);
+      return;
+    }
+
     ExpressionList expressionList = nation.getDatabase().find(Residence.class).where();
 
     // Sort by name.
     expressionList.orderBy("value DESC");
 
     if (args.hasFlag('t')) {
-      Town currentTown = nation.getTown(player.getLocation());
+      Town currentTown = session.getCurrentTown();
       if (currentTown == null) {
         throw new InsufficientArgumentsException(
                 "You are not inside a town! You could only use -t inside towns.");
@@ -227,17 +217,58 @@ public class ResidenceListCommands {
       }
     }
 
-    if (args.hasFlag('o')) {
-      expressionList.eq("ownerId", session.getPlayerId());
-    }
+    expressionList.eq("ownerId", session.getPlayerId());
 
     // Find and display exact page.
-    int page = args.getInteger(0, 1);
     displayResults("Residences (Most Expensive)", expressionList, page, plugin, nation, player,
-            !args.hasFlag('t'), !args.hasFlag('o'), false);
+            !args.hasFlag('t'), false, false);
+
+  }
+
+  @Command(
+          aliases = {"liked", "popular"},
+          usage = "[page]",
+          desc = "Lists the most liked residences",
+          flags = "t",
+          max = 1
+  )
+  @AsyncSafe
+  public static void liked(final CommandContext args,
+                           final MyResidence plugin,
+                           final Nation nation,
+                           final Player player,
+                           final Session session) throws InsufficientArgumentsException {
+
+    // Most liked residence at the top, only residences with likes.
+    SortedIndex<Residence> leaderboard = getLeaderboard(args, nation, session, Leaderboards.ResidenceOrder.LIKES);
+
+    // Find and display exact page.
+    int page = args.getInteger(0, 1);
+    displayResults("Residences (Most Liked)", leaderboard, page, plugin, nation, player, !args.hasFlag('t'), true,
+            false);
 
   }
 
+  // Returns the leaderboard of the current town, if the flag 't' is set, or the leaderboard of all residences.
+  private static SortedIndex<Residence> getLeaderboard(final CommandContext args,
+                                                       final Nation nation,
+                                                       final Session session,
+                                                       final Leaderboards.ResidenceOrder order)
+          throws InsufficientArgumentsException {
+
+    if (args.hasFlag('t')) {
+      Town currentTown = session.getCurrentTown();
+      if (currentTown == null) {
+        throw new InsufficientArgumentsException(
+                "You are not inside a town! You could only use -t inside towns.");
+      } else {
+        return nation.getLeaderboards().getResidences(order, currentTown.getId());
+      }
+    }
+
+    return nation.getLeaderboards().getResidences(order);
+  }
+
   // Displays the search results.
 
   private static void displayResults(final String searchTitle,
@@ -252,23 +283,69 @@ public class ResidenceListCommands {
           throws InsufficientArgumentsException {
 
     int rows = expressionList.findRowCount();
-    int index = (page - 1) * 7 + 1;
+    checkPage(rows, page);
+    expressionList.setMaxRows(LINES_PER_PAGE);
+    expressionList.setFirstRow((page - 1) * LINES_PER_PAGE);
+
+    // Get towns.
+    List<Residence> residences = expressionList.findList();
+
+    sendResults(searchTitle, residences, rows, page, plugin, nation, player, showTown, showOwner, showPrice);
+  }
+
+  // Displays the page of the leaderboard.
+
+  private static void displayResults(final String searchTitle,
+                                     final SortedIndex<Residence> leaderboard,
+                                     final int page,
+                                     final MyResidence plugin,
+                                     final Nation nation,
+                                     final Player player,
+                                     boolean showTown,
+                                     boolean showOwner,
+                                     boolean showPrice)
+          throws InsufficientArgumentsException {
+
+    int rows = leaderboard.size();
+    checkPage(rows, page);
+
+    List<Residence> residences = leaderboard.getPage((page - 1) * LINES_PER_PAGE, LINES_PER_PAGE);
+
+    sendResults(searchTitle, residences, rows, page, plugin, nation, player, showTown, showOwner, showPrice);
+  }
+
+  // Checks if the page is available.
+
+  private static void checkPage(final int rows, final int page) throws InsufficientArgumentsException {
+    int index = (page - 1) * LINES_PER_PAGE + 1;
     if (rows == 0) {
       throw new InsufficientArgumentsException("No search results found!");
     }
     if (index > rows || index < 1) {
       throw new InsufficientArgumentsException("Invalid page number!");
     }
-    expressionList.setMaxRows(LINES_PER_PAGE);
-    expressionList.setFirstRow((page - 1) * LINES_PER_PAGE);
+  }
 
-    // Get towns.
-    List<Residence> residences = expressionList.findList();
+  // Sends the residences of the page to the player.
+
+  private static void sendResults(final String searchTitle,
+                                  final List<Residence> residences,
+                                  final int rows,
+                                  final int page,
+                                  final MyResidence plugin,
+                                  final Nation nation,
+                                  final Player player,
+                                  boolean showTown,
+                                  boolean showOwner,
+                                  boolean showPrice) {
+
+    int index = (page - 1) * LINES_PER_PAGE + 1;
 
     // Send results to player.
     player.sendMessage(String.format("%s= = = %s [Page %s/%s] = = =",
             ChatColor.LIGHT_PURPLE, searchTitle, page, rows / LINES_PER_PAGE + 1));
 
+    // Towns and owners are resolved from the caches of the nation, so this does not query the database.
     for (Residence residence : residences) {
       StringBuilder line = new StringBuilder();
       line.append(ChatColor.GRAY);
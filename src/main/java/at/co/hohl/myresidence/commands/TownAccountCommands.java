@@ -147,7 +147,7 @@ public class TownAccountCommands {
 
     selectedTown.addMoney(amount);
     account.subtract(amount);
-    nation.getDatabase().save(selectedTown);
+    nation.save(selectedTown);
 
     player.sendMessage(String.format("%s%s%s send to town account!",
             ChatColor.GREEN, payment.format(amount), ChatColor.DARK_GREEN));
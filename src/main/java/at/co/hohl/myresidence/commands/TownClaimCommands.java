@@ -37,6 +37,8 @@ import org.bukkit.Chunk;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 
+import java.util.Set;
+
 /**
  * Commands for expanding towns.
  *
@@ -95,7 +97,7 @@ public class TownClaimCommands {
     nation.getChunkManager().addChunk(selectedTown, chunkWorld, chunkVector);
 
     // Save and end transaction
-    nation.getDatabase().save(selectedTown);
+    nation.save(selectedTown);
 
     player.sendMessage(ChatColor.DARK_GREEN + "Town bought chunk for " + ChatColor.GREEN +
             plugin.format(chunkCost) + ChatColor.DARK_GREEN + ".");
@@ -132,12 +134,13 @@ public class TownClaimCommands {
     }
 
     // Count chunks to bought.
+    final Set<Vector2D> selectedChunks = selectedRegion.getChunks();
     int numberOfChunksToBought = 0;
-    for (final Vector2D chunk : selectedRegion.getChunks()) {
+    for (final Vector2D chunk : selectedChunks) {
       Town chunkOwner = chunkManager.getChunkOwner(selectedWorld, chunk);
       if (chunkOwner == null) {
         numberOfChunksToBought++;
-      } else if (chunkOwner != selectedTown && args.hasFlag('i')) {
+      } else if (chunkOwner.getId() != selectedTown.getId() && !args.hasFlag('i')) {
         throw new MyResidenceException("At least on of the chunks is already bought by another town!");
       }
     }
@@ -150,7 +153,7 @@ public class TownClaimCommands {
     }
 
     // Add chunks to town and then subtract the money from the town account.
-    chunkManager.addChunks(selectedTown, selectedWorld, selectedRegion.getChunks());
+    chunkManager.addChunks(selectedTown, selectedWorld, selectedChunks);
     selectedTown.subtractMoney(cost);
 
     // Save and end transaction
@@ -58,7 +58,7 @@ public class TownCommands {
     Town town = new Town();
     town.setName(args.getJoinedStrings(0));
     town.setFoundedAt(new Date());
-    nation.getDatabase().save(town);
+    nation.save(town);
 
     nation.getTownManager(town).addMajor(nation.getInhabitant(session.getPlayerId()));
 
@@ -91,8 +91,8 @@ public class TownCommands {
           if (plugin.getPaymentMethods().hasMethod()) {
             plugin.getPaymentMethods().getMethod().getAccount(player.getName()).add(townToRemove.getMoney());
           }
-          nation.remove(townToRemove);
-          Chat.sendMessage(player, "&2Town {0} removed!", townToRemove);
+          nation.remove(townToRemove, session);
+          Chat.sendMessage(player, "&dRemoving town {0}...", townToRemove);
         } catch (MyResidenceException e) {
           Chat.sendMessage(player, "&a{0}", e);
         }
@@ -135,6 +135,7 @@ public class TownCommands {
           desc = "Returns information about the selected town",
           usage = "[town]"
   )
+  @AsyncSafe
   public static void info(final CommandContext args,
                           final MyResidence plugin,
                           final Nation nation,
@@ -156,12 +157,13 @@ public class TownCommands {
           desc = "Shows the rules of the town",
           max = 0
   )
+  @AsyncSafe
   public static void rules(final CommandContext args,
                            final MyResidence plugin,
                            final Nation nation,
                            final Player player,
                            final Session session) throws MyResidenceException {
-    Town townAtCurrentLocation = nation.getTown(player.getLocation());
+    Town townAtCurrentLocation = session.getCurrentTown();
 
     if (townAtCurrentLocation == null) {
       throw new TownNotFoundException("You are not inside a town!");
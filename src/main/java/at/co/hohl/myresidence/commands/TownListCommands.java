@@ -22,8 +22,9 @@ import at.co.hohl.mcutils.chat.Chat;
 import at.co.hohl.myresidence.MyResidence;
 import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.storage.Session;
+import at.co.hohl.myresidence.storage.cache.Leaderboards;
+import at.co.hohl.myresidence.storage.cache.SortedIndex;
 import at.co.hohl.myresidence.storage.persistent.Town;
-import com.avaje.ebean.ExpressionList;
 import com.sk89q.minecraft.util.commands.Command;
 import com.sk89q.minecraft.util.commands.CommandContext;
 import com.sk89q.minecraft.util.commands.CommandPermissions;
@@ -52,20 +53,19 @@ public class TownListCommands {
           max = 1
   )
   @CommandPermissions({"myresidence.town.list.alphabetic"})
+  @AsyncSafe
   public static void alphabetical(final CommandContext args,
                                   final MyResidence plugin,
                                   final Nation nation,
                                   final Player player,
                                   final Session session) throws InsufficientArgumentsException {
 
-    ExpressionList expressionList = nation.getDatabase().find(Town.class).where();
-
     // Richest town at the top!
-    expressionList.orderBy("name ASC");
+    SortedIndex<Town> leaderboard = nation.getLeaderboards().getTowns(Leaderboards.TownOrder.NAME);
 
     // Find and display exact page.
     int page = args.getInteger(0, 1);
-    displayResults("Towns (Alphabetical Order)", expressionList, page, plugin, nation, player);
+    displayResults("Towns (Alphabetical Order)", leaderboard, page, plugin, nation, player);
 
   }
 
@@ -76,20 +76,19 @@ public class TownListCommands {
           max = 1
   )
   @CommandPermissions({"myresidence.town.list.richest"})
+  @AsyncSafe
   public static void richest(final CommandContext args,
                              final MyResidence plugin,
                              final Nation nation,
                              final Player player,
                              final Session session) throws InsufficientArgumentsException {
 
-    ExpressionList expressionList = nation.getDatabase().find(Town.class).where();
-
     // Richest town at the top!
-    expressionList.orderBy("money DESC");
+    SortedIndex<Town> leaderboard = nation.getLeaderboards().getTowns(Leaderboards.TownOrder.MONEY);
 
     // Find and display exact page.
     int page = args.getInteger(0, 1);
-    displayResults("Towns (Richest)", expressionList, page, plugin, nation, player);
+    displayResults("Towns (Richest)", leaderboard, page, plugin, nation, player);
 
   }
 
@@ -100,51 +99,48 @@ public class TownListCommands {
           max = 1
   )
   @CommandPermissions({"myresidence.town.list.oldest"})
+  @AsyncSafe
   public static void oldest(final CommandContext args,
                             final MyResidence plugin,
                             final Nation nation,
                             final Player player,
                             final Session session) throws InsufficientArgumentsException {
 
-    ExpressionList expressionList = nation.getDatabase().find(Town.class).where();
-
     // Richest town at the top!
-    expressionList.orderBy("foundedAt ASC");
+    SortedIndex<Town> leaderboard = nation.getLeaderboards().getTowns(Leaderboards.TownOrder.AGE);
 
     // Find and display exact page.
     int page = args.getInteger(0, 1);
-    displayResults("Towns (Oldest)", expressionList, page, plugin, nation, player);
+    displayResults("Towns (Oldest)", leaderboard, page, plugin, nation, player);
 
   }
 
   // Displays the search results.
 
   private static void displayResults(final String searchTitle,
-                                     final ExpressionList expressionList,
+                                     final SortedIndex<Town> leaderboard,
                                      final int page,
                                      final MyResidence plugin,
                                      final Nation nation,
                                      final Player player)
           throws InsufficientArgumentsException {
 
-    int rows = expressionList.findRowCount();
-    int index = (page - 1) * 7 + 1;
+    int rows = leaderboard.size();
+    int index = (page - 1) * LINES_PER_PAGE + 1;
     if (rows == 0) {
       throw new InsufficientArgumentsException("No search results found!");
     }
     if (index > rows || index < 1) {
       throw new InsufficientArgumentsException("Invalid page number!");
     }
-    expressionList.setMaxRows(LINES_PER_PAGE);
-    expressionList.setFirstRow((page - 1) * LINES_PER_PAGE);
-
     // Get towns.
-    List<Town> towns = expressionList.findList();
+    List<Town> towns = leaderboard.getPage((page - 1) * LINES_PER_PAGE, LINES_PER_PAGE);
 
     // Send results to player.
     player.sendMessage(String.format("%s= = = %s [Page %s/%s] = = =",
             ChatColor.LIGHT_PURPLE, searchTitle, page, rows / LINES_PER_PAGE + 1));
 
+    // Majors are resolved from the caches of the nation, so this does not query the database.
     for (Town town : towns) {
       Chat.sendMessage(player, "{0}. {1} ({2}) [Balance: {3}]", index++, town.getName(),
               StringUtil.joinString(nation.getTownManager(town).getMajors(), ", ", 0),
@@ -19,16 +19,21 @@
 package at.co.hohl.myresidence.event;
 
 import at.co.hohl.myresidence.MyResidence;
+import at.co.hohl.myresidence.storage.persistent.Residence;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Handler for residence and town events.
+ * Handler for residence and town events. Events called within a tick are delivered together by a single task on the
+ * main thread. The listeners are resolved once per event class.
  *
  * @author Michael Hohl
  */
-public class EventManager {
+public class EventManager implements Runnable {
   /**
    * Plugin which holds the instance.
    */
@@ -37,7 +42,32 @@ public class EventManager {
   /**
    * Listeners for residence events.
    */
-  private final List<EventListener> eventListeners = new LinkedList<EventListener>();
+  private final List<EventListener> eventListeners = new CopyOnWriteArrayList<EventListener>();
+
+  /**
+   * Listeners which can handle the events, by the class of the event.
+   */
+  private final Map<Class<?>, EventListener[]> dispatchTable = new HashMap<Class<?>, EventListener[]>();
+
+  /**
+   * Events waiting for delivery.
+   */
+  private List<Object> pendingEvents = new ArrayList<Object>();
+
+  /**
+   * Events which get delivered right now. Swapped with the pending events, so no list is allocated per tick.
+   */
+  private List<Object> deliveredEvents = new ArrayList<Object>();
+
+  /**
+   * Index of the last delivered change of the residence, by the id of the residence.
+   */
+  private final Map<Integer, Integer> changedResidences = new HashMap<Integer, Integer>();
+
+  /**
+   * True, if the delivery of the pending events is already scheduled.
+   */
+  private boolean deliveryScheduled;
 
   /**
    * Creates a new event manager.
@@ -49,29 +79,56 @@ public class EventManager {
   }
 
   /**
-   * Calls a new event.
+   * Calls a new event. The event gets delivered on the main thread.
    *
    * @param o the event to call.
    */
   public void callEvent(final Object o) {
-    Runnable eventRunnable = new Runnable() {
-      public void run() {
-        for (EventListener listener : eventListeners) {
-          if (listener.canHandle(o)) {
-            try {
-              listener.handle(o);
-            } catch (Throwable e) {
-              plugin.severe("Exception occurred: %s in listener: %s",
-                      e.getClass().getName(), listener.getClass().getName());
-
-              e.printStackTrace();
-            }
-          }
+    boolean scheduleDelivery;
+
+    synchronized (this) {
+      pendingEvents.add(o);
+      scheduleDelivery = !deliveryScheduled;
+      deliveryScheduled = true;
+    }
+
+    if (scheduleDelivery) {
+      plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, this);
+    }
+  }
+
+  /**
+   * Delivers all pending events. Called by the scheduler on the main thread.
+   */
+  public void run() {
+    List<Object> events;
+    synchronized (this) {
+      events = pendingEvents;
+      pendingEvents = deliveredEvents;
+      deliveredEvents = events;
+      deliveryScheduled = false;
+    }
+
+    mergeResidenceChanges(events);
+
+    for (Object event : events) {
+      if (event == null) {
+        continue;
+      }
+
+      for (EventListener listener : getListeners(event)) {
+        try {
+          listener.handle(event);
+        } catch (Throwable e) {
+          plugin.severe("Exception occurred: %s in listener: %s",
+                  e.getClass().getName(), listener.getClass().getName());
+
+          e.printStackTrace();
         }
       }
-    };
+    }
 
-    plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, eventRunnable);
+    events.clear();
   }
 
   /**
@@ -81,6 +138,10 @@ public class EventManager {
    */
   public void addListener(EventListener listener) {
     eventListeners.add(listener);
+
+    synchronized (dispatchTable) {
+      dispatchTable.clear();
+    }
   }
 
   /**
@@ -90,5 +151,67 @@ public class EventManager {
    */
   public void removeListener(EventListener eventListener) {
     eventListeners.remove(eventListener);
+
+    synchronized (dispatchTable) {
+      dispatchTable.clear();
+    }
+  }
+
+  // Returns the listeners which can handle events of the class of the passed event.
+  private EventListener[] getListeners(Object event) {
+    synchronized (dispatchTable) {
+      EventListener[] listeners = dispatchTable.get(event.getClass());
+
+      if (listeners == null) {
+        List<EventListener> matchingListeners = new ArrayList<EventListener>();
+        for (EventListener listener : eventListeners) {
+          if (listener.canHandle(event)) {
+            matchingListeners.add(listener);
+          }
+        }
+
+        listeners = matchingListeners.toArray(new EventListener[matchingListeners.size()]);
+        dispatchTable.put(event.getClass(), listeners);
+      }
+
+      return listeners;
+    }
+  }
+
+  // Replaces repeated changes of the same residence by null, as long as no other event of the residence came between.
+  // The latest change is kept, so the listeners see who changed the residence last.
+  private void mergeResidenceChanges(List<Object> events) {
+    for (int index = 0; index < events.size(); ++index) {
+      Residence residence = getResidence(events.get(index));
+      if (residence == null) {
+        continue;
+      }
+
+      if (events.get(index) instanceof ResidenceChangedEvent) {
+        Integer previousIndex = changedResidences.put(residence.getId(), index);
+        if (previousIndex != null) {
+          events.set(previousIndex, null);
+        }
+      } else {
+        changedResidences.remove(residence.getId());
+      }
+    }
+
+    changedResidences.clear();
+  }
+
+  // Returns the residence the event is about, or null if it is not a residence event.
+  private static Residence getResidence(Object event) {
+    if (event instanceof ResidenceChangedEvent) {
+      return ((ResidenceChangedEvent) event).getResidence();
+    } else if (event instanceof ResidenceCreatedEvent) {
+      return ((ResidenceCreatedEvent) event).getResidence();
+    } else if (event instanceof ResidenceRemovedEvent) {
+      return ((ResidenceRemovedEvent) event).getResidence();
+    } else if (event instanceof ResidenceLikedEvent) {
+      return ((ResidenceLikedEvent) event).getResidence();
+    }
+
+    return null;
   }
 }
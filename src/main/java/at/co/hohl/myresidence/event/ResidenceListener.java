@@ -34,7 +34,9 @@ public abstract class ResidenceListener implements EventListener {
     return o instanceof ResidenceChangedEvent ||
             o instanceof ResidenceCreatedEvent ||
             o instanceof ResidenceRemovedEvent ||
-            o instanceof ResidenceLikedEvent;
+            o instanceof ResidenceLikedEvent ||
+            o instanceof ResidenceEnteredEvent ||
+            o instanceof ResidenceLeftEvent;
   }
 
   /**
@@ -51,6 +53,10 @@ public abstract class ResidenceListener implements EventListener {
       onResidenceRemoved((ResidenceRemovedEvent) o);
     } else if (o instanceof ResidenceLikedEvent) {
       onResidenceLiked((ResidenceLikedEvent) o);
+    } else if (o instanceof ResidenceEnteredEvent) {
+      onResidenceEntered((ResidenceEnteredEvent) o);
+    } else if (o instanceof ResidenceLeftEvent) {
+      onResidenceLeft((ResidenceLeftEvent) o);
     }
   }
 
@@ -85,4 +91,20 @@ public abstract class ResidenceListener implements EventListener {
    */
   public void onResidenceRemoved(ResidenceRemovedEvent event) {
   }
+
+  /**
+   * Called when a player entered a residence.
+   *
+   * @param event the event itself.
+   */
+  public void onResidenceEntered(ResidenceEnteredEvent event) {
+  }
+
+  /**
+   * Called when a player left a residence.
+   *
+   * @param event the event itself.
+   */
+  public void onResidenceLeft(ResidenceLeftEvent event) {
+  }
 }
@@ -0,0 +1,77 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.event;
+
+/**
+ * Abstract class for listeners for towns.
+ *
+ * @author Michael Hohl
+ */
+public abstract class TownListener implements EventListener {
+  /**
+   * Checks if the handler can handle the event.
+   *
+   * @param o the object which is the event.
+   * @return true, if the handler could handle the event.
+   */
+  public boolean canHandle(Object o) {
+    return o instanceof TownRemovedEvent ||
+            o instanceof TownEnteredEvent ||
+            o instanceof TownLeftEvent;
+  }
+
+  /**
+   * Handles the event.
+   *
+   * @param o the object which is the event.
+   */
+  public void handle(Object o) {
+    if (o instanceof TownRemovedEvent) {
+      onTownRemoved((TownRemovedEvent) o);
+    } else if (o instanceof TownEnteredEvent) {
+      onTownEntered((TownEnteredEvent) o);
+    } else if (o instanceof TownLeftEvent) {
+      onTownLeft((TownLeftEvent) o);
+    }
+  }
+
+  /**
+   * Called when a town is removed.
+   *
+   * @param event the event itself.
+   */
+  public void onTownRemoved(TownRemovedEvent event) {
+  }
+
+  /**
+   * Called when a player entered a town.
+   *
+   * @param event the event itself.
+   */
+  public void onTownEntered(TownEnteredEvent event) {
+  }
+
+  /**
+   * Called when a player left a town.
+   *
+   * @param event the event itself.
+   */
+  public void onTownLeft(TownLeftEvent event) {
+  }
+}
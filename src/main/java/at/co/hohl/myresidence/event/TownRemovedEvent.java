@@ -0,0 +1,46 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.event;
+
+import at.co.hohl.myresidence.storage.Session;
+import at.co.hohl.myresidence.storage.persistent.Town;
+
+/**
+ * Event for removing a town. Called after the town got removed from the database.
+ *
+ * @author Michael Hohl
+ */
+public final class TownRemovedEvent {
+  private final Town town;
+
+  private final Session removedBy;
+
+  public TownRemovedEvent(Session removedBy, Town town) {
+    this.removedBy = removedBy;
+    this.town = town;
+  }
+
+  public Session getRemovedBy() {
+    return removedBy;
+  }
+
+  public Town getTown() {
+    return town;
+  }
+}
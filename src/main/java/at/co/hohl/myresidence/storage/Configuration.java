@@ -27,6 +27,13 @@ import java.util.List;
  * @author Michael Hohl
  */
 public class Configuration {
+  // Highest block id accepted in the block lists.
+  static final int MAX_BLOCK_ID = 4095;
+
+  // Top level paths of all settings.
+  private static final String[] PATHS = {"cost", "sign", "safeTeleport", "residenceOverlay", "mobSpawnLimit", "map",
+          "denyMobSpawners", "town", "wildness"};
+
   // The configuration used by for loading/saving.
   private final org.bukkit.util.config.Configuration configuration;
 
@@ -45,6 +52,12 @@ public class Configuration {
   // Maximum numbers of blocks a residence is allowed to overlay from area.
   private int residenceOverlay;
 
+  // Number of chunks displayed per line of the town map.
+  private int mapWidth;
+
+  // Number of lines of the town map.
+  private int mapHeight;
+
   // Maximum number of creatures spawned in world.
   private int mobSpawnLimit;
 
@@ -57,32 +70,79 @@ public class Configuration {
   private List<Integer> allowedToBuildInTown;
   private List<Integer> allowedToDestroyInTown;
 
+  // Compiled view of the current values, replaced on every change.
+  private volatile ConfigurationSnapshot snapshot;
+
   /**
-   * Creates a new Configuration with the passed Bukkit Config.
+   * Creates a new Configuration with the passed Bukkit Config. Nothing is loaded before {@link #load()} got called.
    *
    * @param configuration the bukkit config to load/save.
    */
   public Configuration(org.bukkit.util.config.Configuration configuration) {
     this.configuration = configuration;
-    load();
   }
 
   /**
-   * Loads the configuration. (Auto done on construction, only for reload!)
+   * Loads the configuration and validates the values. The snapshot is only compiled, if all values are valid, so
+   * invalid values never get used.
+   *
+   * @return the problems found, empty if the configuration got loaded.
    */
-  public void load() {
+  public List<String> load() {
     configuration.load();
-    chunkCost = configuration.getDouble("cost.chunk", 1000);
-    signTitle = configuration.getString("sign.title", "[Residence]");
-    signSaleText = configuration.getString("sign.sale", "FOR SALE!");
-    safeTeleport = configuration.getBoolean("safeTeleport", true);
-    residenceOverlay = configuration.getInt("residenceOverlay", 1);
-    mobSpawnLimit = configuration.getInt("mobSpawnLimit", 600);
-    denyBlockSpawners = configuration.getBoolean("denyMobSpawners", true);
-    allowedToBuildInTown = configuration.getIntList("town.place", new LinkedList<Integer>());
-    allowedToDestroyInTown = configuration.getIntList("town.destroy", new LinkedList<Integer>());
-    allowedToBuildInWildness = configuration.getIntList("wildness.place", new LinkedList<Integer>());
-    allowedToDestroyInWildness = configuration.getIntList("wildness.destroy", new LinkedList<Integer>());
+    readValues();
+
+    List<String> problems = validate();
+    if (problems.isEmpty()) {
+      snapshot = new ConfigurationSnapshot(this);
+    }
+    return problems;
+  }
+
+  /**
+   * Drops all values loaded from the file and uses the default values instead.
+   */
+  public void loadDefaults() {
+    for (String path : PATHS) {
+      configuration.removeProperty(path);
+    }
+    readValues();
+    snapshot = new ConfigurationSnapshot(this);
+  }
+
+  /**
+   * @return the compiled view of the current values, null if the configuration is not loaded.
+   */
+  public ConfigurationSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Checks if the loaded values are usable. Called by {@link #load()} before the values get compiled.
+   *
+   * @return the problems found, empty if the configuration is valid.
+   */
+  public List<String> validate() {
+    List<String> problems = new LinkedList<String>();
+
+    if (chunkCost < 0) {
+      problems.add("cost.chunk must not be negative");
+    }
+    if (signTitle == null || signTitle.length() == 0) {
+      problems.add("sign.title must not be empty");
+    }
+    if (residenceOverlay < 0) {
+      problems.add("residenceOverlay must not be negative");
+    }
+    if (mobSpawnLimit < 0) {
+      problems.add("mobSpawnLimit must not be negative");
+    }
+    validateBlocks("town.place", allowedToBuildInTown, problems);
+    validateBlocks("town.destroy", allowedToDestroyInTown, problems);
+    validateBlocks("wildness.place", allowedToBuildInWildness, problems);
+    validateBlocks("wildness.destroy", allowedToDestroyInWildness, problems);
+
+    return problems;
   }
 
   /**
@@ -95,6 +155,8 @@ public class Configuration {
     configuration.setProperty("safeTeleport", safeTeleport);
     configuration.setProperty("residenceOverlay", residenceOverlay);
     configuration.setProperty("mobSpawnLimit", mobSpawnLimit);
+    configuration.setProperty("map.width", mapWidth);
+    configuration.setProperty("map.height", mapHeight);
     configuration.setProperty("denyMobSpawners", denyBlockSpawners);
     configuration.setProperty("town.place", allowedToBuildInTown);
     configuration.setProperty("town.destroy", allowedToDestroyInTown);
@@ -125,6 +187,7 @@ public class Configuration {
 
   public void setSignTitle(String signTitle) {
     this.signTitle = signTitle;
+    snapshot = new ConfigurationSnapshot(this);
   }
 
   public boolean isSafeTeleport() {
@@ -141,6 +204,7 @@ public class Configuration {
 
   public void setDenyBlockSpawners(boolean denyBlockSpawners) {
     this.denyBlockSpawners = denyBlockSpawners;
+    snapshot = new ConfigurationSnapshot(this);
   }
 
   public int getResidenceOverlay() {
@@ -149,6 +213,7 @@ public class Configuration {
 
   public void setResidenceOverlay(int residenceOverlay) {
     this.residenceOverlay = residenceOverlay;
+    snapshot = new ConfigurationSnapshot(this);
   }
 
   public int getMobSpawnLimit() {
@@ -157,6 +222,23 @@ public class Configuration {
 
   public void setMobSpawnLimit(int mobSpawnLimit) {
     this.mobSpawnLimit = mobSpawnLimit;
+    snapshot = new ConfigurationSnapshot(this);
+  }
+
+  public int getMapWidth() {
+    return mapWidth;
+  }
+
+  public void setMapWidth(int mapWidth) {
+    this.mapWidth = mapWidth;
+  }
+
+  public int getMapHeight() {
+    return mapHeight;
+  }
+
+  public void setMapHeight(int mapHeight) {
+    this.mapHeight = mapHeight;
   }
 
   public List<Integer> getAllowedToBuildInWildness() {
@@ -165,6 +247,7 @@ public class Configuration {
 
   public void setAllowedToBuildInWildness(List<Integer> allowedToBuildInWildness) {
     this.allowedToBuildInWildness = allowedToBuildInWildness;
+    snapshot = new ConfigurationSnapshot(this);
   }
 
   public List<Integer> getAllowedToDestroyInWildness() {
@@ -173,6 +256,7 @@ public class Configuration {
 
   public void setAllowedToDestroyInWildness(List<Integer> allowedToDestroyInWildness) {
     this.allowedToDestroyInWildness = allowedToDestroyInWildness;
+    snapshot = new ConfigurationSnapshot(this);
   }
 
   public List<Integer> getAllowedToBuildInTown() {
@@ -181,6 +265,7 @@ public class Configuration {
 
   public void setAllowedToBuildInTown(List<Integer> allowedToBuildInTown) {
     this.allowedToBuildInTown = allowedToBuildInTown;
+    snapshot = new ConfigurationSnapshot(this);
   }
 
   public List<Integer> getAllowedToDestroyInTown() {
@@ -189,5 +274,32 @@ public class Configuration {
 
   public void setAllowedToDestroyInTown(List<Integer> allowedToDestroyInTown) {
     this.allowedToDestroyInTown = allowedToDestroyInTown;
+    snapshot = new ConfigurationSnapshot(this);
+  }
+
+  // Reads the values from the bukkit config.
+  private void readValues() {
+    chunkCost = configuration.getDouble("cost.chunk", 1000);
+    signTitle = configuration.getString("sign.title", "[Residence]");
+    signSaleText = configuration.getString("sign.sale", "FOR SALE!");
+    safeTeleport = configuration.getBoolean("safeTeleport", true);
+    residenceOverlay = configuration.getInt("residenceOverlay", 1);
+    mobSpawnLimit = configuration.getInt("mobSpawnLimit", 600);
+    mapWidth = Math.max(1, configuration.getInt("map.width", 21));
+    mapHeight = Math.max(1, configuration.getInt("map.height", 6));
+    denyBlockSpawners = configuration.getBoolean("denyMobSpawners", true);
+    allowedToBuildInTown = configuration.getIntList("town.place", new LinkedList<Integer>());
+    allowedToDestroyInTown = configuration.getIntList("town.destroy", new LinkedList<Integer>());
+    allowedToBuildInWildness = configuration.getIntList("wildness.place", new LinkedList<Integer>());
+    allowedToDestroyInWildness = configuration.getIntList("wildness.destroy", new LinkedList<Integer>());
+  }
+
+  // Checks if all ids of the block list are valid block ids.
+  private static void validateBlocks(String path, List<Integer> typeIds, List<String> problems) {
+    for (Integer typeId : typeIds) {
+      if (typeId == null || typeId < 0 || typeId > MAX_BLOCK_ID) {
+        problems.add(String.format("%s contains the invalid block id %s", path, typeId));
+      }
+    }
   }
 }
@@ -0,0 +1,135 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage;
+
+import java.util.List;
+
+/**
+ * Immutable view of the configuration of a world. The block lists are compiled into arrays indexed by the id of the
+ * block, so checking a block is a single array access.
+ *
+ * @author Michael Hohl
+ */
+public final class ConfigurationSnapshot {
+  // Maximum numbers of blocks a residence is allowed to overlay from area.
+  private final int residenceOverlay;
+
+  // Maximum number of creatures spawned in world.
+  private final int mobSpawnLimit;
+
+  // Setting that to true will block mob spawning from spawners.
+  private final boolean denyBlockSpawners;
+
+  // Title for residence signs.
+  private final String signTitle;
+
+  // Blocks allowed to build/destroy in default areas, indexed by the id of the block.
+  private final boolean[] allowedToBuildInWildness;
+  private final boolean[] allowedToDestroyInWildness;
+  private final boolean[] allowedToBuildInTown;
+  private final boolean[] allowedToDestroyInTown;
+
+  /**
+   * Compiles the current values of the passed configuration.
+   *
+   * @param configuration the configuration to compile.
+   */
+  public ConfigurationSnapshot(Configuration configuration) {
+    residenceOverlay = configuration.getResidenceOverlay();
+    mobSpawnLimit = configuration.getMobSpawnLimit();
+    denyBlockSpawners = configuration.isDenyBlockSpawners();
+    signTitle = configuration.getSignTitle();
+    allowedToBuildInWildness = compile(configuration.getAllowedToBuildInWildness());
+    allowedToDestroyInWildness = compile(configuration.getAllowedToDestroyInWildness());
+    allowedToBuildInTown = compile(configuration.getAllowedToBuildInTown());
+    allowedToDestroyInTown = compile(configuration.getAllowedToDestroyInTown());
+  }
+
+  public int getResidenceOverlay() {
+    return residenceOverlay;
+  }
+
+  public int getMobSpawnLimit() {
+    return mobSpawnLimit;
+  }
+
+  public boolean isDenyBlockSpawners() {
+    return denyBlockSpawners;
+  }
+
+  public String getSignTitle() {
+    return signTitle;
+  }
+
+  /**
+   * @param typeId the id of the block.
+   * @return true, if everybody is allowed to place the block in the wildness.
+   */
+  public boolean isAllowedToBuildInWildness(int typeId) {
+    return contains(allowedToBuildInWildness, typeId);
+  }
+
+  /**
+   * @param typeId the id of the block.
+   * @return true, if everybody is allowed to destroy the block in the wildness.
+   */
+  public boolean isAllowedToDestroyInWildness(int typeId) {
+    return contains(allowedToDestroyInWildness, typeId);
+  }
+
+  /**
+   * @param typeId the id of the block.
+   * @return true, if everybody is allowed to place the block inside towns.
+   */
+  public boolean isAllowedToBuildInTown(int typeId) {
+    return contains(allowedToBuildInTown, typeId);
+  }
+
+  /**
+   * @param typeId the id of the block.
+   * @return true, if everybody is allowed to destroy the block inside towns.
+   */
+  public boolean isAllowedToDestroyInTown(int typeId) {
+    return contains(allowedToDestroyInTown, typeId);
+  }
+
+  // Checks if the compiled list contains the block.
+  private static boolean contains(boolean[] blocks, int typeId) {
+    return typeId >= 0 && typeId < blocks.length && blocks[typeId];
+  }
+
+  // Compiles the list of block ids into an array indexed by the id of the block. Ids which are out of range are
+  // ignored, they are reported by the validation of the configuration.
+  private static boolean[] compile(List<Integer> typeIds) {
+    int length = 0;
+    for (Integer typeId : typeIds) {
+      if (typeId != null && typeId >= length && typeId <= Configuration.MAX_BLOCK_ID) {
+        length = typeId + 1;
+      }
+    }
+
+    boolean[] blocks = new boolean[length];
+    for (Integer typeId : typeIds) {
+      if (typeId != null && typeId >= 0 && typeId < length) {
+        blocks[typeId] = true;
+      }
+    }
+    return blocks;
+  }
+}
@@ -21,9 +21,10 @@ package at.co.hohl.myresidence.storage;
 import at.co.hohl.myresidence.Nation;
 import at.co.hohl.myresidence.exceptions.NoResidenceSelectedException;
 import at.co.hohl.myresidence.exceptions.NoTownSelectedException;
-import at.co.hohl.myresidence.storage.persistent.Major;
 import at.co.hohl.myresidence.storage.persistent.Residence;
 import at.co.hohl.myresidence.storage.persistent.Town;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
@@ -78,9 +79,48 @@ public class Session {
   private long signSelectedAt;
 
   /**
-   * Selected town.
+   * Residence of the selected sign, null if not resolved yet.
    */
-  private int selectedTownId = -1;
+  private Residence selectedResidence;
+
+  /**
+   * Selected town, null if not resolved yet.
+   */
+  private Town selectedTown;
+
+  /**
+   * Id of the inhabitant of the player, -1 if not resolved yet.
+   */
+  private volatile int playerId = -1;
+
+  /**
+   * Residence at the location of the player, when the context got resolved.
+   */
+  private Residence currentResidence;
+
+  /**
+   * Town at the location of the player, when the context got resolved.
+   */
+  private Town currentTown;
+
+  /**
+   * Residence and town the player stood in, before the last move.
+   */
+  private Residence previousResidence;
+  private Town previousTown;
+
+  /**
+   * World and block the context got resolved for.
+   */
+  private World contextWorld;
+  private int contextX;
+  private int contextY;
+  private int contextZ;
+
+  /**
+   * Generation of the map, the context got resolved for.
+   */
+  private long contextGeneration = -1;
 
   /**
    * ID of last targeted home.
@@ -119,7 +159,12 @@ public class Session {
    * @return id of the player.
    */
   public int getPlayerId() {
-    return nation.getInhabitant(player.getName()).getId();
+    int id = playerId;
+    if (id == -1) {
+      id = nation.getInhabitant(player.getName()).getId();
+      playerId = id;
+    }
+    return id;
   }
 
   /**
@@ -151,15 +196,18 @@ public class Session {
    * @return the current selection of the player.
    * @throws NoResidenceSelectedException thrown when the player don't have a selection.
    */
-  public Residence getSelectedResidence() throws NoResidenceSelectedException {
+  public synchronized Residence getSelectedResidence() throws NoResidenceSelectedException {
     Residence residence;
 
     if (selectedSign != null && signSelectedAt + SELECTION_DURATION > System.currentTimeMillis()) {
       signSelectedAt = System.currentTimeMillis();
 
-      residence = nation.getResidence(getSelectedSign());
+      if (selectedResidence == null) {
+        selectedResidence = nation.getResidence(getSelectedSign());
+      }
+      residence = selectedResidence;
     } else {
-      residence = nation.getResidence(player.getLocation());
+      residence = getCurrentResidence();
     }
 
     if (residence == null) {
@@ -174,20 +222,98 @@ public class Session {
    * @return selected town.
    * @throws NoTownSelectedException thrown when no town is selected.
    */
-  public Town getSelectedTown() throws NoTownSelectedException {
-    if (selectedTownId == -1) {
-      List<Major> majorities = nation.getDatabase().find(Major.class).where()
-              .eq("inhabitantId", getPlayerId())
-              .findList();
+  public synchronized Town getSelectedTown() throws NoTownSelectedException {
+    if (selectedTown == null) {
+      List<Integer> townIds = nation.getMajorCache().getTownIds(getPlayerId());
 
-      if (majorities.size() == 1) {
-        selectedTownId = majorities.get(0).getTownId();
-        return nation.getTown(majorities.get(0).getTownId());
+      if (townIds.size() == 1) {
+        selectedTown = nation.getTown(townIds.get(0));
       }
 
-      throw new NoTownSelectedException();
-    } else {
-      return nation.getTown(selectedTownId);
+      if (selectedTown == null) {
+        throw new NoTownSelectedException();
+      }
+    }
+
+    return selectedTown;
+  }
+
+  /**
+   * @return the residence at the location of the player or null.
+   */
+  public synchronized Residence getCurrentResidence() {
+    refreshContext();
+    return currentResidence;
+  }
+
+  /**
+   * @return the town at the location of the player or null.
+   */
+  public synchronized Town getCurrentTown() {
+    refreshContext();
+    return currentTown;
+  }
+
+  /**
+   * Resolves the context for the current location of the player. Must be called on the main thread, commands running
+   * outside of it only use the resolved location.
+   *
+   * @param location the current location of the player.
+   */
+  public synchronized void refresh(Location location) {
+    updateContext(location);
+  }
+
+  /**
+   * @return the residence the player stood in before the last move or null.
+   */
+  public synchronized Residence getPreviousResidence() {
+    return previousResidence;
+  }
+
+  /**
+   * @return the town the player stood in before the last move or null.
+   */
+  public synchronized Town getPreviousTown() {
+    return previousTown;
+  }
+
+  /**
+   * Moves the context of the session to the new location of the player. Called by the movement tracker.
+   *
+   * @param location the new location of the player.
+   * @return true, if the player entered another residence or town.
+   */
+  public synchronized boolean moveTo(Location location) {
+    previousResidence = currentResidence;
+    previousTown = currentTown;
+
+    updateContext(location);
+
+    return previousResidence != currentResidence || previousTown != currentTown;
+  }
+
+  /**
+   * Forgets the residence, if it is selected. Called when the residence got removed.
+   *
+   * @param residenceId the id of the residence.
+   */
+  public synchronized void forgetResidence(int residenceId) {
+    if (selectedResidence != null && selectedResidence.getId() == residenceId) {
+      selectedResidence = null;
+      selectedSign = null;
+      selectedSignBlock = null;
+    }
+  }
+
+  /**
+   * Forgets the town, if it is selected. Called when the town got removed.
+   *
+   * @param townId the id of the town.
+   */
+  public synchronized void forgetTown(int townId) {
+    if (selectedTown != null && selectedTown.getId() == townId) {
+      selectedTown = null;
     }
   }
 
@@ -196,8 +322,8 @@ public class Session {
    *
    * @param town the town to set selected.
    */
-  public void setSelectedTown(Town town) {
-    selectedTownId = town.getId();
+  public synchronized void setSelectedTown(Town town) {
+    selectedTown = town;
   }
 
   public Block getSelectedSignBlock() {
@@ -209,7 +335,9 @@ public class Session {
    *
    * @param selectedSignBlock the block of the selected sign.
    */
-  public void setSelectedSignBlock(Block selectedSignBlock) {
+  public synchronized void setSelectedSignBlock(Block selectedSignBlock) {
+    selectedResidence = null;
+
     if (selectedSignBlock == null) {
       this.selectedSignBlock = null;
       this.selectedSign = null;
@@ -258,4 +386,43 @@ public class Session {
   public void setTaskActivator(Activator taskActivator) {
     this.taskActivator = taskActivator;
   }
+
+  // Resolves the context again, if the map changed. Uses the location of the last resolved context, which is kept up to
+  // date by the movement tracker, so the player is only asked for the location the first time.
+  private void refreshContext() {
+    if (contextWorld == null) {
+      updateContext(player.getLocation());
+    } else if (contextGeneration != nation.getMapGeneration()) {
+      updateContext(new Location(contextWorld, contextX, contextY, contextZ));
+    }
+  }
+
+  // Resolves the residence and town at the location, if it is another block than the last time or the map changed
+  // since the last time. The town is only resolved again, if the chunk changed.
+  private void updateContext(Location location) {
+    World world = location.getWorld();
+    int x = location.getBlockX();
+    int y = location.getBlockY();
+    int z = location.getBlockZ();
+    long generation = nation.getMapGeneration();
+
+    if (world == contextWorld && generation == contextGeneration) {
+      if (x == contextX && y == contextY && z == contextZ) {
+        return;
+      }
+      if (x >> 4 != contextX >> 4 || z >> 4 != contextZ >> 4) {
+        currentTown = nation.getTown(location);
+      }
+    } else {
+      currentTown = nation.getTown(location);
+    }
+
+    currentResidence = nation.getResidence(location);
+
+    contextWorld = world;
+    contextX = x;
+    contextY = y;
+    contextZ = z;
+    contextGeneration = generation;
+  }
 }
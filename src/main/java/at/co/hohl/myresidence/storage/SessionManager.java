@@ -18,10 +18,15 @@
 
 package at.co.hohl.myresidence.storage;
 
-import at.co.hohl.mcutils.collections.CachedMap;
 import at.co.hohl.myresidence.Nation;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Manager for all sessions of the MyResidence plugin.
  *
@@ -29,14 +34,9 @@ import org.bukkit.entity.Player;
  */
 public class SessionManager {
   /**
-   * The time in milliseconds which should a session get stored.
-   */
-  public static final long SESSION_DURATION = 9000000;
-
-  /**
-   * Session Map used by this player.
+   * Sessions of the online players, by the player instance.
    */
-  private final CachedMap<String, Session> sessionMap;
+  private final Map<Player, Session> sessionMap = Collections.synchronizedMap(new IdentityHashMap<Player, Session>());
 
   /**
    * The Nation which is handled by the plugin.
@@ -49,10 +49,21 @@ public class SessionManager {
    * @param nation the nation which holds the sessions.
    */
   public SessionManager(Nation nation) {
-    sessionMap = new CachedMap<String, Session>(SESSION_DURATION);
     this.nation = nation;
   }
 
+  /**
+   * Creates the session for the passed player. Called when the player joins.
+   *
+   * @param player the player to create the session for.
+   * @return the created session.
+   */
+  public Session open(Player player) {
+    Session session = new Session(nation, player);
+    sessionMap.put(player, session);
+    return session;
+  }
+
   /**
    * Returns the session for the passed player.
    *
@@ -60,20 +71,56 @@ public class SessionManager {
    * @return the found or create session.
    */
   public Session get(Player player) {
-    if (!sessionMap.containsKey(player.getName())) {
-      sessionMap.put(player.getName(), new Session(nation, player));
+    Session session = sessionMap.get(player);
+    if (session != null) {
+      return session;
     }
 
-    sessionMap.update(player.getName());
-    return sessionMap.get(player.getName());
+    // Players who joined before the plugin got enabled do not have a session yet.
+    synchronized (sessionMap) {
+      session = sessionMap.get(player);
+      if (session == null) {
+        session = open(player);
+      }
+      return session;
+    }
   }
 
   /**
-   * Removes the session of the passed player.
+   * Removes the session of the passed player. Called when the player quits.
    *
    * @param player the player who's session should be removed.
    */
   public void close(Player player) {
-    sessionMap.remove(player.getName());
+    sessionMap.remove(player);
+  }
+
+  /**
+   * Forgets the residence in all sessions, which selected it.
+   *
+   * @param residenceId the id of the removed residence.
+   */
+  public void forgetResidence(int residenceId) {
+    for (Session session : getSessions()) {
+      session.forgetResidence(residenceId);
+    }
+  }
+
+  /**
+   * Forgets the town in all sessions, which selected it.
+   *
+   * @param townId the id of the removed town.
+   */
+  public void forgetTown(int townId) {
+    for (Session session : getSessions()) {
+      session.forgetTown(townId);
+    }
+  }
+
+  // Returns a copy of the open sessions.
+  private List<Session> getSessions() {
+    synchronized (sessionMap) {
+      return new ArrayList<Session>(sessionMap.values());
+    }
   }
 }
@@ -0,0 +1,136 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import java.util.BitSet;
+
+/**
+ * Compact bitmap of chunks within a rectangular region of a world. Chunks outside the region are never set.
+ *
+ * @author Michael Hohl
+ */
+public class ChunkBitmap {
+  // Lowest x coordinate of the region.
+  private final int minX;
+
+  // Lowest z coordinate of the region.
+  private final int minZ;
+
+  // Number of chunks along the x axis.
+  private final int width;
+
+  // Number of chunks along the z axis.
+  private final int depth;
+
+  // One bit per chunk of the region.
+  private final BitSet bits;
+
+  /**
+   * Creates a new bitmap for the passed region. All chunks are unset.
+   *
+   * @param minX lowest x coordinate of the region.
+   * @param minZ lowest z coordinate of the region.
+   * @param maxX highest x coordinate of the region.
+   * @param maxZ highest z coordinate of the region.
+   */
+  public ChunkBitmap(int minX, int minZ, int maxX, int maxZ) {
+    this.minX = minX;
+    this.minZ = minZ;
+    this.width = maxX - minX + 1;
+    this.depth = maxZ - minZ + 1;
+    this.bits = new BitSet(width * depth);
+  }
+
+  /**
+   * Sets the chunk.
+   *
+   * @param x x coordinate of the chunk.
+   * @param z z coordinate of the chunk.
+   */
+  public void set(int x, int z) {
+    if (!contains(x, z)) {
+      throw new IndexOutOfBoundsException(String.format("Chunk %d,%d is outside of the bitmap!", x, z));
+    }
+
+    bits.set(index(x, z));
+  }
+
+  /**
+   * @param x x coordinate of the chunk.
+   * @param z z coordinate of the chunk.
+   * @return true, if the chunk is set.
+   */
+  public boolean get(int x, int z) {
+    return contains(x, z) && bits.get(index(x, z));
+  }
+
+  /**
+   * @param x x coordinate of the chunk.
+   * @param z z coordinate of the chunk.
+   * @return true, if the chunk or any of the eight chunks around it is set.
+   */
+  public boolean isNextTo(int x, int z) {
+    for (int neighbourX = x - 1; neighbourX <= x + 1; ++neighbourX) {
+      for (int neighbourZ = z - 1; neighbourZ <= z + 1; ++neighbourZ) {
+        if (get(neighbourX, neighbourZ)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @param x x coordinate of the chunk.
+   * @param z z coordinate of the chunk.
+   * @return true, if the chunk is inside the region of the bitmap.
+   */
+  public boolean contains(int x, int z) {
+    return x >= minX && x < minX + width && z >= minZ && z < minZ + depth;
+  }
+
+  /**
+   * @return the number of set chunks.
+   */
+  public int cardinality() {
+    return bits.cardinality();
+  }
+
+  public int getMinX() {
+    return minX;
+  }
+
+  public int getMinZ() {
+    return minZ;
+  }
+
+  public int getMaxX() {
+    return minX + width - 1;
+  }
+
+  public int getMaxZ() {
+    return minZ + depth - 1;
+  }
+
+  // Returns the index of the bit for the chunk.
+  private int index(int x, int z) {
+    return (x - minX) * depth + (z - minZ);
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory map of the town chunks. Maps the packed chunk coordinates of every world to the id of the town owning
+ * the chunk, so looking up the owner of a chunk never hits the database and never allocates.
+ *
+ * @author Michael Hohl
+ */
+public class ChunkOwnerIndex {
+  /**
+   * Id returned for chunks which are not owned by any town.
+   */
+  public static final int NO_TOWN = -1;
+
+  // Owners per world, keyed by packed chunk coordinates.
+  private final Map<String, LongHashMap<Integer>> worlds = new HashMap<String, LongHashMap<Integer>>();
+
+  // Number of chunks owned per town.
+  private final Map<Integer, Integer> chunkCounts = new HashMap<Integer, Integer>();
+
+  // Increased on every change of the index.
+  private long generation;
+
+  /**
+   * Sets the owner of the chunk.
+   *
+   * @param world  name of the world.
+   * @param chunkX x coordinate of the chunk.
+   * @param chunkZ z coordinate of the chunk.
+   * @param townId id of the town owning the chunk.
+   */
+  public synchronized void put(String world, int chunkX, int chunkZ, int townId) {
+    LongHashMap<Integer> owners = worlds.get(world);
+    if (owners == null) {
+      owners = new LongHashMap<Integer>();
+      worlds.put(world, owners);
+    }
+
+    Integer previousTownId = owners.put(LongHashMap.pack(chunkX, chunkZ), townId);
+    if (previousTownId != null) {
+      countChunk(previousTownId, -1);
+    }
+    countChunk(townId, 1);
+    ++generation;
+  }
+
+  /**
+   * Returns the id of the town owning the chunk.
+   *
+   * @param world  name of the world.
+   * @param chunkX x coordinate of the chunk.
+   * @param chunkZ z coordinate of the chunk.
+   * @return the id of the town or NO_TOWN.
+   */
+  public synchronized int getTownId(String world, int chunkX, int chunkZ) {
+    LongHashMap<Integer> owners = worlds.get(world);
+    if (owners == null) {
+      return NO_TOWN;
+    }
+
+    Integer townId = owners.get(LongHashMap.pack(chunkX, chunkZ));
+    if (townId == null) {
+      return NO_TOWN;
+    }
+
+    return townId;
+  }
+
+  /**
+   * Returns the ids of the towns owning the chunks of the rectangle.
+   *
+   * @param world name of the world.
+   * @param minX  lowest x coordinate of the chunks.
+   * @param minZ  lowest z coordinate of the chunks.
+   * @param maxX  highest x coordinate of the chunks.
+   * @param maxZ  highest z coordinate of the chunks.
+   * @return the ids of the towns or NO_TOWN, indexed by [x - minX][z - minZ].
+   */
+  public synchronized int[][] getTownIds(String world, int minX, int minZ, int maxX, int maxZ) {
+    int[][] townIds = new int[maxX - minX + 1][maxZ - minZ + 1];
+    LongHashMap<Integer> owners = worlds.get(world);
+
+    for (int chunkX = minX; chunkX <= maxX; ++chunkX) {
+      for (int chunkZ = minZ; chunkZ <= maxZ; ++chunkZ) {
+        Integer townId = owners == null ? null : owners.get(LongHashMap.pack(chunkX, chunkZ));
+        townIds[chunkX - minX][chunkZ - minZ] = townId == null ? NO_TOWN : townId;
+      }
+    }
+
+    return townIds;
+  }
+
+  /**
+   * Removes all chunks owned by the town.
+   *
+   * @param townId id of the town.
+   */
+  public synchronized void removeTown(int townId) {
+    for (LongHashMap<Integer> owners : worlds.values()) {
+      for (long key : owners.keys()) {
+        if (owners.get(key) == townId) {
+          owners.remove(key);
+        }
+      }
+    }
+
+    chunkCounts.remove(townId);
+    ++generation;
+  }
+
+  /**
+   * Sets all chunks of the bitmap, which are owned by the town.
+   *
+   * @param world  name of the world.
+   * @param townId id of the town.
+   * @param bitmap the bitmap to fill.
+   */
+  public synchronized void fill(String world, int townId, ChunkBitmap bitmap) {
+    LongHashMap<Integer> owners = worlds.get(world);
+    if (owners == null) {
+      return;
+    }
+
+    for (int chunkX = bitmap.getMinX(); chunkX <= bitmap.getMaxX(); ++chunkX) {
+      for (int chunkZ = bitmap.getMinZ(); chunkZ <= bitmap.getMaxZ(); ++chunkZ) {
+        Integer ownerId = owners.get(LongHashMap.pack(chunkX, chunkZ));
+        if (ownerId != null && ownerId == townId) {
+          bitmap.set(chunkX, chunkZ);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param townId id of the town.
+   * @return the number of chunks owned by the town.
+   */
+  public synchronized int countChunks(int townId) {
+    Integer count = chunkCounts.get(townId);
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * Removes all chunks.
+   */
+  public synchronized void clear() {
+    worlds.clear();
+    chunkCounts.clear();
+    ++generation;
+  }
+
+  /**
+   * @return a number which changes whenever the index changes.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * @return the number of chunks owned by any town.
+   */
+  public synchronized int size() {
+    int size = 0;
+    for (LongHashMap<Integer> owners : worlds.values()) {
+      size += owners.size();
+    }
+    return size;
+  }
+
+  // Adds the delta to the number of chunks owned by the town.
+  private void countChunk(int townId, int delta) {
+    int count = countChunks(townId) + delta;
+    if (count > 0) {
+      chunkCounts.put(townId, count);
+    } else {
+      chunkCounts.remove(townId);
+    }
+  }
+}
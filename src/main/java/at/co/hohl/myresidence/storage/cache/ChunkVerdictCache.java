@@ -0,0 +1,123 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches a verdict per chunk. Each verdict is stored together with the generation it was resolved for, so verdicts
+ * of an older generation are ignored without the need to clear the cache. The cache is bounded, all verdicts are
+ * dropped when it is full, so chunks which got unloaded do not stay in memory.
+ *
+ * @author Michael Hohl
+ */
+public class ChunkVerdictCache {
+  /**
+   * Returned for chunks without a verdict of the current generation.
+   */
+  public static final int UNKNOWN = 0;
+
+  // Number of bits used for the verdict.
+  private static final int VERDICT_BITS = 8;
+
+  // Mask for the verdict bits.
+  private static final long VERDICT_MASK = (1L << VERDICT_BITS) - 1;
+
+  // Verdicts per world, keyed by packed chunk coordinates.
+  private final Map<String, LongHashMap<Long>> worlds = new HashMap<String, LongHashMap<Long>>();
+
+  // Maximum number of cached verdicts.
+  private final int capacity;
+
+  // Number of cached verdicts.
+  private int size;
+
+  /**
+   * Creates a new cache.
+   *
+   * @param capacity the maximum number of cached verdicts.
+   */
+  public ChunkVerdictCache(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Returns the verdict of the chunk.
+   *
+   * @param world      name of the world.
+   * @param chunkX     x coordinate of the chunk.
+   * @param chunkZ     z coordinate of the chunk.
+   * @param generation the current generation.
+   * @return the verdict or UNKNOWN.
+   */
+  public synchronized int get(String world, int chunkX, int chunkZ, long generation) {
+    LongHashMap<Long> verdicts = worlds.get(world);
+    if (verdicts == null) {
+      return UNKNOWN;
+    }
+
+    Long verdict = verdicts.get(LongHashMap.pack(chunkX, chunkZ));
+    if (verdict == null || verdict >>> VERDICT_BITS != generation) {
+      return UNKNOWN;
+    }
+
+    return (int) (verdict & VERDICT_MASK);
+  }
+
+  /**
+   * Stores the verdict of the chunk.
+   *
+   * @param world      name of the world.
+   * @param chunkX     x coordinate of the chunk.
+   * @param chunkZ     z coordinate of the chunk.
+   * @param generation the generation the verdict got resolved for.
+   * @param verdict    the verdict, between 1 and 255.
+   */
+  public synchronized void put(String world, int chunkX, int chunkZ, long generation, int verdict) {
+    if (size >= capacity) {
+      clear();
+    }
+
+    LongHashMap<Long> verdicts = worlds.get(world);
+    if (verdicts == null) {
+      verdicts = new LongHashMap<Long>();
+      worlds.put(world, verdicts);
+    }
+
+    if (verdicts.put(LongHashMap.pack(chunkX, chunkZ), (generation << VERDICT_BITS) | verdict) == null) {
+      ++size;
+    }
+  }
+
+  /**
+   * Removes all verdicts.
+   */
+  public synchronized void clear() {
+    worlds.clear();
+    size = 0;
+  }
+
+  /**
+   * @return the number of cached verdicts.
+   */
+  public synchronized int size() {
+    return size;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores the flags of residences or towns as one bitmask per id, so checking a flag is a single bit test.
+ *
+ * @param <T> the type of the flags.
+ * @author Michael Hohl
+ */
+public class FlagStore<T extends Enum<T>> {
+  // All possible flags, ordered by their bits.
+  private final T[] types;
+
+  // Bitmask of the set flags, keyed by the id of the residence or town.
+  private final LongHashMap<Integer> flags = new LongHashMap<Integer>();
+
+  // Increased on every change of the flags.
+  private long generation;
+
+  /**
+   * Creates a new flag store.
+   *
+   * @param type the type of the flags.
+   */
+  public FlagStore(Class<T> type) {
+    this.types = type.getEnumConstants();
+
+    if (types.length > Integer.SIZE) {
+      throw new IllegalArgumentException(type.getName() + " has too many constants to store them as bitmask!");
+    }
+  }
+
+  /**
+   * @param id   the id of the residence or town.
+   * @param flag the flag to check.
+   * @return true, if the flag is set.
+   */
+  public synchronized boolean hasFlag(int id, T flag) {
+    return (getMask(id) & bit(flag)) != 0;
+  }
+
+  /**
+   * @param id the id of the residence or town.
+   * @return all set flags.
+   */
+  public synchronized List<T> getFlags(int id) {
+    int mask = getMask(id);
+
+    List<T> setFlags = new ArrayList<T>(Integer.bitCount(mask));
+    for (T type : types) {
+      if ((mask & bit(type)) != 0) {
+        setFlags.add(type);
+      }
+    }
+
+    return setFlags;
+  }
+
+  /**
+   * Sets the flag.
+   *
+   * @param id   the id of the residence or town.
+   * @param flag the flag to set.
+   * @return true, if the flag wasn't set before.
+   */
+  public synchronized boolean setFlag(int id, T flag) {
+    int mask = getMask(id);
+    if ((mask & bit(flag)) != 0) {
+      return false;
+    }
+
+    flags.put(id, mask | bit(flag));
+    ++generation;
+    return true;
+  }
+
+  /**
+   * Removes the flag.
+   *
+   * @param id   the id of the residence or town.
+   * @param flag the flag to remove.
+   * @return true, if the flag was set before.
+   */
+  public synchronized boolean removeFlag(int id, T flag) {
+    int mask = getMask(id);
+    if ((mask & bit(flag)) == 0) {
+      return false;
+    }
+
+    mask &= ~bit(flag);
+    if (mask != 0) {
+      flags.put(id, mask);
+    } else {
+      flags.remove(id);
+    }
+    ++generation;
+    return true;
+  }
+
+  /**
+   * Removes all flags of the residence or town.
+   *
+   * @param id the id of the residence or town.
+   */
+  public synchronized void removeFlags(int id) {
+    if (flags.remove(id) != null) {
+      ++generation;
+    }
+  }
+
+  /**
+   * Removes all flags.
+   */
+  public synchronized void clear() {
+    flags.clear();
+    ++generation;
+  }
+
+  /**
+   * @return a number which changes whenever any flag changes.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  // Returns the bitmask of the residence or town.
+  private int getMask(int id) {
+    Integer mask = flags.get(id);
+    return mask == null ? 0 : mask;
+  }
+
+  // Returns the bit of the flag.
+  private static int bit(Enum<?> flag) {
+    return 1 << flag.ordinal();
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import at.co.hohl.myresidence.storage.persistent.Inhabitant;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the inhabitants by their id and by their name. Names are matched exactly, but case-insensitive.
+ *
+ * @author Michael Hohl
+ */
+public class InhabitantCache {
+  // Inhabitants by their lower case name.
+  private final Map<String, Inhabitant> inhabitantsByName = new ConcurrentHashMap<String, Inhabitant>();
+
+  // Inhabitants by their id.
+  private final Map<Integer, Inhabitant> inhabitantsById = new ConcurrentHashMap<Integer, Inhabitant>();
+
+  /**
+   * Adds the inhabitant to the cache.
+   *
+   * @param inhabitant the inhabitant to add.
+   */
+  public void add(Inhabitant inhabitant) {
+    inhabitantsByName.put(inhabitant.getName().toLowerCase(), inhabitant);
+    inhabitantsById.put(inhabitant.getId(), inhabitant);
+  }
+
+  /**
+   * @param name the name of the inhabitant.
+   * @return the inhabitant with exactly the passed name, ignoring the case, or null.
+   */
+  public Inhabitant get(String name) {
+    return inhabitantsByName.get(name.toLowerCase());
+  }
+
+  /**
+   * @param id the id of the inhabitant.
+   * @return the inhabitant with the passed id or null.
+   */
+  public Inhabitant get(int id) {
+    return inhabitantsById.get(id);
+  }
+
+  /**
+   * Removes all inhabitants.
+   */
+  public void clear() {
+    inhabitantsByName.clear();
+    inhabitantsById.clear();
+  }
+
+  /**
+   * @return the number of cached inhabitants.
+   */
+  public int size() {
+    return inhabitantsById.size();
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import at.co.hohl.myresidence.storage.persistent.Residence;
+import at.co.hohl.myresidence.storage.persistent.Town;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Precomputed orderings of the residences and towns, used by the list commands.
+ *
+ * @author Michael Hohl
+ */
+public class Leaderboards {
+  /**
+   * Orderings of the residences.
+   */
+  public enum ResidenceOrder {
+    /**
+     * Most valuable residence first.
+     */
+    VALUE(true),
+
+    /**
+     * Cheapest residence first. Contains only residences for sale.
+     */
+    PRICE(false),
+
+    /**
+     * Alphabetic order.
+     */
+    NAME(false),
+
+    /**
+     * Most liked residence first. Contains only residences with likes.
+     */
+    LIKES(true);
+
+    private final boolean descending;
+
+    private ResidenceOrder(boolean descending) {
+      this.descending = descending;
+    }
+  }
+
+  /**
+   * Orderings of the towns.
+   */
+  public enum TownOrder {
+    /**
+     * Alphabetic order.
+     */
+    NAME(false),
+
+    /**
+     * Richest town first.
+     */
+    MONEY(true),
+
+    /**
+     * Oldest town first.
+     */
+    AGE(false);
+
+    private final boolean descending;
+
+    private TownOrder(boolean descending) {
+      this.descending = descending;
+    }
+  }
+
+  // Orderings of all residences.
+  private final Map<ResidenceOrder, SortedIndex<Residence>> residences =
+          new EnumMap<ResidenceOrder, SortedIndex<Residence>>(ResidenceOrder.class);
+
+  // Orderings of the residences per town, keyed by the id of the town.
+  private final Map<ResidenceOrder, LongHashMap<SortedIndex<Residence>>> residencesByTown =
+          new EnumMap<ResidenceOrder, LongHashMap<SortedIndex<Residence>>>(ResidenceOrder.class);
+
+  // Id of the town every indexed residence got indexed for.
+  private final LongHashMap<Integer> residenceTowns = new LongHashMap<Integer>();
+
+  // Number of likes of the residences, keyed by the id of the residence. Residences without likes are not contained.
+  private final LongHashMap<Integer> residenceLikes = new LongHashMap<Integer>();
+
+  // Orderings of all towns.
+  private final Map<TownOrder, SortedIndex<Town>> towns = new EnumMap<TownOrder, SortedIndex<Town>>(TownOrder.class);
+
+  /**
+   * Creates new, empty leaderboards.
+   */
+  public Leaderboards() {
+    for (ResidenceOrder order : ResidenceOrder.values()) {
+      residences.put(order, new SortedIndex<Residence>(order.descending));
+      residencesByTown.put(order, new LongHashMap<SortedIndex<Residence>>());
+    }
+
+    for (TownOrder order : TownOrder.values()) {
+      towns.put(order, new SortedIndex<Town>(order.descending));
+    }
+  }
+
+  /**
+   * Adds the residence or moves it to its new positions.
+   *
+   * @param residence the residence to update.
+   */
+  public synchronized void update(Residence residence) {
+    removeEntries(residence);
+
+    for (ResidenceOrder order : ResidenceOrder.values()) {
+      if (order == ResidenceOrder.PRICE && !residence.isForSale()) {
+        continue;
+      }
+      if (order == ResidenceOrder.LIKES && !residenceLikes.containsKey(residence.getId())) {
+        continue;
+      }
+
+      Comparable<?> key = getKey(order, residence);
+      residences.get(order).put(residence.getId(), key, residence);
+
+      SortedIndex<Residence> townIndex = residencesByTown.get(order).get(residence.getTownId());
+      if (townIndex == null) {
+        townIndex = new SortedIndex<Residence>(order.descending);
+        residencesByTown.get(order).put(residence.getTownId(), townIndex);
+      }
+      townIndex.put(residence.getId(), key, residence);
+    }
+
+    residenceTowns.put(residence.getId(), residence.getTownId());
+  }
+
+  /**
+   * Sets the number of likes of the residence and moves it to its new positions.
+   *
+   * @param residence the residence to update.
+   * @param likes     the number of likes of the residence.
+   */
+  public synchronized void setLikes(Residence residence, int likes) {
+    if (likes > 0) {
+      residenceLikes.put(residence.getId(), likes);
+    } else {
+      residenceLikes.remove(residence.getId());
+    }
+
+    update(residence);
+  }
+
+  /**
+   * Removes the residence.
+   *
+   * @param residence the residence to remove.
+   */
+  public synchronized void remove(Residence residence) {
+    removeEntries(residence);
+    residenceLikes.remove(residence.getId());
+  }
+
+  /**
+   * Adds the town or moves it to its new positions.
+   *
+   * @param town the town to update.
+   */
+  public synchronized void update(Town town) {
+    for (TownOrder order : TownOrder.values()) {
+      towns.get(order).put(town.getId(), getKey(order, town), town);
+    }
+  }
+
+  /**
+   * Removes the town.
+   *
+   * @param town the town to remove.
+   */
+  public synchronized void remove(Town town) {
+    for (TownOrder order : TownOrder.values()) {
+      towns.get(order).remove(town.getId());
+    }
+  }
+
+  /**
+   * @param order the ordering.
+   * @return all residences in the passed order.
+   */
+  public SortedIndex<Residence> getResidences(ResidenceOrder order) {
+    return residences.get(order);
+  }
+
+  /**
+   * @param order  the ordering.
+   * @param townId the id of the town.
+   * @return the residences of the town in the passed order.
+   */
+  public synchronized SortedIndex<Residence> getResidences(ResidenceOrder order, int townId) {
+    SortedIndex<Residence> townIndex = residencesByTown.get(order).get(townId);
+    if (townIndex == null) {
+      return new SortedIndex<Residence>(order.descending);
+    }
+
+    return townIndex;
+  }
+
+  /**
+   * @param order the ordering.
+   * @return all towns in the passed order.
+   */
+  public SortedIndex<Town> getTowns(TownOrder order) {
+    return towns.get(order);
+  }
+
+  /**
+   * Removes all residences and towns.
+   */
+  public synchronized void clear() {
+    for (ResidenceOrder order : ResidenceOrder.values()) {
+      residences.get(order).clear();
+      residencesByTown.get(order).clear();
+    }
+    residenceTowns.clear();
+    residenceLikes.clear();
+
+    for (TownOrder order : TownOrder.values()) {
+      towns.get(order).clear();
+    }
+  }
+
+  // Removes the residence from all orderings, but keeps its number of likes.
+  private void removeEntries(Residence residence) {
+    Integer townId = residenceTowns.remove(residence.getId());
+    if (townId == null) {
+      return;
+    }
+
+    for (ResidenceOrder order : ResidenceOrder.values()) {
+      residences.get(order).remove(residence.getId());
+
+      SortedIndex<Residence> townIndex = residencesByTown.get(order).get(townId);
+      if (townIndex != null) {
+        townIndex.remove(residence.getId());
+      }
+    }
+  }
+
+  // Returns the key of the residence for the passed order.
+  private Comparable<?> getKey(ResidenceOrder order, Residence residence) {
+    switch (order) {
+      case VALUE:
+        return residence.getValue();
+      case PRICE:
+        return residence.getPrice();
+      case LIKES:
+        return residenceLikes.get(residence.getId());
+      default:
+        return residence.getName().toLowerCase();
+    }
+  }
+
+  // Returns the key of the town for the passed order.
+  private static Comparable<?> getKey(TownOrder order, Town town) {
+    switch (order) {
+      case MONEY:
+        return town.getMoney();
+      case AGE:
+        return town.getFoundedAt().getTime();
+      default:
+        return town.getName().toLowerCase();
+    }
+  }
+}
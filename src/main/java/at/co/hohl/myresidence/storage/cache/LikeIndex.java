@@ -0,0 +1,139 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Index of the likes of the residences.
+ *
+ * @author Michael Hohl
+ */
+public class LikeIndex {
+  // Ids of the inhabitants who liked the residence, by the id of the residence.
+  private final LongHashMap<Set<Integer>> likes = new LongHashMap<Set<Integer>>();
+
+  // Number of likes of all residences.
+  private int size;
+
+  /**
+   * Adds the like of the inhabitant.
+   *
+   * @param residenceId  the id of the liked residence.
+   * @param inhabitantId the id of the inhabitant.
+   * @return true, if the inhabitant did not like the residence before.
+   */
+  public synchronized boolean add(int residenceId, int inhabitantId) {
+    Set<Integer> inhabitantIds = likes.get(residenceId);
+    if (inhabitantIds == null) {
+      inhabitantIds = new HashSet<Integer>();
+      likes.put(residenceId, inhabitantIds);
+    }
+
+    if (!inhabitantIds.add(inhabitantId)) {
+      return false;
+    }
+
+    ++size;
+    return true;
+  }
+
+  /**
+   * Removes the like of the inhabitant.
+   *
+   * @param residenceId  the id of the residence.
+   * @param inhabitantId the id of the inhabitant.
+   * @return true, if the inhabitant liked the residence before.
+   */
+  public synchronized boolean remove(int residenceId, int inhabitantId) {
+    Set<Integer> inhabitantIds = likes.get(residenceId);
+    if (inhabitantIds == null || !inhabitantIds.remove(inhabitantId)) {
+      return false;
+    }
+
+    if (inhabitantIds.isEmpty()) {
+      likes.remove(residenceId);
+    }
+    --size;
+    return true;
+  }
+
+  /**
+   * Removes all likes of the residence.
+   *
+   * @param residenceId the id of the residence.
+   */
+  public synchronized void removeResidence(int residenceId) {
+    Set<Integer> inhabitantIds = likes.remove(residenceId);
+    if (inhabitantIds != null) {
+      size -= inhabitantIds.size();
+    }
+  }
+
+  /**
+   * @param residenceId  the id of the residence.
+   * @param inhabitantId the id of the inhabitant.
+   * @return true, if the inhabitant liked the residence.
+   */
+  public synchronized boolean contains(int residenceId, int inhabitantId) {
+    Set<Integer> inhabitantIds = likes.get(residenceId);
+    return inhabitantIds != null && inhabitantIds.contains(inhabitantId);
+  }
+
+  /**
+   * @param residenceId the id of the residence.
+   * @return the number of inhabitants who liked the residence.
+   */
+  public synchronized int count(int residenceId) {
+    Set<Integer> inhabitantIds = likes.get(residenceId);
+    return inhabitantIds == null ? 0 : inhabitantIds.size();
+  }
+
+  /**
+   * @param residenceId the id of the residence.
+   * @return the ids of the inhabitants who liked the residence.
+   */
+  public synchronized List<Integer> getInhabitantIds(int residenceId) {
+    Set<Integer> inhabitantIds = likes.get(residenceId);
+    if (inhabitantIds == null) {
+      return Collections.emptyList();
+    }
+
+    return new ArrayList<Integer>(inhabitantIds);
+  }
+
+  /**
+   * Removes all likes.
+   */
+  public synchronized void clear() {
+    likes.clear();
+    size = 0;
+  }
+
+  /**
+   * @return the number of likes of all residences.
+   */
+  public synchronized int size() {
+    return size;
+  }
+}
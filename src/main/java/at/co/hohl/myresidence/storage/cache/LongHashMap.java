@@ -0,0 +1,264 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import java.util.Arrays;
+
+/**
+ * Hash map with primitive long keys. Uses open addressing, so lookups never allocate any objects. Null values are
+ * not allowed, because null marks an empty slot.
+ *
+ * @param <V> the type of the values.
+ * @author Michael Hohl
+ */
+public class LongHashMap<V> {
+  // Initial number of slots (must be a power of two).
+  private static final int DEFAULT_CAPACITY = 16;
+
+  // Keys of the slots.
+  private long[] keys;
+
+  // Values of the slots, null if the slot is empty.
+  private Object[] values;
+
+  // Number of entries.
+  private int size;
+
+  /**
+   * Creates a new empty map.
+   */
+  public LongHashMap() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a new empty map.
+   *
+   * @param expectedSize the number of entries expected.
+   */
+  public LongHashMap(int expectedSize) {
+    int capacity = DEFAULT_CAPACITY;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+
+    keys = new long[capacity];
+    values = new Object[capacity];
+  }
+
+  /**
+   * Returns the value for the passed key.
+   *
+   * @param key the key to look for.
+   * @return the value or null if there is no entry for the key.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+
+    while (values[slot] != null) {
+      if (keys[slot] == key) {
+        return (V) values[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    return null;
+  }
+
+  /**
+   * Checks if the map contains the passed key.
+   *
+   * @param key the key to look for.
+   * @return true, if there is an entry for the key.
+   */
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  /**
+   * Puts the passed value into the map.
+   *
+   * @param key   the key of the value.
+   * @param value the value to store, must not be null.
+   * @return the previous value or null.
+   */
+  @SuppressWarnings("unchecked")
+  public V put(long key, V value) {
+    if (value == null) {
+      throw new NullPointerException("null values are not allowed!");
+    }
+
+    if ((size + 1) * 2 > keys.length) {
+      resize(keys.length << 1);
+    }
+
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+
+    while (values[slot] != null) {
+      if (keys[slot] == key) {
+        V previous = (V) values[slot];
+        values[slot] = value;
+        return previous;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    keys[slot] = key;
+    values[slot] = value;
+    ++size;
+
+    return null;
+  }
+
+  /**
+   * Removes the entry for the passed key.
+   *
+   * @param key the key to remove.
+   * @return the removed value or null.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+
+    while (values[slot] != null) {
+      if (keys[slot] == key) {
+        V previous = (V) values[slot];
+        shiftBack(slot);
+        --size;
+        return previous;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    return null;
+  }
+
+  /**
+   * @return a copy of all keys stored in the map.
+   */
+  public long[] keys() {
+    long[] result = new long[size];
+    int index = 0;
+    for (int slot = 0; slot < keys.length; ++slot) {
+      if (values[slot] != null) {
+        result[index++] = keys[slot];
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of entries.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true, if the map does not contain any entries.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  /**
+   * Packs two integers into one long key.
+   *
+   * @param high the integer stored in the upper 32 bits.
+   * @param low  the integer stored in the lower 32 bits.
+   * @return the packed key.
+   */
+  public static long pack(int high, int low) {
+    return ((long) high << 32) | (low & 0xFFFFFFFFL);
+  }
+
+  /**
+   * @param key packed key.
+   * @return the integer stored in the upper 32 bits.
+   */
+  public static int high(long key) {
+    return (int) (key >> 32);
+  }
+
+  /**
+   * @param key packed key.
+   * @return the integer stored in the lower 32 bits.
+   */
+  public static int low(long key) {
+    return (int) key;
+  }
+
+  // Fills the gap left by a removed entry, so no probe chain gets broken.
+  private void shiftBack(int freedSlot) {
+    int mask = keys.length - 1;
+    int gap = freedSlot;
+    int slot = (gap + 1) & mask;
+
+    while (values[slot] != null) {
+      int home = hash(keys[slot]) & mask;
+      if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+        keys[gap] = keys[slot];
+        values[gap] = values[slot];
+        gap = slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    values[gap] = null;
+  }
+
+  // Rehashes all entries into a table with the passed capacity.
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    Object[] oldValues = values;
+
+    keys = new long[capacity];
+    values = new Object[capacity];
+
+    int mask = capacity - 1;
+    for (int index = 0; index < oldKeys.length; ++index) {
+      if (oldValues[index] != null) {
+        int slot = hash(oldKeys[index]) & mask;
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[index];
+        values[slot] = oldValues[index];
+      }
+    }
+  }
+
+  // Spreads the bits of the key.
+  private static int hash(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32));
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import at.co.hohl.myresidence.storage.persistent.Major;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Cache of the majors of all towns. Safe to be used by asynchronous commands.
+ *
+ * @author Michael Hohl
+ */
+public class MajorCache {
+  // Majors by the id of their town.
+  private final LongHashMap<List<Major>> majorsByTown = new LongHashMap<List<Major>>();
+
+  // Majors by the id of the inhabitant.
+  private final LongHashMap<List<Major>> majorsByInhabitant = new LongHashMap<List<Major>>();
+
+  // Number of cached majors.
+  private int size;
+
+  /**
+   * Adds the major to the cache. Replaces the major with the same inhabitant of the same town.
+   *
+   * @param major the major to add.
+   */
+  public synchronized void add(Major major) {
+    List<Major> majors = majorsByTown.get(major.getTownId());
+    if (majors == null) {
+      majors = new ArrayList<Major>(1);
+      majorsByTown.put(major.getTownId(), majors);
+    }
+
+    for (int index = 0; index < majors.size(); ++index) {
+      if (majors.get(index).getInhabitantId() == major.getInhabitantId()) {
+        removeFromInhabitant(majors.get(index));
+        majors.set(index, major);
+        addToInhabitant(major);
+        return;
+      }
+    }
+
+    majors.add(major);
+    addToInhabitant(major);
+    ++size;
+  }
+
+  /**
+   * @param townId       the id of the town.
+   * @param inhabitantId the id of the inhabitant.
+   * @return the major of the town with the passed inhabitant or null.
+   */
+  public synchronized Major get(int townId, int inhabitantId) {
+    List<Major> majors = majorsByTown.get(townId);
+    if (majors != null) {
+      for (Major major : majors) {
+        if (major.getInhabitantId() == inhabitantId) {
+          return major;
+        }
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * @param townId the id of the town.
+   * @return all majors of the town.
+   */
+  public synchronized List<Major> getMajors(int townId) {
+    List<Major> majors = majorsByTown.get(townId);
+    if (majors == null) {
+      return Collections.emptyList();
+    }
+
+    return new ArrayList<Major>(majors);
+  }
+
+  /**
+   * @param inhabitantId the id of the inhabitant.
+   * @return the ids of all towns, the inhabitant is major of.
+   */
+  public synchronized List<Integer> getTownIds(int inhabitantId) {
+    List<Major> majors = majorsByInhabitant.get(inhabitantId);
+    if (majors == null) {
+      return Collections.emptyList();
+    }
+
+    List<Integer> townIds = new ArrayList<Integer>(majors.size());
+    for (Major major : majors) {
+      townIds.add(major.getTownId());
+    }
+    return townIds;
+  }
+
+  /**
+   * Removes the inhabitant as major of the town.
+   *
+   * @param townId       the id of the town.
+   * @param inhabitantId the id of the inhabitant.
+   */
+  public synchronized void remove(int townId, int inhabitantId) {
+    List<Major> majors = majorsByTown.get(townId);
+    if (majors == null) {
+      return;
+    }
+
+    for (Iterator<Major> iterator = majors.iterator(); iterator.hasNext(); ) {
+      Major major = iterator.next();
+      if (major.getInhabitantId() == inhabitantId) {
+        removeFromInhabitant(major);
+        iterator.remove();
+        --size;
+      }
+    }
+
+    if (majors.isEmpty()) {
+      majorsByTown.remove(townId);
+    }
+  }
+
+  /**
+   * Removes all majors of the town.
+   *
+   * @param townId the id of the town.
+   */
+  public synchronized void removeTown(int townId) {
+    List<Major> majors = majorsByTown.remove(townId);
+    if (majors != null) {
+      for (Major major : majors) {
+        removeFromInhabitant(major);
+      }
+      size -= majors.size();
+    }
+  }
+
+  /**
+   * Removes all majors.
+   */
+  public synchronized void clear() {
+    majorsByTown.clear();
+    majorsByInhabitant.clear();
+    size = 0;
+  }
+
+  /**
+   * @return the number of cached majors.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  // Adds the major to the index by inhabitant.
+  private void addToInhabitant(Major major) {
+    List<Major> majors = majorsByInhabitant.get(major.getInhabitantId());
+    if (majors == null) {
+      majors = new ArrayList<Major>(1);
+      majorsByInhabitant.put(major.getInhabitantId(), majors);
+    }
+
+    majors.add(major);
+  }
+
+  // Removes the major from the index by inhabitant.
+  private void removeFromInhabitant(Major major) {
+    List<Major> majors = majorsByInhabitant.get(major.getInhabitantId());
+    if (majors == null) {
+      return;
+    }
+
+    majors.remove(major);
+    if (majors.isEmpty()) {
+      majorsByInhabitant.remove(major.getInhabitantId());
+    }
+  }
+}
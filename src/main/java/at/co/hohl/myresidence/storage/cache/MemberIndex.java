@@ -0,0 +1,139 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Index of the members of the residences.
+ *
+ * @author Michael Hohl
+ */
+public class MemberIndex {
+  // Ids of the members of the residence, by the id of the residence.
+  private final LongHashMap<Set<Integer>> members = new LongHashMap<Set<Integer>>();
+
+  // Number of memberships of all residences.
+  private int size;
+
+  /**
+   * Adds the inhabitant as member of the residence.
+   *
+   * @param residenceId  the id of the residence.
+   * @param inhabitantId the id of the inhabitant.
+   * @return true, if the inhabitant was not a member before.
+   */
+  public synchronized boolean add(int residenceId, int inhabitantId) {
+    Set<Integer> inhabitantIds = members.get(residenceId);
+    if (inhabitantIds == null) {
+      inhabitantIds = new HashSet<Integer>();
+      members.put(residenceId, inhabitantIds);
+    }
+
+    if (!inhabitantIds.add(inhabitantId)) {
+      return false;
+    }
+
+    ++size;
+    return true;
+  }
+
+  /**
+   * Removes the inhabitant as member of the residence.
+   *
+   * @param residenceId  the id of the residence.
+   * @param inhabitantId the id of the inhabitant.
+   * @return true, if the inhabitant was a member before.
+   */
+  public synchronized boolean remove(int residenceId, int inhabitantId) {
+    Set<Integer> inhabitantIds = members.get(residenceId);
+    if (inhabitantIds == null || !inhabitantIds.remove(inhabitantId)) {
+      return false;
+    }
+
+    if (inhabitantIds.isEmpty()) {
+      members.remove(residenceId);
+    }
+    --size;
+    return true;
+  }
+
+  /**
+   * Removes all members of the residence.
+   *
+   * @param residenceId the id of the residence.
+   */
+  public synchronized void removeResidence(int residenceId) {
+    Set<Integer> inhabitantIds = members.remove(residenceId);
+    if (inhabitantIds != null) {
+      size -= inhabitantIds.size();
+    }
+  }
+
+  /**
+   * @param residenceId  the id of the residence.
+   * @param inhabitantId the id of the inhabitant.
+   * @return true, if the inhabitant is a member of the residence.
+   */
+  public synchronized boolean contains(int residenceId, int inhabitantId) {
+    Set<Integer> inhabitantIds = members.get(residenceId);
+    return inhabitantIds != null && inhabitantIds.contains(inhabitantId);
+  }
+
+  /**
+   * @param residenceId the id of the residence.
+   * @return the number of members of the residence.
+   */
+  public synchronized int count(int residenceId) {
+    Set<Integer> inhabitantIds = members.get(residenceId);
+    return inhabitantIds == null ? 0 : inhabitantIds.size();
+  }
+
+  /**
+   * @param residenceId the id of the residence.
+   * @return the ids of the members of the residence.
+   */
+  public synchronized List<Integer> getInhabitantIds(int residenceId) {
+    Set<Integer> inhabitantIds = members.get(residenceId);
+    if (inhabitantIds == null) {
+      return Collections.emptyList();
+    }
+
+    return new ArrayList<Integer>(inhabitantIds);
+  }
+
+  /**
+   * Removes all memberships.
+   */
+  public synchronized void clear() {
+    members.clear();
+    size = 0;
+  }
+
+  /**
+   * @return the number of memberships of all residences.
+   */
+  public synchronized int size() {
+    return size;
+  }
+}
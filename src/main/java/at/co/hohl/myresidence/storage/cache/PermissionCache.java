@@ -0,0 +1,152 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+/**
+ * Caches the resolved build verdicts of inhabitants for residences and towns. The verdicts are stored per region and
+ * keyed by the id of the inhabitant, so a lookup is a hash lookup which never allocates. The owners of the cache have
+ * to invalidate a region whenever anything the verdict depends on changes.
+ *
+ * @author Michael Hohl
+ */
+public class PermissionCache {
+  // Verdicts per residence, keyed by the id of the inhabitant.
+  private final LongHashMap<LongHashMap<Boolean>> residenceVerdicts = new LongHashMap<LongHashMap<Boolean>>();
+
+  // Verdicts per town, keyed by the id of the inhabitant.
+  private final LongHashMap<LongHashMap<Boolean>> townVerdicts = new LongHashMap<LongHashMap<Boolean>>();
+
+  // Residences with verdicts that depend on which residences the inhabitants own in the town.
+  private final LongHashMap<Boolean> townDependentResidences = new LongHashMap<Boolean>();
+
+  /**
+   * Returns the cached verdict for the inhabitant on the residence.
+   *
+   * @param residenceId  id of the residence.
+   * @param inhabitantId id of the inhabitant.
+   * @return the verdict or null, if there is no verdict cached.
+   */
+  public synchronized Boolean getResidenceVerdict(int residenceId, int inhabitantId) {
+    return get(residenceVerdicts, residenceId, inhabitantId);
+  }
+
+  /**
+   * Caches the verdict for the inhabitant on the residence.
+   *
+   * @param residenceId   id of the residence.
+   * @param inhabitantId  id of the inhabitant.
+   * @param allowed       the verdict.
+   * @param townDependent true, if the verdict depends on the residences the inhabitant owns in the town.
+   */
+  public synchronized void putResidenceVerdict(int residenceId, int inhabitantId, boolean allowed,
+                                               boolean townDependent) {
+    put(residenceVerdicts, residenceId, inhabitantId, allowed);
+
+    if (townDependent) {
+      townDependentResidences.put(residenceId, Boolean.TRUE);
+    }
+  }
+
+  /**
+   * Returns the cached verdict for the inhabitant in the town.
+   *
+   * @param townId       id of the town.
+   * @param inhabitantId id of the inhabitant.
+   * @return the verdict or null, if there is no verdict cached.
+   */
+  public synchronized Boolean getTownVerdict(int townId, int inhabitantId) {
+    return get(townVerdicts, townId, inhabitantId);
+  }
+
+  /**
+   * Caches the verdict for the inhabitant in the town.
+   *
+   * @param townId       id of the town.
+   * @param inhabitantId id of the inhabitant.
+   * @param allowed      the verdict.
+   */
+  public synchronized void putTownVerdict(int townId, int inhabitantId, boolean allowed) {
+    put(townVerdicts, townId, inhabitantId, allowed);
+  }
+
+  /**
+   * Drops all verdicts of the residence. Must be called when the flags or the members of the residence change.
+   *
+   * @param residenceId id of the residence.
+   */
+  public synchronized void invalidateResidence(int residenceId) {
+    residenceVerdicts.remove(residenceId);
+    townDependentResidences.remove(residenceId);
+  }
+
+  /**
+   * Drops the verdicts of the residence and of all residences which depend on the inhabitants of the towns. Must be
+   * called when the owner or the town of the residence change.
+   *
+   * @param residenceId id of the residence.
+   */
+  public synchronized void invalidateOwnership(int residenceId) {
+    invalidateResidence(residenceId);
+
+    for (long dependentId : townDependentResidences.keys()) {
+      residenceVerdicts.remove(dependentId);
+    }
+    townDependentResidences.clear();
+  }
+
+  /**
+   * Drops all verdicts of the town. Must be called when the flags or the majors of the town change.
+   *
+   * @param townId id of the town.
+   */
+  public synchronized void invalidateTown(int townId) {
+    townVerdicts.remove(townId);
+  }
+
+  /**
+   * Drops all verdicts.
+   */
+  public synchronized void clear() {
+    residenceVerdicts.clear();
+    townVerdicts.clear();
+    townDependentResidences.clear();
+  }
+
+  // Returns the verdict of the region for the inhabitant.
+  private static Boolean get(LongHashMap<LongHashMap<Boolean>> verdicts, int regionId, int inhabitantId) {
+    LongHashMap<Boolean> regionVerdicts = verdicts.get(regionId);
+    if (regionVerdicts == null) {
+      return null;
+    }
+
+    return regionVerdicts.get(inhabitantId);
+  }
+
+  // Stores the verdict of the region for the inhabitant.
+  private static void put(LongHashMap<LongHashMap<Boolean>> verdicts, int regionId, int inhabitantId,
+                          boolean allowed) {
+    LongHashMap<Boolean> regionVerdicts = verdicts.get(regionId);
+    if (regionVerdicts == null) {
+      regionVerdicts = new LongHashMap<Boolean>();
+      verdicts.put(regionId, regionVerdicts);
+    }
+
+    regionVerdicts.put(inhabitantId, allowed);
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import at.co.hohl.myresidence.storage.persistent.ResidenceArea;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory spatial index of all residence areas. Areas are partitioned per world and bucketed by the chunks they
+ * cover, so point and overlay queries only have to check the areas of one or a few chunks.
+ *
+ * @author Michael Hohl
+ */
+public class ResidenceAreaIndex {
+  // Number of bits to shift block coordinates to get chunk coordinates.
+  private static final int CHUNK_SHIFT = 4;
+
+  // Empty bucket.
+  private static final ResidenceArea[] EMPTY_BUCKET = new ResidenceArea[0];
+
+  // Buckets of areas per world, keyed by packed chunk coordinates.
+  private final Map<String, LongHashMap<ResidenceArea[]>> worlds = new HashMap<String, LongHashMap<ResidenceArea[]>>();
+
+  // Areas by the id of their residence.
+  private final Map<Integer, ResidenceArea> areas = new HashMap<Integer, ResidenceArea>();
+
+  // Increased on every change of the index.
+  private long generation;
+
+  /**
+   * Adds or replaces the area of a residence.
+   *
+   * @param area the area to add.
+   */
+  public synchronized void add(ResidenceArea area) {
+    remove(area.getResidenceId());
+
+    LongHashMap<ResidenceArea[]> buckets = worlds.get(area.getWorld());
+    if (buckets == null) {
+      buckets = new LongHashMap<ResidenceArea[]>();
+      worlds.put(area.getWorld(), buckets);
+    }
+
+    for (int chunkX = area.getLowX() >> CHUNK_SHIFT; chunkX <= area.getHighX() >> CHUNK_SHIFT; ++chunkX) {
+      for (int chunkZ = area.getLowZ() >> CHUNK_SHIFT; chunkZ <= area.getHighZ() >> CHUNK_SHIFT; ++chunkZ) {
+        long key = LongHashMap.pack(chunkX, chunkZ);
+        ResidenceArea[] bucket = buckets.get(key);
+        if (bucket == null) {
+          bucket = EMPTY_BUCKET;
+        }
+
+        ResidenceArea[] newBucket = new ResidenceArea[bucket.length + 1];
+        System.arraycopy(bucket, 0, newBucket, 0, bucket.length);
+        newBucket[bucket.length] = area;
+        buckets.put(key, newBucket);
+      }
+    }
+
+    areas.put(area.getResidenceId(), area);
+    ++generation;
+  }
+
+  /**
+   * Removes the area of the residence.
+   *
+   * @param residenceId the id of the residence.
+   * @return the removed area or null.
+   */
+  public synchronized ResidenceArea remove(int residenceId) {
+    ResidenceArea area = areas.remove(residenceId);
+    if (area == null) {
+      return null;
+    }
+
+    LongHashMap<ResidenceArea[]> buckets = worlds.get(area.getWorld());
+    for (int chunkX = area.getLowX() >> CHUNK_SHIFT; chunkX <= area.getHighX() >> CHUNK_SHIFT; ++chunkX) {
+      for (int chunkZ = area.getLowZ() >> CHUNK_SHIFT; chunkZ <= area.getHighZ() >> CHUNK_SHIFT; ++chunkZ) {
+        long key = LongHashMap.pack(chunkX, chunkZ);
+        ResidenceArea[] bucket = buckets.get(key);
+        if (bucket == null) {
+          continue;
+        }
+
+        List<ResidenceArea> remaining = new ArrayList<ResidenceArea>(bucket.length);
+        for (ResidenceArea bucketArea : bucket) {
+          if (bucketArea != area) {
+            remaining.add(bucketArea);
+          }
+        }
+
+        if (remaining.isEmpty()) {
+          buckets.remove(key);
+        } else {
+          buckets.put(key, remaining.toArray(new ResidenceArea[remaining.size()]));
+        }
+      }
+    }
+
+    ++generation;
+    return area;
+  }
+
+  /**
+   * Removes all areas.
+   */
+  public synchronized void clear() {
+    worlds.clear();
+    areas.clear();
+    ++generation;
+  }
+
+  /**
+   * Returns the area of the residence.
+   *
+   * @param residenceId the id of the residence.
+   * @return the area or null.
+   */
+  public synchronized ResidenceArea getArea(int residenceId) {
+    return areas.get(residenceId);
+  }
+
+  /**
+   * Returns the areas which cover any block of the chunk. The returned array must not be modified.
+   *
+   * @param world  the name of the world.
+   * @param chunkX x coordinate of the chunk.
+   * @param chunkZ z coordinate of the chunk.
+   * @return the areas of the chunk.
+   */
+  public synchronized ResidenceArea[] getAreas(String world, int chunkX, int chunkZ) {
+    LongHashMap<ResidenceArea[]> buckets = worlds.get(world);
+    if (buckets == null) {
+      return EMPTY_BUCKET;
+    }
+
+    ResidenceArea[] bucket = buckets.get(LongHashMap.pack(chunkX, chunkZ));
+    return bucket == null ? EMPTY_BUCKET : bucket;
+  }
+
+  /**
+   * @return a number which changes whenever the index changes.
+   */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * @return the number of indexed areas.
+   */
+  public synchronized int size() {
+    return areas.size();
+  }
+
+  /**
+   * Returns the area at the passed location.
+   *
+   * @param world the name of the world.
+   * @param x     x coordinate of the block.
+   * @param y     y coordinate of the block.
+   * @param z     z coordinate of the block.
+   * @return the found area or null.
+   */
+  public synchronized ResidenceArea find(String world, int x, int y, int z) {
+    LongHashMap<ResidenceArea[]> buckets = worlds.get(world);
+    if (buckets == null) {
+      return null;
+    }
+
+    ResidenceArea[] bucket = buckets.get(LongHashMap.pack(x >> CHUNK_SHIFT, z >> CHUNK_SHIFT));
+    if (bucket == null) {
+      return null;
+    }
+
+    for (ResidenceArea area : bucket) {
+      if (intersects(area, x, y, z, 0)) {
+        return area;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns all areas at the passed location or inside the overlay.
+   *
+   * @param world   the name of the world.
+   * @param x       x coordinate of the block.
+   * @param y       y coordinate of the block.
+   * @param z       z coordinate of the block.
+   * @param overlay maximum number of blocks an area could overlay.
+   * @return list of found areas.
+   */
+  public synchronized List<ResidenceArea> findNear(String world, int x, int y, int z, int overlay) {
+    List<ResidenceArea> result = new ArrayList<ResidenceArea>(2);
+
+    LongHashMap<ResidenceArea[]> buckets = worlds.get(world);
+    if (buckets == null) {
+      return result;
+    }
+
+    for (int chunkX = (x - overlay) >> CHUNK_SHIFT; chunkX <= (x + overlay) >> CHUNK_SHIFT; ++chunkX) {
+      for (int chunkZ = (z - overlay) >> CHUNK_SHIFT; chunkZ <= (z + overlay) >> CHUNK_SHIFT; ++chunkZ) {
+        ResidenceArea[] bucket = buckets.get(LongHashMap.pack(chunkX, chunkZ));
+        if (bucket == null) {
+          continue;
+        }
+
+        for (ResidenceArea area : bucket) {
+          if (intersects(area, x, y, z, overlay) && !result.contains(area)) {
+            result.add(area);
+          }
+        }
+      }
+    }
+
+    return result;
+  }
+
+  // Checks if the area contains the location, expanded horizontally by the overlay.
+  private static boolean intersects(ResidenceArea area, int x, int y, int z, int overlay) {
+    return area.getLowX() <= x + overlay && area.getHighX() >= x - overlay &&
+            area.getLowY() <= y && area.getHighY() >= y &&
+            area.getLowZ() <= z + overlay && area.getHighZ() >= z - overlay;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sorted index of objects, used to serve pages of leaderboards without sorting on every request. The sort key of
+ * every entry is copied on insertion, so entries can be moved after the objects themselves got changed.
+ *
+ * @author Michael Hohl
+ */
+public class SortedIndex<T> {
+  // Entries in sorted order.
+  private final List<Entry<T>> entries = new ArrayList<Entry<T>>();
+
+  // Entries by the id of their object.
+  private final LongHashMap<Entry<T>> entriesById = new LongHashMap<Entry<T>>();
+
+  // True, if the highest keys come first.
+  private final boolean descending;
+
+  /**
+   * Creates a new sorted index.
+   *
+   * @param descending true, if the highest keys should come first.
+   */
+  public SortedIndex(boolean descending) {
+    this.descending = descending;
+  }
+
+  /**
+   * Adds the object to the index or moves it to the position of its new key.
+   *
+   * @param id     the id of the object.
+   * @param key    the key to sort the object by.
+   * @param object the object itself.
+   */
+  public synchronized void put(int id, Comparable<?> key, T object) {
+    remove(id);
+
+    Entry<T> entry = new Entry<T>(id, key, object);
+    entries.add(-search(entry) - 1, entry);
+    entriesById.put(id, entry);
+  }
+
+  /**
+   * Removes the object with the passed id.
+   *
+   * @param id the id of the object.
+   * @return true, if the index contained the object.
+   */
+  public synchronized boolean remove(int id) {
+    Entry<T> entry = entriesById.remove(id);
+    if (entry == null) {
+      return false;
+    }
+
+    entries.remove(search(entry));
+    return true;
+  }
+
+  /**
+   * @param id the id of the object.
+   * @return true, if the index contains the object.
+   */
+  public synchronized boolean contains(int id) {
+    return entriesById.containsKey(id);
+  }
+
+  /**
+   * Returns a page of the index.
+   *
+   * @param first the index of the first object.
+   * @param count the maximum number of objects.
+   * @return the objects, in sorted order.
+   */
+  public synchronized List<T> getPage(int first, int count) {
+    if (first < 0 || first >= entries.size()) {
+      return Collections.emptyList();
+    }
+
+    int last = Math.min(entries.size(), first + count);
+    List<T> page = new ArrayList<T>(last - first);
+    for (int index = first; index < last; ++index) {
+      page.add(entries.get(index).object);
+    }
+
+    return page;
+  }
+
+  /**
+   * @return the number of indexed objects.
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Removes all objects.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    entriesById.clear();
+  }
+
+  // Binary search for the entry. Returns (-(insertion point) - 1) if the entry is not in the index.
+  private int search(Entry<T> entry) {
+    int low = 0;
+    int high = entries.size() - 1;
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int comparison = compare(entries.get(middle), entry);
+
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+
+    return -(low + 1);
+  }
+
+  // Compares two entries by their key and their id if the keys are equal.
+  @SuppressWarnings("unchecked")
+  private int compare(Entry<T> first, Entry<T> second) {
+    int comparison = ((Comparable<Object>) first.key).compareTo(second.key);
+    if (descending) {
+      comparison = -comparison;
+    }
+
+    if (comparison == 0) {
+      comparison = first.id < second.id ? -1 : (first.id == second.id ? 0 : 1);
+    }
+
+    return comparison;
+  }
+
+  // Entry of the index.
+  private static final class Entry<T> {
+    private final int id;
+    private final Comparable<?> key;
+    private final T object;
+
+    private Entry(int id, Comparable<?> key, T object) {
+      this.id = id;
+      this.key = key;
+      this.object = object;
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.storage.cache;
+
+import at.co.hohl.myresidence.storage.persistent.Residence;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Aggregates of the residences per town. A snapshot of every residence is kept, so changes are applied by removing
+ * the old and adding the new snapshot.
+ *
+ * @author Michael Hohl
+ */
+public class TownStatistics {
+  // Aggregates by the id of their town.
+  private final Map<Integer, Aggregate> aggregates = new HashMap<Integer, Aggregate>();
+
+  // Snapshots of the residences by their id.
+  private final LongHashMap<Snapshot> snapshots = new LongHashMap<Snapshot>();
+
+  /**
+   * Adds the residence or applies the changes of it.
+   *
+   * @param residence the residence to update.
+   */
+  public synchronized void update(Residence residence) {
+    Snapshot snapshot = new Snapshot(residence);
+    Snapshot previous = snapshots.put(residence.getId(), snapshot);
+
+    if (previous != null) {
+      subtract(previous);
+    }
+    add(snapshot);
+  }
+
+  /**
+   * Removes the residence.
+   *
+   * @param residence the residence to remove.
+   */
+  public synchronized void remove(Residence residence) {
+    Snapshot previous = snapshots.remove(residence.getId());
+
+    if (previous != null) {
+      subtract(previous);
+    }
+  }
+
+  /**
+   * @param townId the id of the town.
+   * @return the number of residences inside the town.
+   */
+  public synchronized int getResidenceCount(int townId) {
+    Aggregate aggregate = aggregates.get(townId);
+    return aggregate == null ? 0 : aggregate.residences;
+  }
+
+  /**
+   * @param townId the id of the town.
+   * @return the total value of the residences inside the town.
+   */
+  public synchronized double getValue(int townId) {
+    Aggregate aggregate = aggregates.get(townId);
+    return aggregate == null ? 0 : aggregate.value;
+  }
+
+  /**
+   * @param townId the id of the town.
+   * @return the number of inhabitants owning residences inside the town.
+   */
+  public synchronized int getInhabitantCount(int townId) {
+    Aggregate aggregate = aggregates.get(townId);
+    return aggregate == null ? 0 : aggregate.owners.size();
+  }
+
+  /**
+   * @param townId the id of the town.
+   * @return a copy of the ids of the inhabitants owning residences inside the town.
+   */
+  public synchronized Set<Integer> getInhabitantIds(int townId) {
+    Aggregate aggregate = aggregates.get(townId);
+    if (aggregate == null) {
+      return Collections.emptySet();
+    }
+
+    return new HashSet<Integer>(aggregate.owners.keySet());
+  }
+
+  /**
+   * @param townId       the id of the town.
+   * @param inhabitantId the id of the inhabitant.
+   * @return true, if the inhabitant owns a residence inside the town.
+   */
+  public synchronized boolean isInhabitant(int townId, int inhabitantId) {
+    Aggregate aggregate = aggregates.get(townId);
+    return aggregate != null && aggregate.owners.containsKey(inhabitantId);
+  }
+
+  /**
+   * Removes all residences.
+   */
+  public synchronized void clear() {
+    aggregates.clear();
+    snapshots.clear();
+  }
+
+  // Adds the snapshot to the aggregate of its town.
+  private void add(Snapshot snapshot) {
+    Aggregate aggregate = aggregates.get(snapshot.townId);
+    if (aggregate == null) {
+      aggregate = new Aggregate();
+      aggregates.put(snapshot.townId, aggregate);
+    }
+
+    ++aggregate.residences;
+    aggregate.value += snapshot.value;
+    if (snapshot.ownerId != -1) {
+      Integer count = aggregate.owners.get(snapshot.ownerId);
+      aggregate.owners.put(snapshot.ownerId, count == null ? 1 : count + 1);
+    }
+  }
+
+  // Subtracts the snapshot from the aggregate of its town.
+  private void subtract(Snapshot snapshot) {
+    Aggregate aggregate = aggregates.get(snapshot.townId);
+    if (aggregate == null) {
+      return;
+    }
+
+    --aggregate.residences;
+    aggregate.value -= snapshot.value;
+    if (snapshot.ownerId != -1) {
+      Integer count = aggregate.owners.get(snapshot.ownerId);
+      if (count != null && count > 1) {
+        aggregate.owners.put(snapshot.ownerId, count - 1);
+      } else {
+        aggregate.owners.remove(snapshot.ownerId);
+      }
+    }
+
+    if (aggregate.residences <= 0) {
+      aggregates.remove(snapshot.townId);
+    }
+  }
+
+  // Aggregated values of a town.
+  private static final class Aggregate {
+    private int residences;
+    private double value;
+    private final Map<Integer, Integer> owners = new HashMap<Integer, Integer>();
+  }
+
+  // Values of a residence, which got aggregated.
+  private static final class Snapshot {
+    private final int townId;
+    private final int ownerId;
+    private final double value;
+
+    private Snapshot(Residence residence) {
+      this.townId = residence.getTownId();
+      this.ownerId = residence.getOwnerId();
+      this.value = residence.getValue();
+    }
+  }
+}
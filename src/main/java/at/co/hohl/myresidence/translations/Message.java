@@ -0,0 +1,147 @@
+/*
+ * MyResidence, Bukkit plugin for managing your towns and residences
+ * Copyright (C) 2011, Michael Hohl
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package at.co.hohl.myresidence.translations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message template, which is parsed once into its segments. Color codes like '&c' are replaced by the chat colors and
+ * the placeholders like '{0}' are replaced by the arguments, when the message gets formatted.
+ *
+ * @author Michael Hohl
+ */
+public final class Message {
+  // Character which introduces a color in the chat.
+  private static final char COLOR_CHAR = '\u00A7';
+
+  // Original template of the message.
+  private final String template;
+
+  // Texts between the placeholders, always one more than placeholders.
+  private final String[] texts;
+
+  // Indices of the arguments, which replace the placeholders.
+  private final int[] arguments;
+
+  // Creates a new message out of the parsed segments.
+  private Message(String template, String[] texts, int[] arguments) {
+    this.template = template;
+    this.texts = texts;
+    this.arguments = arguments;
+  }
+
+  /**
+   * Parses the passed template.
+   *
+   * @param template the template to parse.
+   * @return the parsed message.
+   */
+  public static Message parse(String template) {
+    List<String> texts = new ArrayList<String>();
+    List<Integer> arguments = new ArrayList<Integer>();
+
+    StringBuilder text = new StringBuilder();
+    int length = template.length();
+    for (int index = 0; index < length; ++index) {
+      char character = template.charAt(index);
+
+      if (character == '&' && index + 1 < length && Character.digit(template.charAt(index + 1), 16) >= 0) {
+        text.append(COLOR_CHAR);
+        text.append(Character.toLowerCase(template.charAt(++index)));
+        continue;
+      }
+
+      if (character == '{') {
+        int end = template.indexOf('}', index);
+        int argument = end > index + 1 ? parseIndex(template.substring(index + 1, end)) : -1;
+        if (argument >= 0) {
+          texts.add(text.toString());
+          arguments.add(argument);
+          text.setLength(0);
+          index = end;
+          continue;
+        }
+      }
+
+      text.append(character);
+    }
+    texts.add(text.toString());
+
+    int[] argumentArray = new int[arguments.size()];
+    for (int index = 0; index < argumentArray.length; ++index) {
+      argumentArray[index] = arguments.get(index);
+    }
+
+    return new Message(template, texts.toArray(new String[texts.size()]), argumentArray);
+  }
+
+  /**
+   * Formats the message with the passed arguments. Placeholders without argument are kept as they are.
+   *
+   * @param args the arguments for the placeholders.
+   * @return the formatted message.
+   */
+  public String format(Object... args) {
+    if (arguments.length == 0) {
+      return texts[0];
+    }
+
+    StringBuilder message = new StringBuilder(template.length() + 16 * arguments.length);
+    message.append(texts[0]);
+    for (int index = 0; index < arguments.length; ++index) {
+      int argument = arguments[index];
+      if (argument < args.length) {
+        message.append(args[argument]);
+      } else {
+        message.append('{').append(argument).append('}');
+      }
+      message.append(texts[index + 1]);
+    }
+
+    return message.toString();
+  }
+
+  /**
+   * @return the original template of the message.
+   */
+  public String getTemplate() {
+    return template;
+  }
+
+  @Override
+  public String toString() {
+    return template;
+  }
+
+  // Parses the index of a placeholder, returns -1 if it is not a number.
+  private static int parseIndex(String index) {
+    if (index.length() > 4) {
+      return -1;
+    }
+
+    for (int position = 0; position < index.length(); ++position) {
+      if (!Character.isDigit(index.charAt(position))) {
+        return -1;
+      }
+    }
+
+    return Integer.parseInt(index);
+  }
+}
@@ -22,6 +22,9 @@ import org.bukkit.Bukkit;
 import org.bukkit.util.config.Configuration;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -30,7 +33,8 @@ import java.util.logging.Logger;
  * @author Michael Hohl
  */
 public final class Translate {
-  private static Configuration translations;
+  // Parsed translations by the id of the message, replaced as a whole when the translations get loaded.
+  private static volatile Map<String, Message> translations;
 
   /**
    * Loads the translations from file system.
@@ -40,14 +44,27 @@ public final class Translate {
   public static void load(String languageCode) {
     File translationFile = new File("myresidence_" + languageCode.toLowerCase() + ".yml");
 
+    Configuration configuration;
     if (!(translationFile.exists() && translationFile.canRead())) {
       Logger.getLogger("Minecraft").warning("[MyResidence] Use default translation, " +
               "because there exists no localization for your language.");
-      translations = Bukkit.getServer().getPluginManager().getPlugin("MyResidence").getConfiguration();
+      configuration = Bukkit.getServer().getPluginManager().getPlugin("MyResidence").getConfiguration();
     } else {
-      translations = new Configuration(translationFile);
-      translations.load();
+      configuration = new Configuration(translationFile);
+      configuration.load();
     }
+
+    // Walk the node tree once, so retrieving a translation is a single lookup.
+    Map<String, Message> loadedTranslations = new HashMap<String, Message>();
+    Map<String, Object> entries = configuration.getAll();
+    if (entries != null) {
+      for (Map.Entry<String, Object> entry : entries.entrySet()) {
+        if (entry.getValue() instanceof String) {
+          loadedTranslations.put(entry.getKey(), Message.parse((String) entry.getValue()));
+        }
+      }
+    }
+    translations = Collections.unmodifiableMap(loadedTranslations);
   }
 
   /**
@@ -57,11 +74,25 @@ public final class Translate {
    * @return the translation or a message which tells that the translation is missing.
    */
   public static String get(String messageId) {
+    return getMessage(messageId).getTemplate();
+  }
+
+  /**
+   * Retrieves the parsed translation for the passed message id.
+   *
+   * @param messageId the id of the message to retrieve the translation for.
+   * @return the translation or a message which tells that the translation is missing.
+   */
+  public static Message getMessage(String messageId) {
     if (translations == null) {
       load("en");
     }
 
-    return translations.getString(messageId, "&cMiss translation for: '" + messageId + "'.");
+    Message message = translations.get(messageId);
+    if (message == null) {
+      message = Message.parse("&cMiss translation for: '" + messageId + "'.");
+    }
+    return message;
   }
 
   // Do not instantiate these helper class!